@@ -0,0 +1,105 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * All pairs shortest paths - fills a DistanceMatrix by running one Dijkstra search
+ * per source town in parallel. Each search runs as SearchWorkspace.find would, so
+ * one-way roads and banned turns are honored. A graph with a wide WeightType gets a
+ * wide matrix of long distances. Row and column ids are the town ids of the graph's
+ * CompactGraph snapshot, which are in alphabetical order
+ *
+ * @author Jessica Park
+ */
+
+public class AllPairsShortestPaths {
+    private static final int SOURCES_PER_TASK = 16;
+
+    private AllPairsShortestPaths() {
+    }
+
+    /**
+     * Computes every shortest distance into a matrix held in direct memory
+     *
+     * @param graph the graph to search
+     * @return the distance matrix, wide if the graph has a wide WeightType
+     */
+    public static DistanceMatrix compute(Graph graph) {
+        CompactGraph compact = graph.compact();
+        DistanceMatrix matrix = DistanceMatrix.inMemory(compact.size(), compact.getWeightType().isWide());
+        fill(compact, matrix, ForkJoinPool.commonPool());
+        return matrix;
+    }
+
+    /**
+     * Computes every shortest distance, keeping the matrix in memory when it fits in
+     * a quarter of the maximum heap size and spilling it to a mapped file otherwise
+     *
+     * @param graph the graph to search
+     * @param spillFile the file to use if the matrix is too big for memory
+     * @return the distance matrix, wide if the graph has a wide WeightType, which must
+     * be closed when the file is used
+     * @throws IOException if the spill file cannot be written
+     */
+    public static DistanceMatrix compute(Graph graph, Path spillFile) throws IOException {
+        CompactGraph compact = graph.compact();
+        boolean wide = compact.getWeightType().isWide();
+        long bytes = DistanceMatrix.entryBytes(wide) * compact.size() * compact.size();
+        DistanceMatrix matrix = bytes <= Runtime.getRuntime().maxMemory() / 4
+                ? DistanceMatrix.inMemory(compact.size(), wide)
+                : DistanceMatrix.mapped(compact.size(), spillFile, wide);
+        fill(compact, matrix, ForkJoinPool.commonPool());
+        return matrix;
+    }
+
+    /**
+     * Runs a search from every town and writes each result as a row of the matrix.
+     * A wide matrix takes long distances, so it can hold any graph's distances
+     *
+     * @param graph the graph to search
+     * @param matrix the matrix to fill, graph.size() by graph.size()
+     * @param pool the pool to run the searches on
+     * @throws ArithmeticException if the matrix is not wide and a distance does not fit in an int
+     */
+    public static void fill(CompactGraph graph, DistanceMatrix matrix, ForkJoinPool pool) {
+        if (matrix.size() != graph.size()) {
+            throw new IllegalArgumentException("Matrix size must match the number of towns.");
+        }
+        pool.invoke(new RowTask(graph, matrix, 0, graph.size()));
+    }
+
+    private static class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CompactGraph graph;
+        private final DistanceMatrix matrix;
+        private final int from;
+        private final int to;
+
+        RowTask(CompactGraph graph, DistanceMatrix matrix, int from, int to) {
+            this.graph = graph;
+            this.matrix = matrix;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SOURCES_PER_TASK) {
+                SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+                for (int source = from; source < to; source++) {
+                    workspace.run(graph, source);
+                    if (matrix.isWide()) {
+                        matrix.writeRow(source, workspace.longDistances(graph));
+                    } else {
+                        matrix.writeRow(source, workspace.distances(graph));
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RowTask(graph, matrix, from, middle), new RowTask(graph, matrix, middle, to));
+        }
+    }
+}
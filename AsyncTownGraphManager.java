@@ -0,0 +1,230 @@
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Async Town Graph Manager - answers path queries on a TownGraphManager without
+ * blocking the caller. Queries search the graph's CompactGraph snapshot under a read
+ * lock, so many run at once, and edits made through edit() wait for them to finish
+ *
+ * Only so many queries may be in flight at once. Past that limit a query fails
+ * straight away with a RejectedExecutionException instead of queueing, so an
+ * overloaded server sheds load. A query that times out or whose future is cancelled
+ * stops its running search at the next check of its CancellationToken.
+ *
+ * @author Jessica Park
+ */
+
+public class AsyncTownGraphManager implements AutoCloseable {
+    private final TownGraphManager manager;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Semaphore permits;
+    private final Duration timeout;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor - runs queries on virtual threads when the JDK has them, and on a
+     * cached thread pool otherwise
+     *
+     * @param manager the towns and roads to query
+     * @param maxInFlight the most queries allowed to be queued or running at once
+     * @param timeout how long a query may run before it is cancelled, or null for no limit
+     */
+    public AsyncTownGraphManager(TownGraphManager manager, int maxInFlight, Duration timeout) {
+        this(manager, newDefaultExecutor("async-query"), true, maxInFlight, timeout);
+    }
+
+    /**
+     * Constructor - runs queries on the given executor
+     *
+     * @param manager the towns and roads to query
+     * @param executor runs the queries, and is not shut down by close
+     * @param maxInFlight the most queries allowed to be queued or running at once
+     * @param timeout how long a query may run before it is cancelled, or null for no limit
+     */
+    public AsyncTownGraphManager(TownGraphManager manager, ExecutorService executor, int maxInFlight,
+            Duration timeout) {
+        this(manager, executor, false, maxInFlight, timeout);
+    }
+
+    private AsyncTownGraphManager(TownGraphManager manager, ExecutorService executor, boolean ownsExecutor,
+            int maxInFlight, Duration timeout) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one query must be allowed in flight.");
+        }
+        this.manager = manager;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.permits = new Semaphore(maxInFlight);
+        this.timeout = timeout;
+    }
+
+    /**
+     * Creates an executor with a virtual thread per task when the JDK supports them,
+     * looked up by reflection so the code still runs on older JDKs, or else a cached
+     * pool of daemon threads
+     *
+     * @param name the name of the pool's threads
+     * @return the executor
+     */
+    static ExecutorService newDefaultExecutor(String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Finds the shortest path between two towns without blocking
+     *
+     * @param town1 name of the starting town
+     * @param town2 name of the ending town
+     * @return a future for the path in the same format as TownGraphManager.getPath,
+     * completing with null if either town does not exist. It fails with a
+     * RejectedExecutionException if too many queries are in flight, or a TimeoutException
+     * if the query runs too long
+     */
+    public CompletableFuture<List<String>> getPathAsync(String town1, String town2) {
+        return submit(token -> {
+            lock.readLock().lock();
+            try {
+                CompactGraph graph = manager.snapshot();
+                return path(graph, town1, town2, token);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Finds the shortest paths between many pairs of towns as one query, holding a
+     * single place among the queries in flight
+     *
+     * @param pairs the pairs of town names, each an array of the starting and ending town
+     * @return a future for the paths in the same order as the pairs, null for pairs with
+     * a town that does not exist
+     */
+    public CompletableFuture<List<List<String>>> getPathsAsync(List<String[]> pairs) {
+        return submit(token -> {
+            lock.readLock().lock();
+            try {
+                CompactGraph graph = manager.snapshot();
+                List<List<String>> paths = new ArrayList<>(pairs.size());
+                for (String[] pair : pairs) {
+                    paths.add(path(graph, pair[0], pair[1], token));
+                }
+                return paths;
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Changes the graph once every running query has finished. Edits to the manager
+     * must go through here while this object is in use
+     *
+     * @param edit the change to make
+     * @param <T> the type of the edit's result
+     * @return the result of the edit
+     */
+    public <T> T edit(Function<TownGraphManager, T> edit) {
+        lock.writeLock().lock();
+        try {
+            return edit.apply(manager);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns how many more queries can be accepted right now
+     *
+     * @return the free places among the queries in flight
+     */
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * Shuts down the executor if this object created it
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private static ArrayList<String> path(CompactGraph graph, String town1, String town2, CancellationToken token) {
+        int source = graph.id(new Town(town1));
+        int target = graph.id(new Town(town2));
+        if (source < 0 || target < 0) {
+            return null;
+        }
+        SearchWorkspace workspace = SearchWorkspace.acquire(graph);
+        try {
+            if (!workspace.find(graph, source, target, token)) {
+                return new ArrayList<>();
+            }
+            return graph.describePath(source, workspace.slotsTo(graph, target));
+        } finally {
+            SearchWorkspace.release(workspace);
+        }
+    }
+
+    /**
+     * Runs a query on the executor if a place is free. When the returned future completes
+     * for any reason, including a timeout or a call to cancel, the query's token is
+     * cancelled so its search stops. Its place is freed once the task has ended, which
+     * is before the future completes when the query finishes normally.
+     * The token also carries the timeout as a deadline, so the search stops on time
+     * even if the timer completing the future runs late. A search stopped by that
+     * deadline fails the future with a TimeoutException, the same as the timer would
+     */
+    private <T> CompletableFuture<T> submit(Function<CancellationToken, T> query) {
+        if (!permits.tryAcquire()) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many queries in flight."));
+        }
+        CancellationToken token = timeout == null ? new CancellationToken() : CancellationToken.deadlineIn(timeout);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.whenComplete((result, error) -> token.cancel());
+        try {
+            executor.execute(() -> {
+                T result;
+                try {
+                    result = future.isDone() ? null : query.apply(token);
+                } catch (Throwable e) {
+                    permits.release();
+                    future.completeExceptionally(e instanceof CancellationException && token.isExpired()
+                            ? timedOut(e) : e);
+                    return;
+                }
+                permits.release();
+                future.complete(result);
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            future.completeExceptionally(e);
+        }
+        if (timeout != null) {
+            future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return future;
+    }
+
+    private TimeoutException timedOut(Throwable cause) {
+        TimeoutException timedOut = new TimeoutException("Query ran longer than " + timeout.toMillis() + " ms.");
+        timedOut.initCause(cause);
+        return timedOut;
+    }
+}
@@ -0,0 +1,89 @@
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cancellation token - lets one thread ask a search running on another thread to stop,
+ * and gives a search a deadline it stops at by itself. Searches check the token every
+ * CHECK_INTERVAL towns, so a cancelled search stops within a few microseconds rather
+ * than running to the end
+ *
+ * @author Jessica Park
+ */
+
+public class CancellationToken {
+    static final int CHECK_INTERVAL = 1024;
+
+    private volatile boolean cancelled;
+    private final long deadline;
+
+    /**
+     * Constructor - creates a token with no deadline
+     */
+    public CancellationToken() {
+        this.deadline = Long.MAX_VALUE;
+    }
+
+    private CancellationToken(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Creates a token that expires after the given time
+     *
+     * @param budget how long searches holding the token may run
+     * @return the token
+     */
+    public static CancellationToken deadlineIn(Duration budget) {
+        long now = System.nanoTime();
+        long nanos = budget.toNanos();
+        return new CancellationToken(nanos >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + nanos);
+    }
+
+    /**
+     * Asks every search holding this token to stop
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns true if cancel has been called
+     *
+     * @return true if the searches holding this token should stop
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns true if the token's deadline has passed
+     *
+     * @return true if the token has a deadline and it has passed
+     */
+    public boolean isExpired() {
+        return deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Returns true if searches holding this token should stop
+     *
+     * @return true if the token has been cancelled or has expired
+     */
+    public boolean shouldStop() {
+        return cancelled || isExpired();
+    }
+
+    /**
+     * Stops the calling search if the token has been cancelled or has expired
+     *
+     * @throws CancellationException if the token has been cancelled or has expired
+     */
+    public void check() {
+        if (cancelled) {
+            throw new CancellationException("Query was cancelled.");
+        }
+        if (isExpired()) {
+            throw new CancellationException("Query deadline passed.");
+        }
+    }
+}
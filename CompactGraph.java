@@ -0,0 +1,409 @@
+import java.util.*;
+
+/**
+ * Compact graph - a read-only snapshot of a Graph stored in primitive arrays.
+ * Towns are numbered 0..size()-1 in alphabetical order and the roads of each town
+ * are stored in consecutive slots, so searches can run without boxing or hashing
+ *
+ * @author Jessica Park
+ */
+
+public class CompactGraph {
+    /**
+     * Set in the flags of a slot that runs against a one-way road, when the graph is in
+     * directed mode. No road attribute uses this bit
+     */
+    public static final int AGAINST_ONE_WAY = 1 << 31;
+
+    private final long version;
+    private final WeightType weightType;
+    private final Town[] towns;
+    private final Map<Town, Integer> ids;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+    private final int[] costs;
+    private final Road[] roads;
+    private final int[] flags;
+    private final int[] profiles;
+    private final TravelTimeProfiles travelTimes;
+    private final long[] bannedTurns;
+    private final boolean restricted;
+    private final int[] reverseSlots;
+    private final int[] components;
+    private final int componentCount;
+
+    /**
+     * Constructor - copies the current state of the graph into arrays
+     *
+     * @param graph the graph to snapshot
+     */
+    public CompactGraph(Graph graph) {
+        this.version = graph.getVersion();
+        this.weightType = graph.getWeightType();
+        this.towns = graph.vertexSet().toArray(new Town[0]);
+        Arrays.sort(towns);
+        this.ids = new HashMap<>(towns.length * 2);
+        for (int i = 0; i < towns.length; i++) {
+            ids.put(towns[i], i);
+        }
+
+        this.offsets = new int[towns.length + 1];
+        for (int i = 0; i < towns.length; i++) {
+            offsets[i + 1] = offsets[i] + graph.edgesOf(towns[i]).size();
+        }
+        int slots = offsets[towns.length];
+        this.targets = new int[slots];
+        this.weights = new int[slots];
+        this.costs = new int[slots];
+        this.roads = new Road[slots];
+        this.flags = new int[slots];
+        this.profiles = new int[slots];
+        this.travelTimes = graph.travelTimeProfiles();
+        boolean directed = graph.isDirected();
+        for (int i = 0; i < towns.length; i++) {
+            int slot = offsets[i];
+            for (Road road : graph.edgesOf(towns[i])) {
+                boolean backwards = road.getDestination().equals(towns[i]);
+                Town other = backwards ? road.getSource() : road.getDestination();
+                targets[slot] = ids.get(other);
+                weights[slot] = road.getWeight();
+                costs[slot] = road.getCost();
+                roads[slot] = road;
+                flags[slot] = road.getAttributes();
+                profiles[slot] = road.getProfile();
+                if (directed && backwards && road.isOneWay() && !other.equals(towns[i])) {
+                    flags[slot] |= AGAINST_ONE_WAY;
+                }
+                slot++;
+            }
+        }
+
+        long[] turns = new long[graph.turnBans().size()];
+        int count = 0;
+        for (List<Town> ban : graph.turnBans()) {
+            int in = slotBetween(id(ban.get(0)), id(ban.get(1)));
+            int out = slotBetween(id(ban.get(1)), id(ban.get(2)));
+            if (in >= 0 && out >= 0) {
+                turns[count++] = turnKey(in, out);
+            }
+        }
+        this.bannedTurns = Arrays.copyOf(turns, count);
+        Arrays.sort(bannedTurns);
+        this.restricted = directed || count > 0;
+        this.reverseSlots = restricted ? reverseSlots() : null;
+        this.components = graph.componentLabels(towns);
+        int labels = 0;
+        for (int label : components) {
+            labels = Math.max(labels, label + 1);
+        }
+        this.componentCount = labels;
+    }
+
+    private int slotBetween(int from, int to) {
+        if (from < 0 || to < 0) {
+            return -1;
+        }
+        for (int slot = offsets[from]; slot < offsets[from + 1]; slot++) {
+            if (targets[slot] == to) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Pairs each slot with the slot holding the same road at its other end. A road is one
+     * object in both towns' sets, so it is matched by identity. A loop is stored once and
+     * is its own reverse
+     */
+    private int[] reverseSlots() {
+        int[] reverse = new int[targets.length];
+        for (int town = 0; town < towns.length; town++) {
+            for (int slot = offsets[town]; slot < offsets[town + 1]; slot++) {
+                int other = targets[slot];
+                reverse[slot] = slot;
+                for (int match = offsets[other]; match < offsets[other + 1]; match++) {
+                    if (roads[match] == roads[slot] && match != slot) {
+                        reverse[slot] = match;
+                        break;
+                    }
+                }
+            }
+        }
+        return reverse;
+    }
+
+    private static long turnKey(int in, int out) {
+        return ((long) in << 32) | out;
+    }
+
+    /**
+     * Returns the graph version this snapshot was taken at
+     *
+     * @return the graph version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns how the graph adds up distances
+     *
+     * @return the weight type of the graph this snapshot was taken of
+     */
+    public WeightType getWeightType() {
+        return weightType;
+    }
+
+    /**
+     * Returns the number of towns
+     *
+     * @return the number of towns
+     */
+    public int size() {
+        return towns.length;
+    }
+
+    /**
+     * Returns the id of a town
+     *
+     * @param town the town to look up
+     * @return the town's id, or -1 if the town is not in the snapshot
+     */
+    public int id(Town town) {
+        Integer id = ids.get(town);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the town with the given id
+     *
+     * @param id the town's id
+     * @return the town
+     */
+    public Town town(int id) {
+        return towns[id];
+    }
+
+    /**
+     * Returns the first road slot of a town
+     *
+     * @param id the town's id
+     * @return the index of the town's first slot
+     */
+    public int firstSlot(int id) {
+        return offsets[id];
+    }
+
+    /**
+     * Returns the slot just past the last road slot of a town
+     *
+     * @param id the town's id
+     * @return the index after the town's last slot
+     */
+    public int endSlot(int id) {
+        return offsets[id + 1];
+    }
+
+    /**
+     * Returns the id of the town a road slot belongs to
+     *
+     * @param slot the road slot
+     * @return the id of the town whose roads include the slot
+     */
+    public int owner(int slot) {
+        int low = 0;
+        int high = towns.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= slot) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the number of road slots, two for every road
+     *
+     * @return the number of slots
+     */
+    public int slotCount() {
+        return targets.length;
+    }
+
+    /**
+     * Returns the id of the town at the other end of a road slot
+     *
+     * @param slot the road slot
+     * @return the id of the neighboring town
+     */
+    public int target(int slot) {
+        return targets[slot];
+    }
+
+    /**
+     * Returns the weight of the road in a slot
+     *
+     * @param slot the road slot
+     * @return the weight of the road
+     */
+    public int weight(int slot) {
+        return weights[slot];
+    }
+
+    /**
+     * Returns the toll cost of the road in a slot
+     *
+     * @param slot the road slot
+     * @return the cost of the road
+     */
+    public int cost(int slot) {
+        return costs[slot];
+    }
+
+    /**
+     * Returns how long the road in a slot takes when entered at a given time, which is
+     * its weight unless the road has a travel time profile
+     *
+     * @param slot the road slot
+     * @param departure when the road is entered
+     * @return the travel time
+     */
+    public int travelTime(int slot, int departure) {
+        int profile = profiles[slot];
+        return profile < 0 ? weights[slot] : travelTimes.travelTime(profile, departure);
+    }
+
+    /**
+     * Returns the attribute bits of the road in a slot, plus AGAINST_ONE_WAY if the slot
+     * runs the wrong way along a one-way road in directed mode
+     *
+     * @param slot the road slot
+     * @return the slot's flags
+     */
+    public int flags(int slot) {
+        return flags[slot];
+    }
+
+    /**
+     * Returns true if the graph was in directed mode or had banned turns, so paths
+     * have to be found with SearchWorkspace.route rather than search
+     *
+     * @return true if routes are restricted
+     */
+    public boolean isRestricted() {
+        return restricted;
+    }
+
+    /**
+     * Returns the slot that holds the same road from its other end, so a search can
+     * follow roads backwards. Only restricted snapshots keep this
+     *
+     * @param slot the road slot
+     * @return the slot of the same road in the town the slot leads to
+     * @throws IllegalStateException if the snapshot is not restricted
+     */
+    public int reverse(int slot) {
+        if (reverseSlots == null) {
+            throw new IllegalStateException("Only restricted snapshots keep reverse slots.");
+        }
+        return reverseSlots[slot];
+    }
+
+    /**
+     * Returns true if the snapshot has any banned turns
+     *
+     * @return true if some turn is banned
+     */
+    public boolean hasTurnBans() {
+        return bannedTurns.length > 0;
+    }
+
+    /**
+     * Returns true if a route may not go straight from one road slot into the next.
+     * Banned turns are kept as sorted keys, so this is a binary search
+     *
+     * @param in the slot of the road arriving at a town
+     * @param out the slot of the road leaving that town
+     * @return true if the turn is banned
+     */
+    public boolean isTurnBanned(int in, int out) {
+        return bannedTurns.length > 0 && Arrays.binarySearch(bannedTurns, turnKey(in, out)) >= 0;
+    }
+
+    /**
+     * Returns the road in a slot
+     *
+     * @param slot the road slot
+     * @return the road
+     */
+    public Road road(int slot) {
+        return roads[slot];
+    }
+
+    /**
+     * Describes a path in the same format as Graph.shortestPath
+     *
+     * @param source the id of the starting town
+     * @param slots the road slots of the path, in order
+     * @return steps in the format: startTown "via" road "to" endTown weight
+     */
+    public ArrayList<String> describePath(int source, int[] slots) {
+        ArrayList<String> path = new ArrayList<>(slots.length);
+        int current = source;
+        for (int slot : slots) {
+            int next = targets[slot];
+            path.add(towns[current] + " via " + roads[slot].getName() + " to " + towns[next] + " "
+                    + weightType.format(weights[slot]));
+            current = next;
+        }
+        return path;
+    }
+
+    /**
+     * Describes a path driven from a departure time, giving each step the travel time
+     * of its road at the moment the road is entered
+     *
+     * @param source the id of the starting town
+     * @param slots the road slots of the path, in order
+     * @param departure when the path is started
+     * @return steps in the format: startTown "via" road "to" endTown travelTime
+     */
+    public ArrayList<String> describePath(int source, int[] slots, int departure) {
+        ArrayList<String> path = new ArrayList<>(slots.length);
+        int current = source;
+        int time = departure;
+        for (int slot : slots) {
+            int next = targets[slot];
+            int travelTime = travelTime(slot, time);
+            path.add(towns[current] + " via " + roads[slot].getName() + " to " + towns[next] + " "
+                    + weightType.format(travelTime));
+            time += travelTime;
+            current = next;
+        }
+        return path;
+    }
+
+    /**
+     * Labels every town with the connected component it belongs to, taken from the
+     * graph's component index when the snapshot was made
+     *
+     * @return the component number of each town, indexed by town id
+     */
+    public int[] componentLabels() {
+        return components;
+    }
+
+    /**
+     * Returns the number of connected components
+     *
+     * @return the number of components
+     */
+    public int componentCount() {
+        return componentCount;
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.Arrays;
+
+/**
+ * Disjoint sets - a union-find structure over elements numbered from 0, stored in
+ * primitive arrays. Uses union by size and path halving, so every operation takes
+ * close to constant time
+ *
+ * @author Jessica Park
+ */
+
+public class DisjointSets {
+    private int[] parent;
+    private int[] size;
+    private int elements;
+    private int sets;
+
+    /**
+     * Constructor - creates a structure with no elements
+     */
+    public DisjointSets() {
+        this(0);
+    }
+
+    /**
+     * Constructor - creates a structure holding elements 0 to count - 1, each in its own set
+     *
+     * @param count the number of elements
+     */
+    public DisjointSets(int count) {
+        parent = new int[Math.max(count, 16)];
+        size = new int[parent.length];
+        while (elements < count) {
+            add();
+        }
+    }
+
+    /**
+     * Adds a new element in a set of its own
+     *
+     * @return the number of the new element
+     */
+    public int add() {
+        if (elements == parent.length) {
+            parent = Arrays.copyOf(parent, elements * 2);
+            size = Arrays.copyOf(size, elements * 2);
+        }
+        parent[elements] = elements;
+        size[elements] = 1;
+        sets++;
+        return elements++;
+    }
+
+    /**
+     * Finds the representative of the set holding an element
+     *
+     * @param element the element to look up
+     * @return the representative element of its set
+     */
+    public int find(int element) {
+        while (parent[element] != element) {
+            parent[element] = parent[parent[element]];
+            element = parent[element];
+        }
+        return element;
+    }
+
+    /**
+     * Merges the sets holding two elements
+     *
+     * @param a an element
+     * @param b another element
+     * @return true if the elements were in different sets
+     */
+    public boolean union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return false;
+        }
+        if (size[rootA] < size[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        sets--;
+        return true;
+    }
+
+    /**
+     * Returns true if two elements are in the same set
+     *
+     * @param a an element
+     * @param b another element
+     * @return true if the elements are in the same set
+     */
+    public boolean connected(int a, int b) {
+        return find(a) == find(b);
+    }
+
+    /**
+     * Returns the number of elements in the set holding an element
+     *
+     * @param element the element to look up
+     * @return the size of its set
+     */
+    public int setSize(int element) {
+        return size[find(element)];
+    }
+
+    /**
+     * Returns the number of elements
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        return elements;
+    }
+
+    /**
+     * Returns the number of separate sets
+     *
+     * @return the number of sets
+     */
+    public int setCount() {
+        return sets;
+    }
+
+    /**
+     * Returns the size of every set, largest first
+     *
+     * @return the set sizes in descending order
+     */
+    public int[] setSizes() {
+        int[] sizes = new int[sets];
+        int next = 0;
+        for (int i = 0; i < elements; i++) {
+            if (parent[i] == i) {
+                sizes[next++] = size[i];
+            }
+        }
+        Arrays.sort(sizes);
+        for (int i = 0, j = sizes.length - 1; i < j; i++, j--) {
+            int swap = sizes[i];
+            sizes[i] = sizes[j];
+            sizes[j] = swap;
+        }
+        return sizes;
+    }
+}
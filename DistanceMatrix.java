@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Distance matrix - an n by n table of distances stored outside the Java heap,
+ * either in direct buffers or in a memory-mapped file when it is bigger than memory.
+ * Distances are ints, or longs in a wide matrix for graphs with a wide WeightType.
+ * Rows are split into chunks of whole rows because one buffer can't exceed 2GB
+ *
+ * @author Jessica Park
+ */
+
+public class DistanceMatrix implements AutoCloseable {
+    private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+
+    private final int size;
+    private final boolean wide;
+    private final int rowsPerChunk;
+    private final IntBuffer[] chunks;
+    private final LongBuffer[] longChunks;
+    private final ByteBuffer[] buffers;
+    private final FileChannel channel;
+
+    private DistanceMatrix(int size, boolean wide, FileChannel channel) throws IOException {
+        long rowBytes = Math.max(1, entryBytes(wide) * size);
+        this.size = size;
+        this.wide = wide;
+        this.channel = channel;
+        this.rowsPerChunk = (int) Math.max(1, Math.min(size, MAX_CHUNK_BYTES / rowBytes));
+        int chunkCount = size == 0 ? 0 : (size + rowsPerChunk - 1) / rowsPerChunk;
+        this.chunks = wide ? null : new IntBuffer[chunkCount];
+        this.longChunks = wide ? new LongBuffer[chunkCount] : null;
+        this.buffers = new ByteBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            int rows = Math.min(rowsPerChunk, size - i * rowsPerChunk);
+            long bytes = rows * rowBytes;
+            buffers[i] = channel == null
+                    ? ByteBuffer.allocateDirect((int) bytes)
+                    : channel.map(FileChannel.MapMode.READ_WRITE, i * rowsPerChunk * rowBytes, bytes);
+            buffers[i].order(ByteOrder.nativeOrder());
+            if (wide) {
+                longChunks[i] = buffers[i].asLongBuffer();
+            } else {
+                chunks[i] = buffers[i].asIntBuffer();
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes one distance takes
+     *
+     * @param wide true for a matrix of long distances
+     * @return 8 for a wide matrix, otherwise 4
+     */
+    static long entryBytes(boolean wide) {
+        return wide ? 8 : 4;
+    }
+
+    /**
+     * Creates a matrix of int distances held in direct memory
+     *
+     * @param size the number of rows and columns
+     * @return the new matrix
+     */
+    public static DistanceMatrix inMemory(int size) {
+        return inMemory(size, false);
+    }
+
+    /**
+     * Creates a matrix held in direct memory
+     *
+     * @param size the number of rows and columns
+     * @param wide true to store long distances
+     * @return the new matrix
+     */
+    public static DistanceMatrix inMemory(int size, boolean wide) {
+        try {
+            return new DistanceMatrix(size, wide, null);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a matrix of int distances backed by a memory-mapped file, so rows are
+     * written out to disk by the operating system when the matrix doesn't fit in memory
+     *
+     * @param size the number of rows and columns
+     * @param file the file to store the matrix in, replaced if it exists
+     * @return the new matrix
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static DistanceMatrix mapped(int size, Path file) throws IOException {
+        return mapped(size, file, false);
+    }
+
+    /**
+     * Creates a matrix backed by a memory-mapped file
+     *
+     * @param size the number of rows and columns
+     * @param file the file to store the matrix in, replaced if it exists
+     * @param wide true to store long distances
+     * @return the new matrix
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static DistanceMatrix mapped(int size, Path file, boolean wide) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new DistanceMatrix(size, wide, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of rows and columns
+     *
+     * @return the size of the matrix
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the matrix stores long distances
+     *
+     * @return true for a wide matrix
+     */
+    public boolean isWide() {
+        return wide;
+    }
+
+    /**
+     * Returns one distance
+     *
+     * @param row the id of the source town
+     * @param column the id of the destination town
+     * @return the distance, or Integer.MAX_VALUE if the destination can't be reached
+     * @throws ArithmeticException if the matrix is wide and the distance does not fit in an int
+     */
+    public int get(int row, int column) {
+        if (wide) {
+            return toInt(getLong(row, column));
+        }
+        return chunks[row / rowsPerChunk].get((row % rowsPerChunk) * size + column);
+    }
+
+    /**
+     * Returns one distance as a long, which works for both int and wide matrices
+     *
+     * @param row the id of the source town
+     * @param column the id of the destination town
+     * @return the distance, or Long.MAX_VALUE if the destination can't be reached
+     */
+    public long getLong(int row, int column) {
+        if (!wide) {
+            return toLong(get(row, column));
+        }
+        return longChunks[row / rowsPerChunk].get((row % rowsPerChunk) * size + column);
+    }
+
+    /**
+     * Copies one row into an array
+     *
+     * @param row the id of the source town
+     * @param destination the array to copy into, at least size() long
+     * @throws ArithmeticException if the matrix is wide and a distance does not fit in an int
+     */
+    public void readRow(int row, int[] destination) {
+        if (wide) {
+            for (int column = 0; column < size; column++) {
+                destination[column] = get(row, column);
+            }
+            return;
+        }
+        chunks[row / rowsPerChunk].get((row % rowsPerChunk) * size, destination, 0, size);
+    }
+
+    /**
+     * Copies one row into an array of longs
+     *
+     * @param row the id of the source town
+     * @param destination the array to copy into, at least size() long
+     */
+    public void readRow(int row, long[] destination) {
+        if (!wide) {
+            for (int column = 0; column < size; column++) {
+                destination[column] = getLong(row, column);
+            }
+            return;
+        }
+        longChunks[row / rowsPerChunk].get((row % rowsPerChunk) * size, destination, 0, size);
+    }
+
+    /**
+     * Writes one row. Different rows may be written from different threads at once
+     *
+     * @param row the id of the source town
+     * @param distances the distances to write, at least size() long
+     */
+    public void writeRow(int row, int[] distances) {
+        if (wide) {
+            LongBuffer chunk = longChunks[row / rowsPerChunk];
+            int start = (row % rowsPerChunk) * size;
+            for (int column = 0; column < size; column++) {
+                chunk.put(start + column, toLong(distances[column]));
+            }
+            return;
+        }
+        chunks[row / rowsPerChunk].put((row % rowsPerChunk) * size, distances, 0, size);
+    }
+
+    /**
+     * Writes one row of long distances
+     *
+     * @param row the id of the source town
+     * @param distances the distances to write, at least size() long
+     * @throws ArithmeticException if the matrix is not wide and a distance does not fit in an int
+     */
+    public void writeRow(int row, long[] distances) {
+        if (!wide) {
+            IntBuffer chunk = chunks[row / rowsPerChunk];
+            int start = (row % rowsPerChunk) * size;
+            for (int column = 0; column < size; column++) {
+                chunk.put(start + column, toInt(distances[column]));
+            }
+            return;
+        }
+        longChunks[row / rowsPerChunk].put((row % rowsPerChunk) * size, distances, 0, size);
+    }
+
+    private static int toInt(long distance) {
+        return distance == Long.MAX_VALUE ? Integer.MAX_VALUE : Math.toIntExact(distance);
+    }
+
+    private static long toLong(int distance) {
+        return distance == Integer.MAX_VALUE ? Long.MAX_VALUE : distance;
+    }
+
+    /**
+     * Flushes a file-backed matrix to disk and releases the file
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            for (ByteBuffer buffer : buffers) {
+                ((java.nio.MappedByteBuffer) buffer).force();
+            }
+            channel.close();
+        }
+    }
+}
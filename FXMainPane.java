@@ -3,15 +3,21 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.Control;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Alert.AlertType;
@@ -24,19 +30,32 @@ public class FXMainPane extends VBox {
 	VBox addTownVBox, addRoadVBox, findConnectionVBox, bottomVBox;
 	HBox addTownHBox, addRoadNameHBox, addRoadHBox, addRoadTownsHBox, findConnectionHBox, bottomHBox;
 	Button addTownButton, addRoadButton, findConnectionButton, readFileButton, exitButton;
-	Button displayTownsButton, displayRoadsButton;
+	Button displayTownsButton, displayRoadsButton, cancelButton;
+	ProgressBar progressBar;
 	TextField addTownTextField, addRoadTextField, specifyDistanceTextField;
-	TextArea findConnectionTextArea, displayTowns, displayRoads;
+	TextArea findConnectionTextArea;
+	ListView<String> displayTowns, displayRoads;
+	PagedNameList townItems, roadItems;
 	ComboBox<String> addSourceTownComboBox, addDestTownComboBox, sourceConnectionComboBox, destConnectionComboBox; 
 	Insets inset, inset2, inset3;
 
 	TownGraphManager graph;
 	private Alert alert = new Alert(AlertType.INFORMATION);
+	//loads and searches run one at a time on this thread so the window stays responsive
+	private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "graph-worker");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private Task<?> runningTask;
 	
 	
 	FXMainPane() {
 		//TownGraphManager object
 		graph = new TownGraphManager();
+		//sorted town and road lists, read a page at a time by the list views and combo boxes
+		townItems = new PagedNameList(graph::townCount, graph::allTowns);
+		roadItems = new PagedNameList(graph::roadCount, graph::allRoads);
 		//set up margins
 		inset = new Insets(10);
 		
@@ -49,7 +68,7 @@ public class FXMainPane extends VBox {
 		addTownTextField = new TextField();
 		addTownTextField.setPrefColumnCount(10);
 		
-		displayTowns = new TextArea();
+		displayTowns = new ListView<String>(townItems);
 		
 		addTownButton = new Button("Add Town");
 		displayTownsButton = new Button("Display Towns");
@@ -93,11 +112,11 @@ public class FXMainPane extends VBox {
 		selectTownsForRoadLabel = new Label("Select Towns the Road Connects");
 		distLabel = new Label("Distance");
 		
-		displayRoads = new TextArea();
+		displayRoads = new ListView<String>(roadItems);
 
 		//ComboBoxes of all towns
-		addSourceTownComboBox = new ComboBox<String>();
-		addDestTownComboBox = new ComboBox<String>();
+		addSourceTownComboBox = new ComboBox<String>(townItems);
+		addDestTownComboBox = new ComboBox<String>(townItems);
 
 		displayRoadsButton = new Button("Display Roads");
 		addRoadButton = new Button("Add Road");
@@ -158,8 +177,8 @@ public class FXMainPane extends VBox {
 
 	    
 		//find connection area components
-	    sourceConnectionComboBox = new ComboBox<String>();
-	    destConnectionComboBox = new ComboBox<String>();
+	    sourceConnectionComboBox = new ComboBox<String>(townItems);
+	    destConnectionComboBox = new ComboBox<String>(townItems);
 
 	    findConnectionLabel = new Label("Find Connection");
 	    findConnectionLabel.setStyle("-fx-font-size: 14px; -fx-font-weight: bold");
@@ -193,40 +212,30 @@ public class FXMainPane extends VBox {
 	    bottomHBox = new HBox();
 		readFileButton = new Button("Read File");
 		exitButton =new Button("Exit");
+		cancelButton = new Button("Cancel");
+		cancelButton.setDisable(true);
+		progressBar = new ProgressBar();
+		progressBar.setVisible(false);
 
 		bottomVBox = new VBox();
 		bottomVBox.getChildren().addAll(bottomHBox);
 		bottomVBox.setStyle("-fx-border-color: gray;");
 
-		bottomHBox.getChildren().addAll(readFileButton, exitButton);
+		bottomHBox.getChildren().addAll(readFileButton, progressBar, cancelButton, exitButton);
 		
 		bottomHBox.setAlignment(Pos.CENTER);
 
 		VBox.setMargin(bottomHBox,inset);
 	    HBox.setMargin(readFileButton, inset);
+	    HBox.setMargin(progressBar, inset);
+	    HBox.setMargin(cancelButton, inset);
 	    HBox.setMargin(exitButton, inset);
 
 		getChildren().addAll(addTown, addRoad, findConnectionVBox, bottomHBox);
 		
 		//event handling for buttons
-		displayTownsButton.setOnAction(event -> {
-			ArrayList<String> towns = graph.allTowns();
-			String result = "";
-			for(String element : towns)
-			{
-				result += element+"\n";
-			}
-			displayTowns.setText(result);
-		});
-		displayRoadsButton.setOnAction(event -> {
-			ArrayList<String> roads = graph.allRoads();
-			String result = "";
-			for(String element : roads)
-			{
-				result += element+"\n";
-			}
-			displayRoads.setText(result);
-		});
+		displayTownsButton.setOnAction(event -> townItems.refresh());
+		displayRoadsButton.setOnAction(event -> roadItems.refresh());
 		addRoadButton.setOnAction(event -> {
 			Town town1;
 			Town town2;
@@ -256,7 +265,9 @@ public class FXMainPane extends VBox {
 				alert.showAndWait();
 			}
 			else if (town1 !=null && town2!=null) {
-				graph.addRoad(town1.getName(), town2.getName(), weight, name);
+				if (graph.addRoad(town1.getName(), town2.getName(), weight, name)) {
+					roadItems.added(graph.roadPosition(name));
+				}
 				addSourceTownComboBox.setValue(null);
 				addDestTownComboBox.setValue(null);
 				addRoadTextField.setText("");
@@ -276,7 +287,7 @@ public class FXMainPane extends VBox {
 				alert.showAndWait();
 			}
 			else if (graph.addTown(townName)){
-				updateComboBoxes();
+				townItems.added(graph.townPosition(townName));
 				addTownTextField.setText("");
 			}
 			else {
@@ -286,30 +297,48 @@ public class FXMainPane extends VBox {
 			}
 		});
 		findConnectionButton.setOnAction(event -> {
-			Town town1;
-			Town town2;
-			String result = "";
-			try {
-				town1 = graph.getTown(sourceConnectionComboBox.getValue().toString());
-				town2 = graph.getTown(destConnectionComboBox.getValue().toString());
-			} catch (NullPointerException e) {
-				town1 = town2 = null;
-			}
+			String town1 = sourceConnectionComboBox.getValue();
+			String town2 = destConnectionComboBox.getValue();
 			findConnectionTextArea.setText("");
-			ArrayList<String> path = graph.getPath(town1.getName(), town2.getName());
+			if (town1 == null || town2 == null) {
+				findConnectionTextArea.appendText("Select two towns");
+				return;
+			}
 			if (town1.equals(town2)){
 				findConnectionTextArea.appendText("Select two different towns");
+				return;
 			}
-			else if (path.isEmpty()){
-				findConnectionTextArea.appendText("You can't get there from here");
-			}
-			else {
-				for (String s : path){
-					result+=s+"\n";
-					//findConnectionTextArea.appendText(s);
-					findConnectionTextArea.setText(result);
+			//cancelling the task only marks it cancelled, so the token is what stops the search
+			CancellationToken token = new CancellationToken();
+			Task<ArrayList<String>> task = new Task<ArrayList<String>>() {
+				@Override
+				protected ArrayList<String> call() {
+					return graph.getPath(town1, town2, token);
 				}
-			}
+
+				@Override
+				public boolean cancel(boolean mayInterruptIfRunning) {
+					token.cancel();
+					return super.cancel(mayInterruptIfRunning);
+				}
+			};
+			task.setOnSucceeded(done -> {
+				ArrayList<String> path = task.getValue();
+				if (path == null || path.isEmpty()){
+					findConnectionTextArea.setText("You can't get there from here");
+				}
+				else {
+					StringBuilder result = new StringBuilder();
+					for (String s : path){
+						result.append(s).append("\n");
+					}
+					findConnectionTextArea.setText(result.toString());
+				}
+			});
+			task.setOnCancelled(done -> findConnectionTextArea.setText("Search cancelled"));
+			task.setOnFailed(done -> findConnectionTextArea.setText("Search failed: " + task.getException().getMessage()));
+			findConnectionTextArea.setText("Searching...");
+			runInBackground(task, () -> { });
 		});
 		readFileButton.setOnAction(event -> {
 			try {
@@ -318,48 +347,76 @@ public class FXMainPane extends VBox {
 				e.printStackTrace();
 			}
 		});
+		cancelButton.setOnAction(event -> {
+			if (runningTask != null) {
+				runningTask.cancel(true);
+			}
+		});
 		exitButton.setOnAction(event -> {
        	 	Platform.exit();
        	 	System.exit(0);
 		});
 			
 	}
-	//update the ComboBoxes that contain the town names
+	//update the ComboBoxes and lists after many towns and roads have changed at once
 	public void updateComboBoxes() {
-		ArrayList<String> townList = graph.allTowns();
-		for (String town : townList){
-			addDestTownComboBox.getItems().clear();
-			sourceConnectionComboBox.getItems().clear();
-			destConnectionComboBox.getItems().clear();
-			addSourceTownComboBox.getItems().clear();
-		}
-		for (String town : townList){
-			addDestTownComboBox.getItems().addAll(town);
-			sourceConnectionComboBox.getItems().addAll(town);
-			destConnectionComboBox.getItems().addAll(town);
-			addSourceTownComboBox.getItems().addAll(town); 
-		}	
+		townItems.refresh();
+		roadItems.refresh();
 	}
 	
-	//Select the file to read the Towns and Roads from
+	//Select the file to read the Towns and Roads from, then load it in the background
 	public void readFile() {
 		FileChooser chooser = new FileChooser();
-		File selectedFile = null;
-		try {
-			selectedFile = chooser.showOpenDialog(null);
-			if(selectedFile != null) {
-				graph.populateTownGraph(selectedFile);
-				}
-			updateComboBoxes();
-		} catch (FileNotFoundException e) {
-			alert.setTitle("File Error");
-			alert.setHeaderText("File not found");
-			alert.showAndWait();
+		File selectedFile = chooser.showOpenDialog(null);
+		if (selectedFile == null) {
+			return;
 		}
-		catch (IOException e) {
+		Task<Void> task = new Task<Void>() {
+			@Override
+			protected Void call() throws IOException {
+				graph.populateTownGraph(selectedFile, (bytesRead, totalBytes) -> updateProgress(bytesRead, totalBytes));
+				return null;
+			}
+		};
+		task.setOnFailed(done -> {
 			alert.setTitle("File Error");
-			alert.setHeaderText("Input error");
+			alert.setHeaderText(task.getException() instanceof FileNotFoundException ? "File not found" : "Input error");
 			alert.showAndWait();
+		});
+		//the load changes the graph on the worker thread, so the lists must not page from it until
+		//the worker is done, even if the load was cancelled
+		townItems.suspend();
+		roadItems.suspend();
+		runInBackground(task, this::updateComboBoxes);
+	}
+
+	//Run a task on the worker thread, disabling the controls that use the graph until the worker has
+	//returned from it, then run whenDone on the FX thread. A cancelled task stops running at once
+	//while the worker may still be using the graph, so the controls wait for the worker instead
+	private void runInBackground(Task<?> task, Runnable whenDone) {
+		runningTask = task;
+		progressBar.progressProperty().bind(task.progressProperty());
+		cancelButton.disableProperty().bind(task.runningProperty().not());
+		setBusy(true);
+		worker.execute(() -> {
+			try {
+				task.run();
+			} finally {
+				Platform.runLater(() -> {
+					setBusy(false);
+					whenDone.run();
+				});
+			}
+		});
+	}
+
+	//Disable or enable the controls that use the graph, showing the progress bar while they are disabled
+	private void setBusy(boolean busy) {
+		progressBar.setVisible(busy);
+		for (Control control : new Control[] { addTownButton, addRoadButton, findConnectionButton, readFileButton,
+				displayTownsButton, displayRoadsButton, displayTowns, displayRoads, addSourceTownComboBox,
+				addDestTownComboBox, sourceConnectionComboBox, destConnectionComboBox }) {
+			control.setDisable(busy);
 		}
 	}
 }
\ No newline at end of file
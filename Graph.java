@@ -8,12 +8,43 @@ import java.util.*;
 
 public class Graph implements GraphInterface<Town, Road> {
     private Map<Town, Set<Road>> adjacencyList;
+    private final WeightType weightType;
+    private long version;
+    private CompactGraph compact;
+    private final RoadNameDictionary roadNames = new RoadNameDictionary();
+    private final TownNameIndex townNames = new TownNameIndex();
+    private final Map<Town, Integer> componentIds = new HashMap<>();
+    private DisjointSets components = new DisjointSets();
+    private boolean componentsStale;
+    private boolean directed;
+    private final Set<List<Town>> turnBans = new LinkedHashSet<>();
+    private final TravelTimeProfiles profiles = new TravelTimeProfiles();
 
     /**
-     * Constructor - initializes an empty graph
+     * Constructor - initializes an empty graph whose path lengths are ints
      */
     public Graph() {
+        this(WeightType.INT);
+    }
+
+    /**
+     * Constructor - initializes an empty graph that adds up path lengths the given way
+     *
+     * @param weightType INT for the fastest searches, LONG or FIXED_POINT for networks
+     * whose paths can be longer than an int holds
+     */
+    public Graph(WeightType weightType) {
         this.adjacencyList = new HashMap<>();
+        this.weightType = weightType;
+    }
+
+    /**
+     * Returns how this graph adds up path lengths
+     *
+     * @return the weight type chosen when the graph was built
+     */
+    public WeightType getWeightType() {
+        return weightType;
     }
 
     /**
@@ -57,12 +88,236 @@ public class Graph implements GraphInterface<Town, Road> {
         if (!containsVertex(sourceVertex) || !containsVertex(destinationVertex)) {
             throw new IllegalArgumentException("Vertices must be in the graph.");
         }
-        Road road = new Road(sourceVertex, destinationVertex, weight, description);
+        Road road = newRoad(sourceVertex, destinationVertex, weight, description);
         adjacencyList.get(sourceVertex).add(road);
         adjacencyList.get(destinationVertex).add(road);
+        joinComponents(road);
+        version++;
+        return road;
+    }
+
+    /**
+     * Creates a new edge with attribute bits, for example a one-way road from the
+     * source vertex to the target vertex
+     *
+     * @param sourceVertex source vertex of the edge
+     * @param destinationVertex target vertex of the edge
+     * @param weight weight of the edge
+     * @param description description for edge
+     * @param attributes the road's attribute bits, see Road.ONE_WAY and the others
+     * @return The newly created edge
+     * @throws IllegalArgumentException if source or target vertices are not found in the graph
+     * @throws NullPointerException if any of the specified vertices is null
+     */
+    public Road addEdge(Town sourceVertex, Town destinationVertex, int weight, String description, int attributes) {
+        Road road = addEdge(sourceVertex, destinationVertex, weight, description);
+        road.setAttributes(attributes);
         return road;
     }
 
+    /**
+     * Changes the attribute bits of the road between two towns
+     *
+     * @param sourceVertex one town on the road
+     * @param destinationVertex the other town on the road
+     * @param attributes the new attribute bits
+     * @return the updated road, or null if there is no road between the towns
+     */
+    public Road setAttributes(Town sourceVertex, Town destinationVertex, int attributes) {
+        Road road = getEdge(sourceVertex, destinationVertex);
+        if (road != null && road.getAttributes() != attributes) {
+            road.setAttributes(attributes);
+            version++;
+        }
+        return road;
+    }
+
+    /**
+     * Changes the toll cost of the road between two towns
+     *
+     * @param sourceVertex one town on the road
+     * @param destinationVertex the other town on the road
+     * @param cost the new cost
+     * @return the updated road, or null if there is no road between the towns
+     * @throws IllegalArgumentException if the cost is negative
+     */
+    public Road setCost(Town sourceVertex, Town destinationVertex, int cost) {
+        if (cost < 0) {
+            throw new IllegalArgumentException("Cost cannot be negative.");
+        }
+        Road road = getEdge(sourceVertex, destinationVertex);
+        if (road != null && road.getCost() != cost) {
+            road.setCost(cost);
+            version++;
+        }
+        return road;
+    }
+
+    /**
+     * Adds a travel time profile that any number of roads can then share
+     *
+     * @param departures the departure times of the breakpoints, in increasing order
+     * @param durations the travel time for each departure time
+     * @return the number of the profile, to pass to setProfile
+     * @throws IllegalArgumentException if the profile is invalid, see TravelTimeProfiles.add
+     */
+    public int addProfile(int[] departures, int[] durations) {
+        return profiles.add(departures, durations);
+    }
+
+    /**
+     * Gives the road between two towns a travel time profile. Time-dependent searches
+     * then use the profile, everything else still uses the road's weight
+     *
+     * @param sourceVertex one town on the road
+     * @param destinationVertex the other town on the road
+     * @param profile a number returned by addProfile, or -1 to remove the road's profile
+     * @return the updated road, or null if there is no road between the towns
+     * @throws IllegalArgumentException if there is no such profile
+     */
+    public Road setProfile(Town sourceVertex, Town destinationVertex, int profile) {
+        checkProfile(profile);
+        Road road = getEdge(sourceVertex, destinationVertex);
+        if (road != null && road.getProfile() != profile) {
+            road.setProfile(profile);
+            version++;
+        }
+        return road;
+    }
+
+    /**
+     * Checks that a profile number can be given to a road
+     *
+     * @param profile a number returned by addProfile, or -1 for no profile
+     * @throws IllegalArgumentException if there is no such profile
+     */
+    void checkProfile(int profile) {
+        if (profile < -1 || profile >= profiles.size()) {
+            throw new IllegalArgumentException("No travel time profile " + profile + ".");
+        }
+    }
+
+    /**
+     * Returns how long a road takes when entered at a given time
+     *
+     * @param road a road of this graph
+     * @param departure when the road is entered
+     * @return the travel time from the road's profile, or its weight if it has none
+     */
+    public int travelTime(Road road, int departure) {
+        return road.getProfile() < 0 ? road.getWeight() : profiles.travelTime(road.getProfile(), departure);
+    }
+
+    /**
+     * Returns the travel time profiles shared by the roads of this graph
+     *
+     * @return the profiles
+     */
+    TravelTimeProfiles travelTimeProfiles() {
+        return profiles;
+    }
+
+    /**
+     * Turns directed mode on or off. In directed mode one-way roads can only be driven
+     * from their source to their destination, otherwise every road works both ways
+     *
+     * @param directed true to honor one-way roads
+     */
+    public void setDirected(boolean directed) {
+        if (this.directed != directed) {
+            this.directed = directed;
+            version++;
+        }
+    }
+
+    /**
+     * Returns true if one-way roads are honored
+     *
+     * @return true in directed mode
+     */
+    public boolean isDirected() {
+        return directed;
+    }
+
+    /**
+     * Bans turning from one road into another. Routes can no longer arrive at the
+     * middle town from the first town and leave it towards the last town
+     *
+     * @param from the town the route comes from
+     * @param via the town where the turn is made
+     * @param to the town the route would turn towards
+     * @return true if the turn was not banned already
+     * @throws IllegalArgumentException if either road does not exist
+     * @throws NullPointerException if any of the towns is null
+     */
+    public boolean banTurn(Town from, Town via, Town to) {
+        checkTurn(from, via, to);
+        if (!turnBans.add(List.of(from, via, to))) {
+            return false;
+        }
+        version++;
+        return true;
+    }
+
+    /**
+     * Checks that three towns describe a turn that can be banned
+     *
+     * @param from the town the route comes from
+     * @param via the town where the turn is made
+     * @param to the town the route would turn towards
+     * @throws IllegalArgumentException if either road does not exist
+     * @throws NullPointerException if any of the towns is null
+     */
+    void checkTurn(Town from, Town via, Town to) {
+        if (from == null || via == null || to == null) {
+            throw new NullPointerException("Towns cannot be null.");
+        }
+        if (from.equals(via) || via.equals(to) || !containsEdge(from, via) || !containsEdge(via, to)) {
+            throw new IllegalArgumentException("A turn must join two roads meeting at a town.");
+        }
+    }
+
+    /**
+     * Lifts a turn ban
+     *
+     * @param from the town the route comes from
+     * @param via the town where the turn is made
+     * @param to the town the route would turn towards
+     * @return true if the turn was banned
+     */
+    public boolean allowTurn(Town from, Town via, Town to) {
+        if (!turnBans.remove(Arrays.asList(from, via, to))) {
+            return false;
+        }
+        version++;
+        return true;
+    }
+
+    /**
+     * Returns the banned turns, each as the list of its three towns
+     *
+     * @return the banned turns
+     */
+    Set<List<Town>> turnBans() {
+        return Collections.unmodifiableSet(turnBans);
+    }
+
+    /**
+     * Drops the turn bans whose roads have been removed, so a road added again later
+     * does not bring its old bans back
+     */
+    private void pruneTurnBans() {
+        turnBans.removeIf(ban -> !containsEdge(ban.get(0), ban.get(1)) || !containsEdge(ban.get(1), ban.get(2)));
+    }
+
+    /**
+     * Returns true if path queries have to consider one-way roads or banned turns,
+     * which the cached shortest path trees don't know about
+     */
+    private boolean isRestricted() {
+        return directed || !turnBans.isEmpty();
+    }
+
     /**
      * Adds the specified vertex to this graph if not already present
      *
@@ -77,6 +332,9 @@ public class Graph implements GraphInterface<Town, Road> {
         }
         if (!adjacencyList.containsKey(v)) {
             adjacencyList.put(v, new HashSet<>());
+            townNames.add(v);
+            newComponent(v);
+            version++;
             return true;
         }
         return false;
@@ -145,16 +403,21 @@ public class Graph implements GraphInterface<Town, Road> {
      *
      * @param sourceVertex source vertex of the edge
      * @param destinationVertex target vertex of the edge
-     * @param weight weight of the edge
-     * @param description description of the edge
+     * @param weight weight of the edge, only checked if it is greater than -1
+     * @param description description of the edge, only checked if it is not null
      * @return The removed edge, or null if no edge removed
      */
     @Override
     public Road removeEdge(Town sourceVertex, Town destinationVertex, int weight, String description) {
         Road road = getEdge(sourceVertex, destinationVertex);
-        if (road != null && road.getWeight() == weight && road.getName().equals(description)) {
+        if (road != null && (weight <= -1 || road.getWeight() == weight)
+                && (description == null || road.getName().equals(description))) {
             adjacencyList.get(sourceVertex).remove(road);
             adjacencyList.get(destinationVertex).remove(road);
+            roadNames.remove(road);
+            componentsStale = true;
+            pruneTurnBans();
+            version++;
             return road;
         }
         return null;
@@ -171,13 +434,387 @@ public class Graph implements GraphInterface<Town, Road> {
         if (v == null || !adjacencyList.containsKey(v)) {
             return false;
         }
-        adjacencyList.remove(v);
-        for (Set<Road> roads : adjacencyList.values()) {
-            roads.removeIf(road -> road.contains(v));
+        for (Road road : adjacencyList.remove(v)) {
+            Town other = road.getSource().equals(v) ? road.getDestination() : road.getSource();
+            Set<Road> roads = adjacencyList.get(other);
+            if (roads != null) {
+                roads.remove(road);
+            }
+            roadNames.remove(road);
+        }
+        townNames.remove(v.getName());
+        componentsStale = true;
+        pruneTurnBans();
+        version++;
+        return true;
+    }
+
+    /**
+     * Checks that every edit in a batch can be applied to this graph
+     *
+     * @param batch the edits to check
+     * @throws IllegalArgumentException if the batch is invalid or gives a road a travel
+     * time profile this graph does not have
+     */
+    void check(GraphBatch batch) {
+        batch.validate();
+        for (int i = 0; i < batch.roadsToAdd().size(); i++) {
+            checkProfile(batch.profileOf(i));
+        }
+    }
+
+    /**
+     * Applies every edit in a batch in one pass over the adjacency list, grouped by town.
+     * The graph version is bumped once for the whole batch
+     *
+     * @param batch the edits to apply
+     * @return the number of edits that changed the graph
+     * @throws IllegalArgumentException if the batch is invalid or gives a road a travel
+     * time profile this graph does not have, in which case nothing is applied
+     */
+    public int apply(GraphBatch batch) {
+        check(batch);
+        int changed = 0;
+
+        Set<Town> deletedTowns = new HashSet<>();
+        Set<Road> deletedRoads = new HashSet<>();
+        Map<Town, List<Road>> removals = new HashMap<>();
+        for (String name : batch.townsToDelete()) {
+            Town town = new Town(name);
+            Set<Road> roads = adjacencyList.remove(town);
+            if (roads == null) {
+                continue;
+            }
+            deletedTowns.add(town);
+            townNames.remove(name);
+            changed++;
+            for (Road road : roads) {
+                Town other = road.getSource().equals(town) ? road.getDestination() : road.getSource();
+                removals.computeIfAbsent(other, k -> new ArrayList<>()).add(road);
+                if (deletedRoads.add(road)) {
+                    roadNames.remove(road);
+                }
+            }
+        }
+        for (String[] edit : batch.roadsToDelete()) {
+            Town t1 = new Town(edit[0]);
+            Town t2 = new Town(edit[1]);
+            if (deletedTowns.contains(t1) || deletedTowns.contains(t2)) {
+                continue;
+            }
+            Road road = getEdge(t1, t2);
+            if (road != null && road.getName().equals(edit[2]) && deletedRoads.add(road)) {
+                roadNames.remove(road);
+                removals.computeIfAbsent(t1, k -> new ArrayList<>()).add(road);
+                removals.computeIfAbsent(t2, k -> new ArrayList<>()).add(road);
+                changed++;
+            }
+        }
+        if (!deletedTowns.isEmpty() || !deletedRoads.isEmpty()) {
+            componentsStale = true;
+        }
+        for (Map.Entry<Town, List<Road>> entry : removals.entrySet()) {
+            Set<Road> roads = adjacencyList.get(entry.getKey());
+            if (roads != null) {
+                roads.removeAll(entry.getValue());
+            }
+        }
+        if (!deletedRoads.isEmpty()) {
+            pruneTurnBans();
+        }
+
+        for (String name : batch.townsToAdd()) {
+            if (addTown(new Town(name))) {
+                changed++;
+            }
+        }
+        Map<Town, List<Road>> additions = new HashMap<>();
+        List<String[]> roadsToAdd = batch.roadsToAdd();
+        for (int i = 0; i < roadsToAdd.size(); i++) {
+            String[] edit = roadsToAdd.get(i);
+            Town t1 = new Town(edit[0]);
+            Town t2 = new Town(edit[1]);
+            if (addTown(t1)) {
+                changed++;
+            }
+            if (addTown(t2)) {
+                changed++;
+            }
+            if (containsEdge(t1, t2)) {
+                continue;
+            }
+            Road road = newRoad(t1, t2, batch.weightOf(i), edit[2]);
+            road.setAttributes(batch.attributesOf(i));
+            road.setCost(batch.costOf(i));
+            road.setProfile(batch.profileOf(i));
+            additions.computeIfAbsent(t1, k -> new ArrayList<>()).add(road);
+            additions.computeIfAbsent(t2, k -> new ArrayList<>()).add(road);
+            changed++;
+        }
+        for (Map.Entry<Town, List<Road>> entry : additions.entrySet()) {
+            adjacencyList.get(entry.getKey()).addAll(entry.getValue());
+            for (Road road : entry.getValue()) {
+                joinComponents(road);
+            }
+        }
+
+        for (String[] turn : batch.turnsToAllow()) {
+            if (turnBans.remove(Arrays.asList(new Town(turn[0]), new Town(turn[1]), new Town(turn[2])))) {
+                changed++;
+            }
+        }
+        for (String[] turn : batch.turnsToBan()) {
+            Town from = new Town(turn[0]);
+            Town via = new Town(turn[1]);
+            Town to = new Town(turn[2]);
+            if (!from.equals(via) && !via.equals(to) && containsEdge(from, via) && containsEdge(via, to)
+                    && turnBans.add(List.of(from, via, to))) {
+                changed++;
+            }
+        }
+        if (batch.directed() != null && batch.directed() != directed) {
+            directed = batch.directed();
+            changed++;
+        }
+
+        if (changed > 0) {
+            version++;
+        }
+        return changed;
+    }
+
+    /**
+     * Finds the changes that turn this graph into a newer one
+     *
+     * @param newer the later version of the graph
+     * @return the delta from this graph to newer
+     */
+    public GraphDelta diff(Graph newer) {
+        return GraphDelta.diff(this, newer);
+    }
+
+    /**
+     * Applies a delta in place. Weight changes repair cached shortest path trees, and
+     * the other changes are applied as one batch
+     *
+     * @param delta the changes to apply
+     * @return the number of changes that altered the graph
+     */
+    public int apply(GraphDelta delta) {
+        return delta.applyTo(this);
+    }
+
+    /**
+     * Creates an ArrayList of the name of every road in sorted order, with a name
+     * repeated once for every road that has it
+     *
+     * @return an ArrayList of all road names in sorted order
+     */
+    public ArrayList<String> allRoadNames() {
+        return roadNames.allNames();
+    }
+
+    /**
+     * Returns a page of the sorted list made by allRoadNames()
+     *
+     * @param from the position of the first name
+     * @param count the most names to return
+     * @return up to count road names starting at position from
+     */
+    public ArrayList<String> allRoadNames(int from, int count) {
+        return roadNames.names(from, count);
+    }
+
+    /**
+     * Returns the position of a road name in the list made by allRoadNames()
+     *
+     * @param name the road name
+     * @return the position of the first road with the name, or where it would be
+     */
+    public int roadNamePosition(String name) {
+        return roadNames.position(name);
+    }
+
+    /**
+     * Returns the number of roads in this graph
+     *
+     * @return the number of roads
+     */
+    public int edgeCount() {
+        return roadNames.total();
+    }
+
+    /**
+     * Returns the number of roads with the given name
+     *
+     * @param name the road name
+     * @return the number of roads with that name
+     */
+    public int roadCount(String name) {
+        int code = roadNames.code(name);
+        return code < 0 ? 0 : roadNames.count(code);
+    }
+
+    /**
+     * Returns every road segment with the given name
+     *
+     * @param name the road name
+     * @return an unmodifiable view of the roads with that name, empty if there are none
+     */
+    public Set<Road> roadsNamed(String name) {
+        int code = roadNames.code(name);
+        return code < 0 ? Collections.emptySet() : roadNames.roads(code);
+    }
+
+    /**
+     * Removes every segment of a named road in one pass, for example when the
+     * whole road is closed
+     *
+     * @param name the road name
+     * @return the number of road segments removed
+     */
+    public int closeRoad(String name) {
+        List<Road> segments = new ArrayList<>(roadsNamed(name));
+        for (Road road : segments) {
+            adjacencyList.get(road.getSource()).remove(road);
+            adjacencyList.get(road.getDestination()).remove(road);
+            roadNames.remove(road);
+        }
+        if (!segments.isEmpty()) {
+            componentsStale = true;
+            pruneTurnBans();
+            version++;
         }
+        return segments.size();
+    }
+
+    private Road newRoad(Town source, Town destination, int weight, String description) {
+        int code = roadNames.intern(description);
+        Road road = new Road(source, destination, weight, roadNames.name(code), code);
+        roadNames.add(road);
+        return road;
+    }
+
+    /**
+     * Returns a primitive array snapshot of this graph, rebuilt only when the graph has changed
+     *
+     * @return the snapshot for the current version
+     */
+    public synchronized CompactGraph compact() {
+        if (compact == null || compact.getVersion() != version) {
+            compact = new CompactGraph(this);
+        }
+        return compact;
+    }
+
+    private boolean addTown(Town town) {
+        if (adjacencyList.putIfAbsent(town, new HashSet<>()) != null) {
+            return false;
+        }
+        townNames.add(town);
+        newComponent(town);
         return true;
     }
 
+    private void newComponent(Town town) {
+        if (!componentsStale) {
+            componentIds.put(town, components.add());
+        }
+    }
+
+    private void joinComponents(Road road) {
+        if (!componentsStale) {
+            components.union(componentIds.get(road.getSource()), componentIds.get(road.getDestination()));
+        }
+    }
+
+    /**
+     * Returns the component index, rebuilding it first if roads or towns have been
+     * deleted since it was last built. Additions keep it up to date as they happen
+     */
+    private DisjointSets componentIndex() {
+        if (componentsStale) {
+            componentIds.clear();
+            components = new DisjointSets(adjacencyList.size());
+            for (Town town : adjacencyList.keySet()) {
+                componentIds.put(town, componentIds.size());
+            }
+            for (Map.Entry<Town, Set<Road>> entry : adjacencyList.entrySet()) {
+                int id = componentIds.get(entry.getKey());
+                for (Road road : entry.getValue()) {
+                    components.union(id, componentIds.get(road.getSource()));
+                }
+            }
+            componentsStale = false;
+        }
+        return components;
+    }
+
+    /**
+     * Labels towns with their connected components from the component index, numbering
+     * the components from 0 in the order they are first met
+     *
+     * @param towns towns of this graph
+     * @return the component number of each town, in the same order
+     */
+    int[] componentLabels(Town[] towns) {
+        DisjointSets index = componentIndex();
+        int[] labelOfSet = new int[index.size()];
+        Arrays.fill(labelOfSet, -1);
+        int[] labels = new int[towns.length];
+        int count = 0;
+        for (int i = 0; i < towns.length; i++) {
+            int set = index.find(componentIds.get(towns[i]));
+            if (labelOfSet[set] < 0) {
+                labelOfSet[set] = count++;
+            }
+            labels[i] = labelOfSet[set];
+        }
+        return labels;
+    }
+
+    /**
+     * Returns true if there is a route between two towns
+     *
+     * @param sourceVertex one town
+     * @param destinationVertex the other town
+     * @return true if both towns are in the graph and in the same connected component
+     */
+    public boolean connected(Town sourceVertex, Town destinationVertex) {
+        DisjointSets index = componentIndex();
+        Integer a = componentIds.get(sourceVertex);
+        Integer b = componentIds.get(destinationVertex);
+        return a != null && b != null && index.connected(a, b);
+    }
+
+    /**
+     * Returns the size of every connected component
+     *
+     * @return the number of towns in each component, largest first
+     */
+    public int[] components() {
+        return componentIndex().setSizes();
+    }
+
+    /**
+     * Returns the index of town names, kept up to date as towns are added and removed
+     *
+     * @return the town name index
+     */
+    public TownNameIndex townIndex() {
+        return townNames;
+    }
+
+    /**
+     * Returns the version of this graph, which changes every time the graph is modified.
+     * A batch of edits only changes the version once
+     *
+     * @return the current version of the graph
+     */
+    public long getVersion() {
+        return version;
+    }
+
     /**
      * Returns a set of the vertices contained in this graph
      *
@@ -197,24 +834,288 @@ public class Graph implements GraphInterface<Town, Road> {
      */
     @Override
     public ArrayList<String> shortestPath(Town sourceVertex, Town destinationVertex) {
-        dijkstraShortestPath(sourceVertex);
-        ArrayList<String> path = new ArrayList<>();
-        Town current = destinationVertex;
+        return shortestPath(sourceVertex, destinationVertex, null);
+    }
+
+    /**
+     * Find the shortest path from the sourceVertex to the destinationVertex, giving up if
+     * the token is cancelled. In directed mode or once a turn is banned the route search
+     * is used. Otherwise a valid tree cached by dijkstraShortestPath is used if there
+     * is one, or else the search runs on the compact snapshot in this thread's
+     * SearchWorkspace and stops at the destination, so it allocates nothing but the result
+     *
+     * @param sourceVertex starting vertex
+     * @param destinationVertex ending vertex
+     * @param token checked every few towns while searching, or null
+     * @return the path in the same format as shortestPath
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public ArrayList<String> shortestPath(Town sourceVertex, Town destinationVertex, CancellationToken token) {
+        if (!connected(sourceVertex, destinationVertex)) {
+            return new ArrayList<>();
+        }
+        if (isRestricted()) {
+            return route(sourceVertex, destinationVertex, 0, token);
+        }
+        ShortestPathTree tree = cachedTree(sourceVertex);
+        if (tree != null) {
+            return tree.pathTo(this, destinationVertex);
+        }
+        CompactGraph graph = compact();
+        int source = graph.id(sourceVertex);
+        int target = graph.id(destinationVertex);
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+        workspace.clearBans(graph);
+        workspace.find(graph, source, target, token);
+        return graph.describePath(source, workspace.slotsTo(graph, target));
+    }
+
+    /**
+     * Finds the shortest path that avoids roads with any of the given attributes, for
+     * example the route a truck can take. One-way roads and banned turns are honored
+     * the same way as by shortestPath
+     *
+     * @param sourceVertex starting vertex
+     * @param destinationVertex ending vertex
+     * @param avoidAttributes attribute bits of the roads the path may not use, such as Road.NO_TRUCKS
+     * @return the path in the same format as shortestPath, or an empty list if there is no path
+     */
+    public ArrayList<String> shortestPath(Town sourceVertex, Town destinationVertex, int avoidAttributes) {
+        if (!connected(sourceVertex, destinationVertex)) {
+            return new ArrayList<>();
+        }
+        return route(sourceVertex, destinationVertex, avoidAttributes, null);
+    }
 
-        while (!current.equals(sourceVertex)) {
-            Town previous = previousNodes.get(current);
-            if (previous == null) {
-                return new ArrayList<>(); 
+    private ArrayList<String> route(Town sourceVertex, Town destinationVertex, int avoidAttributes,
+            CancellationToken token) {
+        CompactGraph graph = compact();
+        int source = graph.id(sourceVertex);
+        int target = graph.id(destinationVertex);
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+        workspace.clearBans(graph);
+        workspace.route(graph, source, target, avoidAttributes, token);
+        return graph.describePath(source, workspace.routeSlots(target));
+    }
+
+    /**
+     * Finds the quickest path when leaving at a given time. Each road takes the travel
+     * time its profile gives for the moment it is entered, so the answer can change
+     * with the departure time. One-way roads and banned turns are honored
+     *
+     * @param sourceVertex starting vertex
+     * @param destinationVertex ending vertex
+     * @param departure when the path is started, in the same units as the road weights
+     * @return the steps, each with the travel time of its road when it is entered, and
+     * the total travel time, or no steps and Integer.MAX_VALUE if there is no path
+     */
+    public PathResult fastestPath(Town sourceVertex, Town destinationVertex, int departure) {
+        if (!connected(sourceVertex, destinationVertex)) {
+            return new PathResult(new ArrayList<>(), Integer.MAX_VALUE, true);
+        }
+        CompactGraph graph = compact();
+        int source = graph.id(sourceVertex);
+        int target = graph.id(destinationVertex);
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+        workspace.clearBans(graph);
+        if (!workspace.routeDeparting(graph, source, target, departure, 0, null)) {
+            return new PathResult(new ArrayList<>(), Integer.MAX_VALUE, true);
+        }
+        return new PathResult(graph.describePath(source, workspace.routeSlots(target), departure),
+                workspace.longDistance(target) - departure, true);
+    }
+
+    /**
+     * Finds every route between two towns that no other route beats on both distance
+     * and toll cost
+     *
+     * @param sourceVertex starting vertex
+     * @param destinationVertex ending vertex
+     * @param maxLabelsPerTown the most partial routes to keep at any town, which bounds
+     * the work at the price of possibly missing some routes
+     * @return the routes, shortest first, or null if either town is not in the graph
+     * @throws IllegalArgumentException if maxLabelsPerTown is less than 1
+     * @throws ArithmeticException if a route's cost, or in an INT graph its distance, does
+     * not fit in an int
+     */
+    public ParetoRoutes paretoPaths(Town sourceVertex, Town destinationVertex, int maxLabelsPerTown) {
+        CompactGraph graph = compact();
+        int source = graph.id(sourceVertex);
+        int target = graph.id(destinationVertex);
+        if (source < 0 || target < 0) {
+            return null;
+        }
+        return ParetoRoutes.compute(graph, source, target, maxLabelsPerTown);
+    }
+
+    /**
+     * Finds the length of the shortest path between two towns. Once the compact snapshot
+     * for the current version exists this allocates nothing
+     *
+     * @param sourceVertex starting vertex
+     * @param destinationVertex ending vertex
+     * @return the distance, or Integer.MAX_VALUE if there is no path
+     * @throws ArithmeticException if the distance does not fit in an int, see longDistance
+     */
+    public int distance(Town sourceVertex, Town destinationVertex) {
+        long distance = longDistance(sourceVertex, destinationVertex);
+        return distance == Long.MAX_VALUE ? Integer.MAX_VALUE : Math.toIntExact(distance);
+    }
+
+    /**
+     * Finds the length of the shortest path between two towns, added up in a long when
+     * the graph was built with a wide weight type or has one-way roads or banned turns.
+     * Like distance it allocates nothing once the compact snapshot exists
+     *
+     * @param sourceVertex starting vertex
+     * @param destinationVertex ending vertex
+     * @return the distance, or Long.MAX_VALUE if there is no path
+     * @throws ArithmeticException if the graph adds up in ints and the distance does not fit
+     */
+    public long longDistance(Town sourceVertex, Town destinationVertex) {
+        if (!connected(sourceVertex, destinationVertex)) {
+            return Long.MAX_VALUE;
+        }
+        CompactGraph graph = compact();
+        int target = graph.id(destinationVertex);
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+        workspace.clearBans(graph);
+        workspace.find(graph, graph.id(sourceVertex), target, null);
+        return workspace.length(target);
+    }
+
+    /**
+     * Finds the shortest path from the sourceVertex to the destinationVertex, stopping
+     * when the token expires or is cancelled. A stopped search returns the best route
+     * it had found to the destination, or no route if it had not reached it yet
+     *
+     * @param sourceVertex starting vertex
+     * @param destinationVertex ending vertex
+     * @param token the deadline for the search
+     * @return the route and whether it is proven to be the shortest
+     */
+    public PathResult shortestPathWithin(Town sourceVertex, Town destinationVertex, CancellationToken token) {
+        if (!connected(sourceVertex, destinationVertex)) {
+            return new PathResult(new ArrayList<>(), Integer.MAX_VALUE, true);
+        }
+        CompactGraph graph = compact();
+        int source = graph.id(sourceVertex);
+        int target = graph.id(destinationVertex);
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+        workspace.clearBans(graph);
+        workspace.findUntil(graph, source, target, token);
+        long distance = workspace.length(target);
+        ArrayList<String> steps = distance == Long.MAX_VALUE ? new ArrayList<>()
+                : graph.describePath(source, workspace.slotsTo(graph, target));
+        return new PathResult(steps, distance, !workspace.stopped());
+    }
+
+    /**
+     * Finds up to k shortest loopless paths from the sourceVertex to the destinationVertex
+     * using Yen's algorithm
+     *
+     * @param sourceVertex starting vertex
+     * @param destinationVertex ending vertex
+     * @param k the most paths to find
+     * @return the paths shortest first, each in the same format as shortestPath,
+     * or an empty list if there is no path
+     */
+    public ArrayList<ArrayList<String>> kShortestPaths(Town sourceVertex, Town destinationVertex, int k) {
+        CompactGraph graph = compact();
+        int source = graph.id(sourceVertex);
+        int destination = graph.id(destinationVertex);
+        ArrayList<ArrayList<String>> paths = new ArrayList<>();
+        if (source < 0 || destination < 0) {
+            return paths;
+        }
+        for (int[] slots : KShortestPaths.find(graph, source, destination, k)) {
+            paths.add(graph.describePath(source, slots));
+        }
+        return paths;
+    }
+
+    /**
+     * Finds every town within a distance of a town, without searching past that distance
+     *
+     * @param sourceVertex the town to search from
+     * @param maxDistance the largest distance to include
+     * @return the towns reached, nearest first, or an empty result if the town is not in the graph
+     */
+    public TownDistances townsWithin(Town sourceVertex, int maxDistance) {
+        return isochrones(Collections.singletonList(sourceVertex), maxDistance);
+    }
+
+    /**
+     * Finds, in a single search, every town within a distance of any of several
+     * towns and which of them it is nearest to
+     *
+     * @param sourceVertices the towns to search from, such as depots
+     * @param maxDistance the largest distance to include
+     * @return the towns reached, nearest first, each with the position of its nearest
+     * source in sourceVertices. Sources not in the graph are ignored
+     */
+    public TownDistances isochrones(List<Town> sourceVertices, int maxDistance) {
+        CompactGraph graph = compact();
+        int[] sources = new int[sourceVertices.size()];
+        int[] positions = new int[sources.length];
+        int count = 0;
+        for (int i = 0; i < sources.length; i++) {
+            int id = graph.id(sourceVertices.get(i));
+            if (id >= 0) {
+                sources[count] = id;
+                positions[count++] = i;
             }
-            Road road = getEdge(previous, current);
-            path.add(0, previous + " via " + road.getName() + " to " + current + " " + road.getWeight());
-            current = previous;
         }
-        return path;
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+        int settled = workspace.searchWithin(graph, Arrays.copyOf(sources, count), maxDistance);
+        Town[] towns = new Town[settled];
+        int[] distances = new int[settled];
+        int[] nearest = new int[settled];
+        for (int i = 0; i < settled; i++) {
+            int id = workspace.settled(i);
+            towns[i] = graph.town(id);
+            distances[i] = (int) workspace.length(id);
+            nearest[i] = positions[workspace.origin(id)];
+        }
+        return new TownDistances(towns, distances, nearest);
+    }
+
+    /**
+     * Finds the nearest facility of every town with searches that start from all
+     * facilities at once, one per group of connected components. Only separate
+     * components are searched in parallel, so a connected network takes one search.
+     * Distances are driven from each town to its facility, and are kept in longs so
+     * graphs with a wide WeightType are searched too
+     *
+     * @param facilities the facility towns, such as depots. Towns not in the graph are ignored
+     * @return the nearest facility id and distance of every town, indexed by the
+     * town ids of compact()
+     */
+    public NearestFacilities nearestFacilities(Collection<Town> facilities) {
+        CompactGraph graph = compact();
+        int[] ids = facilities.stream().mapToInt(graph::id).filter(id -> id >= 0).distinct().toArray();
+        return NearestFacilities.compute(graph, ids, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Finds the cheapest set of roads that keeps every town connected to every town
+     * it can currently reach
+     *
+     * @return the minimum spanning forest of this graph
+     */
+    public MinimumSpanningForest minimumSpanningForest() {
+        return MinimumSpanningForest.compute(compact());
     }
 
-    private Map<Town, Integer> distances;
-    private Map<Town, Town> previousNodes;
+    private static final int MAX_CACHED_TREES = 16;
+
+    private ShortestPathTree lastTree;
+    private final Map<Town, ShortestPathTree> cachedTrees = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Town, ShortestPathTree> eldest) {
+            return size() > MAX_CACHED_TREES;
+        }
+    };
 
     /**
      * Dijkstra's Shortest Path Method
@@ -223,29 +1124,56 @@ public class Graph implements GraphInterface<Town, Road> {
      */
     @Override
     public void dijkstraShortestPath(Town sourceVertex) {
-        distances = new HashMap<>();
-        previousNodes = new HashMap<>();
-        PriorityQueue<Town> priorityQueue = new PriorityQueue<>(Comparator.comparingInt(distances::get));
-
-        for (Town town : adjacencyList.keySet()) {
-            distances.put(town, Integer.MAX_VALUE);
-            previousNodes.put(town, null);
-        }
-        distances.put(sourceVertex, 0);
-        priorityQueue.add(sourceVertex);
-
-        while (!priorityQueue.isEmpty()) {
-            Town current = priorityQueue.poll();
-            for (Road road : edgesOf(current)) {
-                Town neighbor = road.getDestination().equals(current) ? road.getSource() : road.getDestination();
-                int newDistance = distances.get(current) + road.getWeight();
-                if (newDistance < distances.get(neighbor)) {
-                    distances.put(neighbor, newDistance);
-                    previousNodes.put(neighbor, current);
-                    priorityQueue.add(neighbor);
-                }
+        lastTree = new ShortestPathTree(this, sourceVertex);
+        cachedTrees.put(sourceVertex, lastTree);
+    }
+
+    /**
+     * Returns the cached shortest path tree for a source if it is still valid
+     *
+     * @param sourceVertex the source of the tree
+     * @return the cached tree, or null if there is none for this version of the graph
+     */
+    public ShortestPathTree cachedTree(Town sourceVertex) {
+        ShortestPathTree tree = cachedTrees.get(sourceVertex);
+        if (tree != null && tree.getVersion() != version) {
+            cachedTrees.remove(sourceVertex);
+            return null;
+        }
+        return tree;
+    }
+
+    /**
+     * Changes the weight of the road between two towns. Cached shortest path trees
+     * are repaired instead of being thrown away
+     *
+     * @param sourceVertex one town on the road
+     * @param destinationVertex the other town on the road
+     * @param weight the new weight of the road
+     * @return the updated road, or null if there is no road between the towns
+     * @throws IllegalArgumentException if the weight is negative
+     */
+    public Road updateWeight(Town sourceVertex, Town destinationVertex, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight cannot be negative.");
+        }
+        Road road = getEdge(sourceVertex, destinationVertex);
+        if (road == null) {
+            return null;
+        }
+        int oldWeight = road.getWeight();
+        if (oldWeight == weight) {
+            return road;
+        }
+        long previousVersion = version;
+        road.setWeight(weight);
+        version++;
+        for (ShortestPathTree tree : cachedTrees.values()) {
+            if (tree.getVersion() == previousVersion) {
+                tree.weightChanged(this, road, oldWeight);
             }
         }
+        return road;
     }
 
 }
@@ -0,0 +1,336 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * GraphBatch - accumulates many edits to a town graph so they can be validated
+ * together and applied in a single pass
+ *
+ * Edits are applied in a fixed order regardless of the order they were added in:
+ * town deletions, road deletions, town additions, road additions, turns allowed,
+ * turns banned and finally the directed mode. A road can carry its attributes, toll
+ * cost and travel time profile, so a batch can rebuild every part of a graph.
+ *
+ * @author Jessica Park
+ */
+
+public class GraphBatch {
+    private final Set<String> townsToDelete = new LinkedHashSet<>();
+    private final List<String[]> roadsToDelete = new ArrayList<>();
+    private final Set<String> townsToAdd = new LinkedHashSet<>();
+    private final List<String[]> roadsToAdd = new ArrayList<>();
+    private final List<Integer> roadWeights = new ArrayList<>();
+    private final List<int[]> roadDetails = new ArrayList<>();
+    private final List<String[]> turnsToAllow = new ArrayList<>();
+    private final List<String[]> turnsToBan = new ArrayList<>();
+    private Boolean directed;
+
+    /**
+     * Queues a town to be added
+     *
+     * @param town the town's name
+     * @return this batch
+     */
+    public GraphBatch addTown(String town) {
+        townsToAdd.add(town);
+        return this;
+    }
+
+    /**
+     * Queues a road to be added, the towns on the road are added if needed
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param weight the distance between the two towns
+     * @param roadName name of road
+     * @return this batch
+     */
+    public GraphBatch addRoad(String town1, String town2, int weight, String roadName) {
+        return addRoad(town1, town2, weight, roadName, 0, 0, -1);
+    }
+
+    /**
+     * Queues a road to be added with its attribute bits, toll cost and travel time
+     * profile, the towns on the road are added if needed
+     *
+     * @param town1 name of the town the road starts at
+     * @param town2 name of the town the road ends at
+     * @param weight the distance between the two towns
+     * @param roadName name of road
+     * @param attributes the road's attribute bits, see Road.ONE_WAY and the others
+     * @param cost the toll cost of the road
+     * @param profile the number of a travel time profile of the graph, or -1 for none
+     * @return this batch
+     */
+    public GraphBatch addRoad(String town1, String town2, int weight, String roadName, int attributes, int cost,
+            int profile) {
+        roadsToAdd.add(new String[] { town1, town2, roadName });
+        roadWeights.add(weight);
+        roadDetails.add(new int[] { attributes, cost, profile });
+        return this;
+    }
+
+    /**
+     * Queues a road to be deleted
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param roadName the road name
+     * @return this batch
+     */
+    public GraphBatch deleteRoadConnection(String town1, String town2, String roadName) {
+        roadsToDelete.add(new String[] { town1, town2, roadName });
+        return this;
+    }
+
+    /**
+     * Queues a town and all of its roads to be deleted
+     *
+     * @param town the town's name
+     * @return this batch
+     */
+    public GraphBatch deleteTown(String town) {
+        townsToDelete.add(town);
+        return this;
+    }
+
+    /**
+     * Queues a turn to be banned once the roads have been added. A ban whose roads are
+     * not in the graph by then is skipped, the same way a missing road is not deleted
+     *
+     * @param from name of the town the route comes from
+     * @param via name of the town where the turn is made
+     * @param to name of the town the route would turn towards
+     * @return this batch
+     */
+    public GraphBatch banTurn(String from, String via, String to) {
+        turnsToBan.add(new String[] { from, via, to });
+        return this;
+    }
+
+    /**
+     * Queues a turn ban to be lifted
+     *
+     * @param from name of the town the route comes from
+     * @param via name of the town where the turn is made
+     * @param to name of the town the route would turn towards
+     * @return this batch
+     */
+    public GraphBatch allowTurn(String from, String via, String to) {
+        turnsToAllow.add(new String[] { from, via, to });
+        return this;
+    }
+
+    /**
+     * Queues a change to directed mode, made after every other edit
+     *
+     * @param directed true to honor one-way roads
+     * @return this batch
+     */
+    public GraphBatch setDirected(boolean directed) {
+        this.directed = directed;
+        return this;
+    }
+
+    /**
+     * Returns the number of queued edits
+     *
+     * @return the number of edits in this batch
+     */
+    public int size() {
+        return townsToDelete.size() + roadsToDelete.size() + townsToAdd.size() + roadsToAdd.size()
+                + turnsToAllow.size() + turnsToBan.size() + (directed == null ? 0 : 1);
+    }
+
+    /**
+     * Returns true if no edits have been queued
+     *
+     * @return true if this batch is empty
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Checks every queued edit before any of them are applied, so an invalid
+     * batch leaves the graph untouched
+     *
+     * @throws IllegalArgumentException if a name is null or empty, a weight or cost is
+     * negative, a profile number is less than -1, or the same road is added twice
+     */
+    public void validate() {
+        for (String town : townsToDelete) {
+            checkName(town, "Town");
+        }
+        for (String town : townsToAdd) {
+            checkName(town, "Town");
+        }
+        for (String[] road : roadsToDelete) {
+            checkName(road[0], "Town");
+            checkName(road[1], "Town");
+            checkName(road[2], "Road");
+        }
+        Set<String> pairs = new HashSet<>();
+        for (int i = 0; i < roadsToAdd.size(); i++) {
+            String[] road = roadsToAdd.get(i);
+            checkName(road[0], "Town");
+            checkName(road[1], "Town");
+            checkName(road[2], "Road");
+            if (roadWeights.get(i) < 0) {
+                throw new IllegalArgumentException("Road weight cannot be negative: " + road[2]);
+            }
+            if (roadDetails.get(i)[1] < 0) {
+                throw new IllegalArgumentException("Road cost cannot be negative: " + road[2]);
+            }
+            if (roadDetails.get(i)[2] < -1) {
+                throw new IllegalArgumentException("No travel time profile " + roadDetails.get(i)[2] + ".");
+            }
+            String pair = road[0].compareTo(road[1]) <= 0 ? road[0] + "\n" + road[1] : road[1] + "\n" + road[0];
+            if (!pairs.add(pair)) {
+                throw new IllegalArgumentException("Road between " + road[0] + " and " + road[1] + " added twice.");
+            }
+        }
+        for (String[] turn : turnsToAllow) {
+            checkTurn(turn);
+        }
+        for (String[] turn : turnsToBan) {
+            checkTurn(turn);
+        }
+    }
+
+    /**
+     * Writes this batch in a compact binary form, as the write-ahead log stores it
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream can't be written
+     */
+    void write(DataOutputStream out) throws IOException {
+        writeNames(out, townsToDelete);
+        writeEdits(out, roadsToDelete);
+        writeNames(out, townsToAdd);
+        writeEdits(out, roadsToAdd);
+        for (int i = 0; i < roadsToAdd.size(); i++) {
+            out.writeInt(roadWeights.get(i));
+            for (int detail : roadDetails.get(i)) {
+                out.writeInt(detail);
+            }
+        }
+        writeEdits(out, turnsToAllow);
+        writeEdits(out, turnsToBan);
+        out.writeByte(directed == null ? -1 : directed ? 1 : 0);
+    }
+
+    /**
+     * Reads a batch written by write
+     *
+     * @param in the stream to read from
+     * @return the batch
+     * @throws IOException if the stream can't be read
+     */
+    static GraphBatch read(DataInputStream in) throws IOException {
+        GraphBatch batch = new GraphBatch();
+        readNames(in, batch.townsToDelete);
+        readEdits(in, batch.roadsToDelete);
+        readNames(in, batch.townsToAdd);
+        readEdits(in, batch.roadsToAdd);
+        for (int i = 0; i < batch.roadsToAdd.size(); i++) {
+            batch.roadWeights.add(in.readInt());
+            batch.roadDetails.add(new int[] { in.readInt(), in.readInt(), in.readInt() });
+        }
+        readEdits(in, batch.turnsToAllow);
+        readEdits(in, batch.turnsToBan);
+        byte directed = in.readByte();
+        batch.directed = directed < 0 ? null : directed == 1;
+        return batch;
+    }
+
+    private static void writeNames(DataOutputStream out, Set<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    private static void readNames(DataInputStream in, Set<String> names) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            names.add(in.readUTF());
+        }
+    }
+
+    /**
+     * Writes road or turn edits, each as three names
+     */
+    private static void writeEdits(DataOutputStream out, List<String[]> edits) throws IOException {
+        out.writeInt(edits.size());
+        for (String[] edit : edits) {
+            for (String name : edit) {
+                out.writeUTF(name);
+            }
+        }
+    }
+
+    private static void readEdits(DataInputStream in, List<String[]> edits) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            edits.add(new String[] { in.readUTF(), in.readUTF(), in.readUTF() });
+        }
+    }
+
+    private static void checkTurn(String[] turn) {
+        for (String town : turn) {
+            checkName(town, "Town");
+        }
+    }
+
+    private static void checkName(String name, String kind) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException(kind + " name cannot be null or empty.");
+        }
+    }
+
+    Set<String> townsToDelete() {
+        return townsToDelete;
+    }
+
+    List<String[]> roadsToDelete() {
+        return roadsToDelete;
+    }
+
+    Set<String> townsToAdd() {
+        return townsToAdd;
+    }
+
+    List<String[]> roadsToAdd() {
+        return roadsToAdd;
+    }
+
+    int weightOf(int roadIndex) {
+        return roadWeights.get(roadIndex);
+    }
+
+    int attributesOf(int roadIndex) {
+        return roadDetails.get(roadIndex)[0];
+    }
+
+    int costOf(int roadIndex) {
+        return roadDetails.get(roadIndex)[1];
+    }
+
+    int profileOf(int roadIndex) {
+        return roadDetails.get(roadIndex)[2];
+    }
+
+    List<String[]> turnsToAllow() {
+        return turnsToAllow;
+    }
+
+    List<String[]> turnsToBan() {
+        return turnsToBan;
+    }
+
+    Boolean directed() {
+        return directed;
+    }
+}
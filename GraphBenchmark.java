@@ -0,0 +1,307 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Reference;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Graph benchmark - rough measurements of the graph classes on synthetic road networks.
+ * Run with: java GraphBenchmark [mode] [roads] [seconds or labels per town]
+ *
+ * @author Jessica Park
+ */
+
+public class GraphBenchmark {
+
+    /**
+     * Runs the benchmark named by the first argument
+     *
+     * @param args the mode and the number of roads
+     */
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "footprint";
+        int roads = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        switch (mode) {
+            case "footprint":
+                footprint(roads);
+                break;
+            case "allocation":
+                allocation(roads);
+                break;
+            case "http":
+                http(roads, args.length > 2 ? Integer.parseInt(args[2]) : 10);
+                break;
+            case "weights":
+                weights(roads);
+                break;
+            case "pareto":
+                pareto(roads, args.length > 2 ? Integer.parseInt(args[2]) : 64);
+                break;
+            default:
+                System.out.println("Unknown mode: " + mode);
+        }
+    }
+
+    /**
+     * Compares the heap used and garbage collection time of holding a network as
+     * Town and Road objects against holding it in an OffHeapRoadStore. The collection
+     * time is read before usedHeap forces collections of its own, and each structure is
+     * kept reachable until its heap has been measured so those collections can't free it
+     */
+    private static void footprint(int roads) {
+        int towns = Math.max(8, roads / 3);
+
+        long heapBefore = usedHeap();
+        long gcBefore = gcMillis();
+        Graph graph = new Graph();
+        GraphBatch batch = new GraphBatch();
+        Random random = new Random(42);
+        for (int i = 0; i < roads; i++) {
+            batch.addRoad("Town_" + (i % towns), "Town_" + neighbor(i, towns), random.nextInt(100), "Road_" + (i % 1000));
+        }
+        graph.apply(batch);
+        batch = null;
+        long gcMillis = gcMillis() - gcBefore;
+        long graphHeap = usedHeap() - heapBefore;
+        Reference.reachabilityFence(graph);
+        report("Graph", graphHeap, 0, gcMillis);
+        graph = null;
+
+        heapBefore = usedHeap();
+        gcBefore = gcMillis();
+        OffHeapRoadStore store = new OffHeapRoadStore();
+        random = new Random(42);
+        for (int i = 0; i < roads; i++) {
+            store.addRoad("Town_" + (i % towns), "Town_" + neighbor(i, towns), random.nextInt(100), "Road_" + (i % 1000));
+        }
+        gcMillis = gcMillis() - gcBefore;
+        long storeHeap = usedHeap() - heapBefore;
+        Reference.reachabilityFence(store);
+        report("OffHeapRoadStore", Math.max(0, storeHeap), store.offHeapBytes(), gcMillis);
+    }
+
+    /**
+     * Measures the bytes allocated per query, after warming up, for the distance query
+     * that runs in a reused SearchWorkspace and for the full shortestPath query that also
+     * builds the step strings of its answer. Uses the JVM's per-thread allocation counter
+     */
+    private static void allocation(int roads) {
+        int side = Math.max(2, (int) Math.sqrt(roads / 2.0));
+        Graph graph = new Graph();
+        graph.apply(grid(side, new Random(42)));
+        Town[] towns = graph.vertexSet().toArray(new Town[0]);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int queries = 2000;
+        Random random = new Random(7);
+        int[] sources = new int[queries];
+        int[] targets = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            sources[i] = random.nextInt(towns.length);
+            targets[i] = random.nextInt(towns.length);
+        }
+
+        long checksum = 0;
+        for (int round = 0; round < 3; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                checksum += graph.distance(towns[sources[i]], towns[targets[i]]);
+            }
+            long elapsed = System.nanoTime() - start;
+            long distanceBytes = threads.getThreadAllocatedBytes(thread) - before;
+
+            before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < queries; i++) {
+                checksum += graph.shortestPath(towns[sources[i]], towns[targets[i]]).size();
+            }
+            long pathBytes = threads.getThreadAllocatedBytes(thread) - before;
+            System.out.printf("round %d  %,d towns  distance %,d B/op %.1f us/op  shortestPath %,d B/op%n", round,
+                    towns.length, distanceBytes / queries, elapsed / 1e3 / queries, pathBytes / queries);
+        }
+        System.out.println("checksum " + checksum);
+    }
+
+    /**
+     * Compares the query time of the same grid built with each WeightType, to check that
+     * the int searches are not slowed down by the long ones existing
+     */
+    private static void weights(int roads) {
+        int side = Math.max(2, (int) Math.sqrt(roads / 2.0));
+        int queries = 2000;
+        for (int round = 0; round < 3; round++) {
+            for (WeightType type : WeightType.values()) {
+                Graph graph = new Graph(type);
+                graph.apply(grid(side, new Random(42)));
+                Town[] towns = graph.vertexSet().toArray(new Town[0]);
+                Random random = new Random(7);
+                long checksum = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < queries; i++) {
+                    checksum += graph.longDistance(towns[random.nextInt(towns.length)], towns[random.nextInt(towns.length)]);
+                }
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("round %d  %-11s %,d towns  %.1f us/op  checksum %d%n", round, type, towns.length,
+                        elapsed / 1e3 / queries, checksum);
+            }
+        }
+    }
+
+    /**
+     * Shows how the work of Pareto routing grows with the size of the network. Grids of
+     * doubling side up to the given number of roads get toll costs that fall as the
+     * distance rises, which is what makes many routes Pareto optimal, and random queries
+     * report the labels created, the routes found and how often the label bound was hit
+     */
+    private static void pareto(int roads, int maxLabels) {
+        int largest = Math.max(4, (int) Math.sqrt(roads / 2.0));
+        int queries = 20;
+        for (int side = 4; side <= largest; side *= 2) {
+            Random random = new Random(42);
+            Graph graph = new Graph();
+            graph.apply(grid(side, random));
+            for (Road road : graph.edgeSet()) {
+                graph.setCost(road.getSource(), road.getDestination(), Math.max(0, 101 - road.getWeight() + random.nextInt(20)));
+            }
+            Town[] towns = graph.vertexSet().toArray(new Town[0]);
+            graph.compact();
+
+            long labels = 0;
+            long routes = 0;
+            int complete = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                ParetoRoutes result = graph.paretoPaths(towns[random.nextInt(towns.length)],
+                        towns[random.nextInt(towns.length)], maxLabels);
+                labels += result.labelCount();
+                routes += result.size();
+                complete += result.isComplete() ? 1 : 0;
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%,9d towns  %,11d labels/query  %,6d routes/query  %3d%% complete  %,9.2f ms/query%n",
+                    towns.length, labels / queries, routes / queries, complete * 100 / queries,
+                    elapsed / 1e6 / queries);
+        }
+    }
+
+    /**
+     * Builds a square grid of towns with a road to each neighbor, the shape of a city street map
+     */
+    private static GraphBatch grid(int side, Random random) {
+        GraphBatch batch = new GraphBatch();
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                if (row + 1 < side) {
+                    batch.addRoad(row + "_" + column, (row + 1) + "_" + column, 1 + random.nextInt(100), "Road_" + column);
+                }
+                if (column + 1 < side) {
+                    batch.addRoad(row + "_" + column, row + "_" + (column + 1), 1 + random.nextInt(100), "Road_" + row);
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Load tests a RoutingService on localhost. A square grid of towns is served and
+     * one client thread per processor, times four, asks for paths between random towns
+     * over kept-alive connections for the given number of seconds
+     */
+    private static void http(int roads, int seconds) {
+        RoutingService.useNoDelay();
+        int side = Math.max(2, (int) Math.sqrt(roads / 2.0));
+        TownGraphManager manager = new TownGraphManager();
+        manager.applyBatch(grid(side, new Random(42)));
+
+        int clients = Runtime.getRuntime().availableProcessors() * 4;
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicInteger errors = new AtomicInteger();
+        long[][] latencies = new long[clients][];
+        try (RoutingService service = new RoutingService(manager, 0).start()) {
+            String base = "http://127.0.0.1:" + service.getPort() + "/path?from=";
+            Thread[] threads = new Thread[clients];
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                threads[c] = new Thread(() -> {
+                    long[] times = new long[1024];
+                    int count = 0;
+                    ThreadLocalRandom local = ThreadLocalRandom.current();
+                    byte[] buffer = new byte[8192];
+                    while (System.nanoTime() < deadline) {
+                        String from = local.nextInt(side) + "_" + local.nextInt(side);
+                        String to = local.nextInt(side) + "_" + local.nextInt(side);
+                        long start = System.nanoTime();
+                        try {
+                            HttpURLConnection connection = (HttpURLConnection) new URL(base + from + "&to=" + to)
+                                    .openConnection();
+                            try (InputStream in = connection.getInputStream()) {
+                                while (in.read(buffer) >= 0) {
+                                    // drain the body so the connection can be reused
+                                }
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count == times.length) {
+                            times = Arrays.copyOf(times, count * 2);
+                        }
+                        times[count++] = System.nanoTime() - start;
+                    }
+                    latencies[client] = Arrays.copyOf(times, count);
+                });
+                threads[c].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Load test failed: " + e);
+            return;
+        }
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length == 0) {
+            System.out.println("No requests completed, " + errors.get() + " errors");
+            return;
+        }
+        System.out.printf("%,d towns  %d clients  %,d requests  %,.0f req/s  p50 %.2f ms  p99 %.2f ms  %d errors%n",
+                side * side, clients, all.length, all.length / (double) seconds,
+                all[all.length / 2] / 1e6, all[(int) (all.length * 0.99)] / 1e6, errors.get());
+    }
+
+    /**
+     * Connects road i to a town a few steps further along a ring, so no two roads
+     * join the same pair of towns
+     */
+    private static int neighbor(int road, int towns) {
+        return (road % towns + 1 + road / towns) % towns;
+    }
+
+    private static void report(String name, long heapBytes, long offHeapBytes, long gcMillis) {
+        System.out.printf("%-18s heap %,d KB  off-heap %,d KB  gc %,d ms%n",
+                name, heapBytes / 1024, offHeapBytes / 1024, gcMillis);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionTime());
+        }
+        return total;
+    }
+}
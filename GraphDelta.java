@@ -0,0 +1,394 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Graph delta - the differences between two versions of a town graph: towns and roads
+ * removed, towns and roads added, roads whose weight, attributes, cost or travel time
+ * profile changed, turns banned and allowed, the directed mode and any travel time
+ * profiles added. A delta is much smaller than the graph it updates, so it can be
+ * shipped to copies of the graph instead of the whole road file and applied in place
+ *
+ * Profiles are numbered in the order they were added and can't be removed, so a delta
+ * carries the profiles the newer graph added after the older graph's and renumbers them
+ * when it is applied. Graphs whose profiles don't line up that way can't be diffed.
+ *
+ * @author Jessica Park
+ */
+
+public class GraphDelta {
+    private static final int MAGIC = 0x54474431;
+
+    private final List<String> removedTowns = new ArrayList<>();
+    private final List<String[]> removedRoads = new ArrayList<>();
+    private final List<String> addedTowns = new ArrayList<>();
+    private final List<String[]> addedRoads = new ArrayList<>();
+    private final List<int[]> addedValues = new ArrayList<>();
+    private final List<String[]> changedRoads = new ArrayList<>();
+    private final List<int[]> changedValues = new ArrayList<>();
+    private final List<String[]> bannedTurns = new ArrayList<>();
+    private final List<String[]> allowedTurns = new ArrayList<>();
+    private final List<int[]> addedDepartures = new ArrayList<>();
+    private final List<int[]> addedDurations = new ArrayList<>();
+    private int profileBase;
+    private Boolean directed;
+
+    /**
+     * Finds the changes that turn one graph into another. Roads are matched by the towns
+     * they join, so a road that keeps its towns and name but not its weight, attributes,
+     * cost or profile is changed in place, and one that changes its name, or the direction
+     * of a one-way road, is removed and added again
+     *
+     * @param older the graph before the changes
+     * @param newer the graph after the changes
+     * @return the delta from older to newer
+     * @throws IllegalArgumentException if the newer graph's travel time profiles do not
+     * start with the older graph's
+     */
+    public static GraphDelta diff(Graph older, Graph newer) {
+        GraphDelta delta = new GraphDelta();
+        TravelTimeProfiles olderProfiles = older.travelTimeProfiles();
+        TravelTimeProfiles newerProfiles = newer.travelTimeProfiles();
+        if (newerProfiles.size() < olderProfiles.size()) {
+            throw new IllegalArgumentException("The newer graph has fewer travel time profiles than the older one.");
+        }
+        for (int profile = 0; profile < olderProfiles.size(); profile++) {
+            if (!Arrays.equals(olderProfiles.departures(profile), newerProfiles.departures(profile))
+                    || !Arrays.equals(olderProfiles.durations(profile), newerProfiles.durations(profile))) {
+                throw new IllegalArgumentException("Travel time profile " + profile + " differs between the graphs.");
+            }
+        }
+        delta.profileBase = olderProfiles.size();
+        for (int profile = olderProfiles.size(); profile < newerProfiles.size(); profile++) {
+            delta.addedDepartures.add(newerProfiles.departures(profile));
+            delta.addedDurations.add(newerProfiles.durations(profile));
+        }
+
+        for (Town town : older.vertexSet()) {
+            if (!newer.containsVertex(town)) {
+                delta.removedTowns.add(town.getName());
+            }
+        }
+        for (Town town : newer.vertexSet()) {
+            if (!older.containsVertex(town)) {
+                delta.addedTowns.add(town.getName());
+            }
+        }
+        for (Road road : older.edgeSet()) {
+            Town source = road.getSource();
+            Town destination = road.getDestination();
+            if (!newer.containsVertex(source) || !newer.containsVertex(destination)) {
+                continue;
+            }
+            Road match = newer.getEdge(source, destination);
+            if (!sameRoad(road, match)) {
+                delta.removedRoads.add(new String[] { source.getName(), destination.getName(), road.getName() });
+            } else if (!Arrays.equals(values(match), values(road))) {
+                delta.changedRoads.add(new String[] { source.getName(), destination.getName() });
+                delta.changedValues.add(values(match));
+            }
+        }
+        for (Road road : newer.edgeSet()) {
+            if (!sameRoad(road, older.getEdge(road.getSource(), road.getDestination()))) {
+                delta.addedRoads.add(new String[] { road.getSource().getName(), road.getDestination().getName(),
+                        road.getName() });
+                delta.addedValues.add(values(road));
+            }
+        }
+
+        for (List<Town> ban : newer.turnBans()) {
+            if (!older.turnBans().contains(ban)) {
+                delta.bannedTurns.add(names(ban));
+            }
+        }
+        for (List<Town> ban : older.turnBans()) {
+            if (!newer.turnBans().contains(ban)) {
+                delta.allowedTurns.add(names(ban));
+            }
+        }
+        if (older.isDirected() != newer.isDirected()) {
+            delta.directed = newer.isDirected();
+        }
+        return delta;
+    }
+
+    /**
+     * Tells whether a road of the newer graph is the same road as one of the older graph,
+     * joining the same towns under the same name and, if either is one-way, in the same
+     * direction
+     */
+    private static boolean sameRoad(Road road, Road match) {
+        return match != null && match.getName().equals(road.getName()) && (match.getSource().equals(road.getSource())
+                || !match.isOneWay() && !road.isOneWay());
+    }
+
+    private static int[] values(Road road) {
+        return new int[] { road.getWeight(), road.getAttributes(), road.getCost(), road.getProfile() };
+    }
+
+    private static String[] names(List<Town> towns) {
+        String[] names = new String[towns.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = towns.get(i).getName();
+        }
+        return names;
+    }
+
+    /**
+     * Applies this delta to a graph in place. New travel time profiles are added first.
+     * Weight changes are then applied one road at a time, so cached shortest path trees
+     * are repaired rather than thrown away, along with any other change to a kept road.
+     * Removals, additions, turns and the directed mode then go through a single GraphBatch,
+     * which keeps the name indexes up to date incrementally and changes the graph version once
+     *
+     * @param graph the graph to update, normally a copy of the older graph of the diff
+     * @return the number of changes that altered the graph
+     * @throws IllegalArgumentException if the delta holds an invalid edit or the graph has
+     * fewer travel time profiles than the older graph of the diff, in which case nothing
+     * is applied
+     */
+    public int applyTo(Graph graph) {
+        check(graph);
+        int changed = 0;
+        int[] profiles = new int[addedDepartures.size()];
+        for (int i = 0; i < profiles.length; i++) {
+            profiles[i] = graph.addProfile(addedDepartures.get(i), addedDurations.get(i));
+            changed++;
+        }
+        for (int i = 0; i < changedRoads.size(); i++) {
+            Town town1 = new Town(changedRoads.get(i)[0]);
+            Town town2 = new Town(changedRoads.get(i)[1]);
+            int[] values = changedValues.get(i);
+            Road road = graph.getEdge(town1, town2);
+            if (road == null || Arrays.equals(values(road), values)) {
+                continue;
+            }
+            if (road.getWeight() != values[0]) {
+                graph.updateWeight(town1, town2, values[0]);
+            }
+            graph.setAttributes(town1, town2, values[1]);
+            graph.setCost(town1, town2, values[2]);
+            graph.setProfile(town1, town2, profile(values[3], profiles));
+            changed++;
+        }
+        GraphBatch batch = toBatch(profiles);
+        if (!batch.isEmpty()) {
+            changed += graph.apply(batch);
+        }
+        return changed;
+    }
+
+    /**
+     * Checks that every change in this delta can be applied to a graph, so a delta read
+     * from a stream is rejected before any of it is applied
+     *
+     * @param graph the graph the delta would be applied to
+     * @throws IllegalArgumentException if the delta can't be applied
+     */
+    void check(Graph graph) {
+        int profileCount = graph.travelTimeProfiles().size();
+        if (profileCount < profileBase) {
+            throw new IllegalArgumentException("The delta needs the " + profileBase
+                    + " travel time profiles of the graph it was made from.");
+        }
+        int[] profiles = new int[addedDepartures.size()];
+        for (int i = 0; i < profiles.length; i++) {
+            TravelTimeProfiles.validate(addedDepartures.get(i), addedDurations.get(i));
+            profiles[i] = profileCount + i;
+        }
+        for (int[] values : changedValues) {
+            if (values[0] < 0 || values[2] < 0) {
+                throw new IllegalArgumentException("Road weights and costs cannot be negative.");
+            }
+            if (values[3] < -1 || values[3] >= profileBase + profiles.length) {
+                throw new IllegalArgumentException("No travel time profile " + values[3] + ".");
+            }
+        }
+        for (int[] values : addedValues) {
+            if (values[3] >= profileBase + profiles.length) {
+                throw new IllegalArgumentException("No travel time profile " + values[3] + ".");
+            }
+        }
+        toBatch(profiles).validate();
+    }
+
+    /**
+     * Turns a profile number of the newer graph into the number it was given when this
+     * delta added it to the graph being updated
+     */
+    private int profile(int profile, int[] profiles) {
+        return profile < profileBase ? profile : profiles[profile - profileBase];
+    }
+
+    /**
+     * Returns the removals, additions, turns and directed mode of this delta as a batch,
+     * leaving out the changes to kept roads and the new profiles
+     *
+     * @param profiles the numbers the new profiles were given in the graph being updated
+     * @return a batch of the structural changes
+     */
+    private GraphBatch toBatch(int[] profiles) {
+        GraphBatch batch = new GraphBatch();
+        for (String town : removedTowns) {
+            batch.deleteTown(town);
+        }
+        for (String[] road : removedRoads) {
+            batch.deleteRoadConnection(road[0], road[1], road[2]);
+        }
+        for (String town : addedTowns) {
+            batch.addTown(town);
+        }
+        for (int i = 0; i < addedRoads.size(); i++) {
+            String[] road = addedRoads.get(i);
+            int[] values = addedValues.get(i);
+            batch.addRoad(road[0], road[1], values[0], road[2], values[1], values[2], profile(values[3], profiles));
+        }
+        for (String[] turn : allowedTurns) {
+            batch.allowTurn(turn[0], turn[1], turn[2]);
+        }
+        for (String[] turn : bannedTurns) {
+            batch.banTurn(turn[0], turn[1], turn[2]);
+        }
+        if (directed != null) {
+            batch.setDirected(directed);
+        }
+        return batch;
+    }
+
+    /**
+     * Returns the number of changes in this delta
+     *
+     * @return the number of changes
+     */
+    public int size() {
+        return removedTowns.size() + removedRoads.size() + addedTowns.size() + addedRoads.size()
+                + changedRoads.size() + bannedTurns.size() + allowedTurns.size() + addedDepartures.size()
+                + (directed == null ? 0 : 1);
+    }
+
+    /**
+     * Returns true if the two graphs were the same
+     *
+     * @return true if this delta has no changes
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Writes this delta in a compact binary form
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream can't be written
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        writeNames(out, removedTowns);
+        writeRoads(out, removedRoads, null);
+        writeNames(out, addedTowns);
+        writeRoads(out, addedRoads, addedValues);
+        writeRoads(out, changedRoads, changedValues);
+        writeRoads(out, bannedTurns, null);
+        writeRoads(out, allowedTurns, null);
+        out.writeByte(directed == null ? -1 : directed ? 1 : 0);
+        out.writeInt(profileBase);
+        out.writeInt(addedDepartures.size());
+        for (int i = 0; i < addedDepartures.size(); i++) {
+            int[] departures = addedDepartures.get(i);
+            int[] durations = addedDurations.get(i);
+            out.writeInt(departures.length);
+            for (int j = 0; j < departures.length; j++) {
+                out.writeInt(departures[j]);
+                out.writeInt(durations[j]);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a delta written by write
+     *
+     * @param in the stream to read from
+     * @return the delta
+     * @throws IOException if the stream can't be read or does not hold a delta
+     */
+    public static GraphDelta read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a graph delta.");
+        }
+        GraphDelta delta = new GraphDelta();
+        readNames(in, delta.removedTowns);
+        readRoads(in, delta.removedRoads, null, 3);
+        readNames(in, delta.addedTowns);
+        readRoads(in, delta.addedRoads, delta.addedValues, 3);
+        readRoads(in, delta.changedRoads, delta.changedValues, 2);
+        readRoads(in, delta.bannedTurns, null, 3);
+        readRoads(in, delta.allowedTurns, null, 3);
+        byte directed = in.readByte();
+        delta.directed = directed < 0 ? null : directed == 1;
+        delta.profileBase = in.readInt();
+        int profiles = in.readInt();
+        for (int i = 0; i < profiles; i++) {
+            int[] departures = new int[in.readInt()];
+            int[] durations = new int[departures.length];
+            for (int j = 0; j < departures.length; j++) {
+                departures[j] = in.readInt();
+                durations[j] = in.readInt();
+            }
+            delta.addedDepartures.add(departures);
+            delta.addedDurations.add(durations);
+        }
+        return delta;
+    }
+
+    private static void writeNames(DataOutputStream out, List<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    private static void readNames(DataInputStream in, List<String> names) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            names.add(in.readUTF());
+        }
+    }
+
+    /**
+     * Writes a list of roads or turns as their town and road names, each followed by its
+     * weight, attributes, cost and profile when values is not null
+     */
+    private static void writeRoads(DataOutputStream out, List<String[]> roads, List<int[]> values)
+            throws IOException {
+        out.writeInt(roads.size());
+        for (int i = 0; i < roads.size(); i++) {
+            for (String name : roads.get(i)) {
+                out.writeUTF(name);
+            }
+            if (values != null) {
+                for (int value : values.get(i)) {
+                    out.writeInt(value);
+                }
+            }
+        }
+    }
+
+    private static void readRoads(DataInputStream in, List<String[]> roads, List<int[]> values, int names)
+            throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String[] road = new String[names];
+            for (int j = 0; j < names; j++) {
+                road[j] = in.readUTF();
+            }
+            roads.add(road);
+            if (values != null) {
+                int[] read = new int[4];
+                for (int j = 0; j < read.length; j++) {
+                    read[j] = in.readInt();
+                }
+                values.add(read);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.*;
+
+/**
+ * Graph partitioner - splits the towns of a graph into shards of nearly equal size
+ * while cutting as few roads as possible. Shards are grown one at a time by breadth
+ * first search so each starts out as a connected region, then towns on the border of
+ * a shard are moved to the neighboring shard holding most of their roads as long as
+ * that cuts fewer roads and keeps the shards balanced
+ *
+ * @author Jessica Park
+ */
+
+public class GraphPartitioner {
+    private static final int REFINEMENT_PASSES = 4;
+
+    private GraphPartitioner() {
+    }
+
+    /**
+     * Assigns every town of a graph to a shard
+     *
+     * @param graph the graph snapshot to split
+     * @param shards the number of shards
+     * @param imbalance how much larger than average a shard may grow during refinement,
+     * for example 0.05 for five percent
+     * @return the shard of every town, indexed by town id
+     * @throws IllegalArgumentException if shards is less than 1 or imbalance is negative
+     */
+    public static int[] partition(CompactGraph graph, int shards, double imbalance) {
+        if (shards < 1 || imbalance < 0) {
+            throw new IllegalArgumentException("Need at least one shard and a non-negative imbalance.");
+        }
+        int n = graph.size();
+        int[] labels = grow(graph, shards);
+        int[] sizes = new int[shards];
+        for (int label : labels) {
+            sizes[label]++;
+        }
+        int average = (n + shards - 1) / shards;
+        int maxSize = average + (int) (average * imbalance);
+        int minSize = Math.max(1, n / shards - (int) (average * imbalance));
+        int[] counts = new int[shards];
+        for (int pass = 0; pass < REFINEMENT_PASSES; pass++) {
+            if (refine(graph, labels, sizes, counts, minSize, maxSize) == 0) {
+                break;
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Grows each shard from the lowest numbered town not yet assigned until it holds
+     * its share of towns, continuing in the next component when a component runs out
+     */
+    private static int[] grow(CompactGraph graph, int shards) {
+        int n = graph.size();
+        int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        int[] queue = new int[n];
+        int nextSeed = 0;
+        int assigned = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            int target = (int) ((long) n * (shard + 1) / shards);
+            int head = 0;
+            int tail = 0;
+            while (assigned < target) {
+                if (head == tail) {
+                    while (labels[nextSeed] >= 0) {
+                        nextSeed++;
+                    }
+                    labels[nextSeed] = shard;
+                    queue[tail++] = nextSeed;
+                    assigned++;
+                    continue;
+                }
+                int current = queue[head++];
+                for (int slot = graph.firstSlot(current); slot < graph.endSlot(current) && assigned < target; slot++) {
+                    int neighbor = graph.target(slot);
+                    if (labels[neighbor] < 0) {
+                        labels[neighbor] = shard;
+                        queue[tail++] = neighbor;
+                        assigned++;
+                    }
+                }
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Moves each town whose roads mostly lead into another shard over to that shard
+     *
+     * @return the number of towns moved
+     */
+    private static int refine(CompactGraph graph, int[] labels, int[] sizes, int[] counts, int minSize, int maxSize) {
+        int moved = 0;
+        for (int town = 0; town < labels.length; town++) {
+            int own = labels[town];
+            for (int slot = graph.firstSlot(town); slot < graph.endSlot(town); slot++) {
+                counts[labels[graph.target(slot)]]++;
+            }
+            int best = own;
+            for (int slot = graph.firstSlot(town); slot < graph.endSlot(town); slot++) {
+                int shard = labels[graph.target(slot)];
+                if (counts[shard] > counts[best] && sizes[shard] < maxSize) {
+                    best = shard;
+                }
+            }
+            if (best != own && sizes[own] > minSize) {
+                labels[town] = best;
+                sizes[own]--;
+                sizes[best]++;
+                moved++;
+            }
+            for (int slot = graph.firstSlot(town); slot < graph.endSlot(town); slot++) {
+                counts[labels[graph.target(slot)]] = 0;
+            }
+            counts[own] = 0;
+        }
+        return moved;
+    }
+
+    /**
+     * Counts the roads whose towns are in different shards
+     *
+     * @param graph the graph snapshot
+     * @param labels the shard of every town
+     * @return the number of cut roads
+     */
+    public static int cutRoads(CompactGraph graph, int[] labels) {
+        int cut = 0;
+        for (int town = 0; town < labels.length; town++) {
+            for (int slot = graph.firstSlot(town); slot < graph.endSlot(town); slot++) {
+                if (graph.target(slot) > town && labels[graph.target(slot)] != labels[town]) {
+                    cut++;
+                }
+            }
+        }
+        return cut;
+    }
+}
@@ -1,8 +1,19 @@
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
 import java.util.Set;
 import java.util.HashSet;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * JUnit tests for the Graph class
@@ -131,4 +142,498 @@ public class Graph_STUDENT_Test {
         assertEquals("Town1 via Road1 to Town2 5", path.get(0), "First path segment should be Town1 via Road1 to Town2.");
         assertEquals("Town2 via Road2 to Town3 10", path.get(1), "Second path segment should be Town2 via Road2 to Town3.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test that a batch only changes the graph version once
+     */
+    @Test
+    public void testApplyBatchVersion() {
+        long version = graph.getVersion();
+        graph.apply(new GraphBatch().addRoad("Town1", "Town3", 7, "Road3").addRoad("Town3", "Town4", 2, "Road4"));
+        assertEquals(version + 1, graph.getVersion(), "A batch should bump the version once.");
+        assertTrue(graph.containsEdge(town1, town3), "Road3 should be added.");
+        assertTrue(graph.containsVertex(new Town("Town4")), "Town4 should be added.");
+    }
+
+    /**
+     * Test that changing a road weight repairs the cached shortest path tree
+     */
+    @Test
+    public void testUpdateWeight() {
+        graph.addEdge(town1, town3, 20, "Road3");
+        assertEquals("Town1 via Road1 to Town2 5", graph.shortestPath(town1, town3).get(0));
+
+        graph.updateWeight(town2, town3, 30);
+        ArrayList<String> path = graph.shortestPath(town1, town3);
+        assertEquals(1, path.size(), "The path should switch to Road3.");
+        assertEquals("Town1 via Road3 to Town3 20", path.get(0));
+
+        graph.dijkstraShortestPath(town1);
+        graph.updateWeight(town1, town2, 1);
+        graph.updateWeight(town2, town3, 2);
+        assertEquals(3, graph.cachedTree(town1).distanceTo(town3), "The cached tree should follow weight decreases.");
+        assertNull(graph.updateWeight(town1, new Town("Town4"), 1), "There is no road to update.");
+    }
+
+    /**
+     * Test that all pairs shortest paths match single source searches
+     */
+    @Test
+    public void testAllPairsShortestPaths() {
+        graph.addVertex(new Town("Town4"));
+        DistanceMatrix matrix = AllPairsShortestPaths.compute(graph);
+        CompactGraph compact = graph.compact();
+        assertEquals(4, matrix.size(), "There should be a row for every town.");
+        assertEquals(15, matrix.get(compact.id(town1), compact.id(town3)), "Town1 to Town3 should be 15.");
+        assertEquals(10, matrix.get(compact.id(town3), compact.id(town2)), "Town3 to Town2 should be 10.");
+        assertEquals(0, matrix.get(compact.id(town2), compact.id(town2)), "A town should be 0 from itself.");
+        assertEquals(Integer.MAX_VALUE, matrix.get(compact.id(town1), compact.id(new Town("Town4"))),
+                "Town4 can't be reached.");
+    }
+
+    /**
+     * Test that a matrix in a memory-mapped file holds the same distances
+     */
+    @Test
+    public void testMappedDistanceMatrix() throws IOException {
+        graph.addVertex(new Town("Town4"));
+        CompactGraph compact = graph.compact();
+        Path file = Files.createTempFile("distances", ".bin");
+        try {
+            try (DistanceMatrix matrix = DistanceMatrix.mapped(compact.size(), file)) {
+                AllPairsShortestPaths.fill(compact, matrix, ForkJoinPool.commonPool());
+                assertEquals(4, matrix.size(), "There should be a row for every town.");
+                assertEquals(15, matrix.get(compact.id(town1), compact.id(town3)), "Town1 to Town3 should be 15.");
+                assertEquals(Integer.MAX_VALUE, matrix.get(compact.id(town1), compact.id(new Town("Town4"))),
+                        "Town4 can't be reached.");
+                int[] row = new int[compact.size()];
+                matrix.readRow(compact.id(town3), row);
+                assertEquals(10, row[compact.id(town2)], "Town3 to Town2 should be 10.");
+            }
+            assertEquals(4L * 4 * 4, Files.size(file), "The file should hold every distance.");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test that every segment of a named road can be found and removed at once
+     */
+    @Test
+    public void testCloseRoad() {
+        graph.addEdge(town1, town3, 7, "Road1");
+        assertEquals(2, graph.roadsNamed("Road1").size(), "Road1 should have two segments.");
+        assertEquals(2, graph.closeRoad("Road1"), "Both segments of Road1 should be removed.");
+        assertFalse(graph.containsEdge(town1, town2), "Road1 should be gone from Town1.");
+        assertFalse(graph.containsEdge(town1, town3), "Road1 should be gone from Town3.");
+        assertTrue(graph.roadsNamed("Road1").isEmpty(), "The index should be empty.");
+        assertTrue(graph.containsEdge(town2, town3), "Road2 should be unaffected.");
+    }
+
+    /**
+     * Test that removeEdge only checks the weight and description when they are given
+     */
+    @Test
+    public void testRemoveEdgeWithoutWeightOrName() {
+        assertNull(graph.removeEdge(town1, town2, 6, null), "The weight should be checked.");
+        assertNotNull(graph.removeEdge(town1, town2, -1, null), "Road1 should be removed.");
+        assertEquals(0, graph.roadsNamed("Road1").size(), "The index should be updated.");
+    }
+
+    /**
+     * Test that every town is assigned its nearest facility
+     */
+    @Test
+    public void testNearestFacilities() {
+        Town town4 = new Town("Town4");
+        Town town5 = new Town("Town5");
+        graph.addVertex(town4);
+        graph.addVertex(town5);
+        graph.addEdge(town4, town5, 3, "Road3");
+        NearestFacilities nearest = graph.nearestFacilities(Arrays.asList(town1, town3, town5));
+        assertEquals(town1, nearest.facilityOf(town2), "Town2 is closer to Town1.");
+        assertEquals(5, nearest.distanceOf(town2));
+        assertEquals(town3, nearest.facilityOf(town3), "A facility is its own nearest facility.");
+        assertEquals(town5, nearest.facilityOf(town4), "Town4 can only reach Town5.");
+        assertEquals(3, nearest.distanceOf(town4));
+    }
+
+    /**
+     * Test that the component index follows additions and deletions
+     */
+    @Test
+    public void testComponents() {
+        Town town4 = new Town("Town4");
+        graph.addVertex(town4);
+        assertFalse(graph.connected(town1, town4));
+        assertEquals(0, graph.shortestPath(town1, town4).size(), "No route between components.");
+        assertArrayEquals(new int[] { 3, 1 }, graph.components());
+        graph.addEdge(town3, town4, 1, "Road3");
+        assertTrue(graph.connected(town1, town4));
+        assertArrayEquals(new int[] { 4 }, graph.components());
+        graph.removeEdge(town3, town4, -1, null);
+        assertFalse(graph.connected(town1, town4));
+        assertArrayEquals(new int[] { 3, 1 }, graph.components());
+    }
+
+    /**
+     * Test that a delta between two graphs, sent through its binary form, turns
+     * the older graph into the newer one
+     */
+    @Test
+    public void testDelta() throws IOException {
+        Graph newer = new Graph();
+        Town town4 = new Town("Town4");
+        newer.addVertex(town1);
+        newer.addVertex(town2);
+        newer.addVertex(town4);
+        newer.addEdge(town1, town2, 7, "Road1");
+        newer.addEdge(town2, town4, 3, "Road4");
+
+        GraphDelta delta = graph.diff(newer);
+        assertEquals(4, delta.size(), "Town3 removed with its road, Town4 and Road4 added, Road1 reweighted.");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        delta.write(new DataOutputStream(bytes));
+        GraphDelta shipped = GraphDelta.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        graph.apply(shipped);
+        assertFalse(graph.containsVertex(town3));
+        assertEquals(7, graph.getEdge(town1, town2).getWeight());
+        assertEquals("Road4", graph.getEdge(town2, town4).getName());
+        assertTrue(graph.diff(newer).isEmpty(), "Both graphs are now the same.");
+    }
+
+    /**
+     * Test that a path query with an expired deadline stops and reports that its
+     * result is incomplete, while one with time to spare finds the shortest path
+     */
+    @Test
+    public void testShortestPathWithin() {
+        Town previous = town3;
+        for (int i = 0; i < 3000; i++) {
+            Town next = new Town("Chain" + i);
+            graph.addVertex(next);
+            graph.addEdge(previous, next, 1, "Chain");
+            previous = next;
+        }
+        PathResult stopped = graph.shortestPathWithin(town1, previous, CancellationToken.deadlineIn(Duration.ZERO));
+        assertFalse(stopped.isComplete(), "The deadline had already passed.");
+        assertFalse(stopped.isFound(), "The search stopped long before the end of the chain.");
+        PathResult finished = graph.shortestPathWithin(town1, town3, CancellationToken.deadlineIn(Duration.ofMinutes(1)));
+        assertTrue(finished.isComplete());
+        assertEquals(15, finished.getDistance());
+        assertEquals(graph.shortestPath(town1, town3), finished.getSteps());
+    }
+
+    /**
+     * Test that paths honor road attributes, one-way roads and banned turns
+     */
+    @Test
+    public void testTurnRestrictions() {
+        Town town4 = new Town("Town4");
+        graph.addVertex(town4);
+        graph.addEdge(town1, town4, 4, "Bypass", Road.NO_TRUCKS);
+        graph.addEdge(town3, town4, 4, "Ramp", Road.ONE_WAY);
+        assertEquals(8, graph.distance(town1, town3));
+        assertEquals(2, graph.shortestPath(town1, town3, Road.NO_TRUCKS).size());
+        assertEquals("Town1 via Road1 to Town2 5", graph.shortestPath(town1, town3, Road.NO_TRUCKS).get(0));
+
+        graph.setDirected(true);
+        assertEquals(15, graph.distance(town1, town3), "The ramp only runs from Town3 to Town4.");
+        assertEquals(8, graph.distance(town3, town1));
+        assertEquals("Town3 via Ramp to Town4 4", graph.shortestPath(town3, town1).get(0));
+        Town town5 = new Town("Town5");
+        graph.addVertex(town5);
+        graph.addEdge(town5, town1, 1, "Exit", Road.ONE_WAY);
+        PathResult wrongWay = graph.shortestPathWithin(town1, town5,
+                CancellationToken.deadlineIn(Duration.ofMinutes(1)));
+        assertFalse(wrongWay.isFound(), "Town5 can only be left.");
+        assertTrue(wrongWay.isComplete(), "The search finished without reaching Town5.");
+
+        graph.setDirected(false);
+        assertTrue(graph.banTurn(town1, town4, town3));
+        assertFalse(graph.banTurn(town1, town4, town3));
+        assertEquals(15, graph.distance(town1, town3));
+        assertEquals(graph.distance(town1, town3), graph.shortestPathWithin(town1, town3,
+                CancellationToken.deadlineIn(Duration.ofMinutes(1))).getDistance());
+        assertEquals(8, graph.distance(town3, town1), "Only one direction of the turn is banned.");
+        assertThrows(IllegalArgumentException.class, () -> graph.banTurn(town1, town3, town2));
+
+        graph.removeEdge(town3, town4, -1, null);
+        assertTrue(graph.turnBans().isEmpty(), "Bans on a removed road are dropped.");
+        assertFalse(graph.allowTurn(town1, town4, town3));
+    }
+
+    /**
+     * Test that the fastest path depends on when the trip starts
+     */
+    @Test
+    public void testFastestPath() {
+        Town town4 = new Town("Town4");
+        graph.addVertex(town4);
+        graph.addEdge(town1, town4, 6, "Avenue");
+        graph.addEdge(town4, town3, 6, "Boulevard");
+        int rushHour = graph.addProfile(new int[] { 420, 480, 540 }, new int[] { 6, 30, 6 });
+        graph.setProfile(town1, town4, rushHour);
+        graph.setProfile(town4, town3, rushHour);
+
+        PathResult night = graph.fastestPath(town1, town3, 0);
+        assertEquals(12, night.getDistance());
+        assertEquals("Town1 via Avenue to Town4 6", night.getSteps().get(0));
+        PathResult rush = graph.fastestPath(town1, town3, 480);
+        assertEquals(15, rush.getDistance(), "The avenue is slower than Road1 and Road2 at 8am.");
+        assertEquals("Town1 via Road1 to Town2 5", rush.getSteps().get(0));
+        assertEquals(29, graph.travelTime(graph.getEdge(town1, town4), 482));
+        assertEquals(12, graph.distance(town1, town3), "Only the time-dependent search uses profiles.");
+        assertThrows(IllegalArgumentException.class, () -> graph.addProfile(new int[] { 0, 10 }, new int[] { 30, 5 }));
+        assertThrows(IllegalArgumentException.class, () -> graph.setProfile(town1, town4, 5));
+    }
+
+    /**
+     * Test that Pareto routing keeps every route not beaten on both distance and cost
+     */
+    @Test
+    public void testParetoPaths() {
+        Town town4 = new Town("Town4");
+        Town town5 = new Town("Town5");
+        graph.addVertex(town4);
+        graph.addVertex(town5);
+        graph.addEdge(town1, town4, 20, "Freeway");
+        graph.addEdge(town4, town3, 20, "Freeway");
+        graph.addEdge(town1, town5, 6, "Turnpike");
+        graph.addEdge(town5, town3, 10, "Turnpike");
+        graph.setCost(town1, town2, 7);
+        graph.setCost(town1, town5, 9);
+        graph.setCost(town5, town3, 9);
+
+        ParetoRoutes routes = graph.paretoPaths(town1, town3, 8);
+        assertTrue(routes.isComplete());
+        assertEquals(2, routes.size(), "The turnpike is longer and dearer than Road1 and Road2.");
+        assertEquals(15, routes.distance(0));
+        assertEquals(7, routes.cost(0));
+        assertEquals(40, routes.distance(1));
+        assertEquals(0, routes.cost(1));
+        assertEquals("Town1 via Freeway to Town4 20", routes.steps(1).get(0));
+        assertEquals(graph.shortestPath(town1, town3), routes.steps(0));
+        assertThrows(IllegalArgumentException.class, () -> graph.setCost(town1, town2, -1));
+
+        ParetoRoutes bounded = graph.paretoPaths(town1, town3, 1);
+        assertEquals(1, bounded.size());
+        assertEquals(15, bounded.distance(0));
+    }
+
+    /**
+     * Test that wide weight types add up long paths without overflowing
+     */
+    @Test
+    public void testWeightType() {
+        int huge = Integer.MAX_VALUE - 10;
+        Graph narrow = new Graph();
+        Graph wide = new Graph(WeightType.LONG);
+        for (Graph g : new Graph[] { narrow, wide }) {
+            g.addVertex(town1);
+            g.addVertex(town2);
+            g.addVertex(town3);
+            g.addEdge(town1, town2, huge, "Road1");
+            g.addEdge(town2, town3, huge, "Road2");
+        }
+        assertThrows(ArithmeticException.class, () -> narrow.distance(town1, town3));
+        assertEquals(2L * huge, wide.longDistance(town1, town3));
+        assertThrows(ArithmeticException.class, () -> wide.distance(town1, town3));
+        assertEquals(2, wide.shortestPath(town1, town3).size());
+        assertEquals(2L * huge, wide.shortestPathWithin(town1, town3,
+                CancellationToken.deadlineIn(Duration.ofMinutes(1))).getLongDistance());
+        narrow.dijkstraShortestPath(town1);
+        assertEquals(2L * huge, narrow.cachedTree(town1).distanceTo(town3));
+
+        Graph fixed = new Graph(WeightType.FIXED_POINT);
+        fixed.addVertex(town1);
+        fixed.addVertex(town2);
+        fixed.addEdge(town1, town2, WeightType.FIXED_POINT.toWeight(1.5), "Road1");
+        assertEquals("Town1 via Road1 to Town2 1.500", fixed.shortestPath(town1, town2).get(0));
+        assertEquals("1.500", fixed.getWeightType().format(fixed.longDistance(town1, town2)));
+        assertEquals("0.050", WeightType.FIXED_POINT.format(50));
+
+        Graph offPath = new Graph();
+        Town town4 = new Town("Town4");
+        for (Town t : new Town[] { town1, town3, town4 }) {
+            offPath.addVertex(t);
+        }
+        offPath.addEdge(town1, town4, 20, "Road1");
+        offPath.addEdge(town1, town3, 30, "Road2");
+        offPath.addEdge(town3, town4, Integer.MAX_VALUE - 5, "Road3");
+        assertEquals(30, offPath.distance(town1, town3));
+        assertEquals(1, offPath.shortestPath(town1, town3).size());
+        offPath.setDirected(true);
+        assertEquals(30, offPath.distance(town1, town3));
+
+        NearestFacilities nearest = wide.nearestFacilities(Set.of(town1));
+        assertEquals(2L * huge, nearest.longDistanceOf(town3));
+        assertThrows(ArithmeticException.class, () -> nearest.distanceOf(town3));
+        assertEquals(2, wide.townsWithin(town1, Integer.MAX_VALUE).size(), "Town3 is past any int radius.");
+        DistanceMatrix matrix = AllPairsShortestPaths.compute(wide);
+        assertTrue(matrix.isWide());
+        assertEquals(2L * huge, matrix.getLong(0, 2));
+        assertThrows(ArithmeticException.class, () -> matrix.get(2, 0));
+        assertEquals(huge, matrix.get(0, 1));
+        ParetoRoutes routes = wide.paretoPaths(town1, town3, 8);
+        assertEquals(1, routes.size());
+        assertEquals(2L * huge, routes.longDistance(0));
+
+        Graph ties = new Graph(WeightType.LONG);
+        for (Town t : new Town[] { town1, town2, town4 }) {
+            ties.addVertex(t);
+        }
+        ties.addEdge(town1, town2, 0, "Toll");
+        ties.addEdge(town1, town4, 0, "Free1");
+        ties.addEdge(town4, town2, 0, "Free2");
+        ties.setCost(town1, town2, 5);
+        ties.setCost(town1, town4, 1);
+        ParetoRoutes tied = ties.paretoPaths(town1, town2, 8);
+        assertEquals(1, tied.size(), "The toll road is beaten at the same distance.");
+        assertEquals(1, tied.cost(0));
+    }
+
+    /**
+     * Test that the minimum spanning forest orders and adds up negative weights
+     */
+    @Test
+    public void testMinimumSpanningForest() {
+        Graph triangle = new Graph();
+        triangle.addVertex(town1);
+        triangle.addVertex(town2);
+        triangle.addVertex(town3);
+        triangle.addEdge(town1, town2, -5, "Road1");
+        triangle.addEdge(town2, town3, 3, "Road2");
+        triangle.addEdge(town1, town3, 10, "Road3");
+        MinimumSpanningForest forest = triangle.minimumSpanningForest();
+        assertEquals(2, forest.size());
+        assertEquals(-2, forest.totalWeight());
+        assertEquals("Road1", forest.roads().get(0).getName());
+    }
+
+    /**
+     * Test that k shortest paths honor one-way roads and banned turns
+     */
+    @Test
+    public void testKShortestPathsRestricted() {
+        graph.setAttributes(town1, town2, Road.ONE_WAY);
+        graph.addEdge(town1, town3, 20, "Road3");
+        graph.setDirected(true);
+        ArrayList<ArrayList<String>> paths = graph.kShortestPaths(town2, town1, 3);
+        assertEquals(1, paths.size(), "Road1 can't be driven from Town2.");
+        assertEquals("Town2 via Road2 to Town3 10", paths.get(0).get(0));
+        assertEquals("Town3 via Road3 to Town1 20", paths.get(0).get(1));
+
+        graph.setDirected(false);
+        graph.removeEdge(town1, town3, -1, null);
+        Town town4 = new Town("Town4");
+        graph.addVertex(town4);
+        graph.addEdge(town2, town4, 1, "Road4");
+        graph.addEdge(town4, town3, 1, "Road5");
+        graph.banTurn(town1, town2, town4);
+        paths = graph.kShortestPaths(town1, town3, 3);
+        assertEquals(1, paths.size(), "The spur from Town2 can't turn onto Road4.");
+        assertEquals("Town2 via Road2 to Town3 10", paths.get(0).get(1));
+    }
+
+    /**
+     * Test that the towns within a distance are only reached along one-way roads
+     */
+    @Test
+    public void testTownsWithinOneWay() {
+        graph.setAttributes(town1, town2, Road.ONE_WAY);
+        graph.addEdge(town1, town3, 20, "Road3");
+        graph.setDirected(true);
+        TownDistances near = graph.townsWithin(town2, 15);
+        assertEquals(2, near.size(), "Town1 is 30 away from Town2.");
+        assertEquals(town3, near.town(1));
+        assertEquals(10, near.distance(1));
+        near = graph.townsWithin(town1, 5);
+        assertEquals(town2, near.town(1), "Road1 can be driven from Town1.");
+        assertEquals(5, near.distance(1));
+
+        TownDistances depots = graph.isochrones(Arrays.asList(town2, town3), 20);
+        assertEquals(3, depots.size());
+        assertEquals(town1, depots.town(2), "Town1 is only reached from Town3.");
+        assertEquals(1, depots.source(2));
+        assertEquals(20, depots.distance(2));
+    }
+
+    /**
+     * Test that the distance to the nearest facility is driven from the town to it
+     */
+    @Test
+    public void testNearestFacilitiesOneWay() {
+        graph.setAttributes(town1, town2, Road.ONE_WAY);
+        graph.addEdge(town1, town3, 20, "Road3");
+        graph.setDirected(true);
+        NearestFacilities nearest = graph.nearestFacilities(Set.of(town1));
+        assertEquals(30, nearest.distanceOf(town2), "Town2 has to go round by Town3.");
+        assertEquals(20, nearest.distanceOf(town3));
+        assertEquals(town1, nearest.facilityOf(town2));
+
+        graph.setDirected(false);
+        graph.banTurn(town2, town3, town1);
+        nearest = graph.nearestFacilities(Set.of(town1));
+        assertEquals(5, nearest.distanceOf(town2));
+        assertEquals(15, nearest.distanceOf(town3), "Town3 may go by Town2.");
+        graph.banTurn(town3, town2, town1);
+        assertEquals(20, graph.nearestFacilities(Set.of(town1)).distanceOf(town3), "The turn at Town2 is banned.");
+    }
+
+    /**
+     * Test that every row of the distance matrix honors one-way roads
+     */
+    @Test
+    public void testAllPairsOneWay() {
+        graph.setAttributes(town1, town2, Road.ONE_WAY);
+        graph.addEdge(town1, town3, 20, "Road3");
+        graph.setDirected(true);
+        DistanceMatrix matrix = AllPairsShortestPaths.compute(graph);
+        CompactGraph compact = graph.compact();
+        assertEquals(5, matrix.get(compact.id(town1), compact.id(town2)));
+        assertEquals(30, matrix.get(compact.id(town2), compact.id(town1)), "Town2 has to go round by Town3.");
+        assertEquals(graph.distance(town3, town1), matrix.get(compact.id(town3), compact.id(town1)));
+    }
+
+    /**
+     * Test that a delta carries road attributes, costs, profiles, turn bans and the
+     * directed mode through its binary form
+     */
+    @Test
+    public void testDeltaRestrictions() throws IOException {
+        Graph newer = new Graph();
+        newer.apply(new GraphBatch().addRoad("Town1", "Town2", 5, "Road1", Road.ONE_WAY, 0, -1)
+                .addRoad("Town2", "Town3", 10, "Road2"));
+        int rushHour = newer.addProfile(new int[] { 0, 60 }, new int[] { 10, 30 });
+        newer.setProfile(town2, town3, rushHour);
+        newer.setCost(town2, town3, 4);
+        newer.banTurn(town1, town2, town3);
+        newer.setDirected(true);
+
+        GraphDelta delta = graph.diff(newer);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        delta.write(new DataOutputStream(bytes));
+        graph.apply(GraphDelta.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+        assertTrue(graph.diff(newer).isEmpty(), "Both graphs are now the same.");
+        assertTrue(graph.getEdge(town1, town2).isOneWay());
+        assertEquals(4, graph.getEdge(town2, town3).getCost());
+        assertEquals(rushHour, graph.getEdge(town2, town3).getProfile());
+        assertEquals(Integer.MAX_VALUE, graph.distance(town2, town1), "Road1 is one-way.");
+        assertTrue(graph.shortestPath(town1, town3).isEmpty(), "The turn at Town2 is banned.");
+
+        newer.setDirected(false);
+        newer.allowTurn(town1, town2, town3);
+        newer.removeEdge(town1, town2, -1, null);
+        newer.addEdge(town2, town1, 5, "Road1", Road.ONE_WAY);
+        graph.apply(graph.diff(newer));
+        assertTrue(graph.diff(newer).isEmpty(), "The reversed road and lifted ban are carried too.");
+        assertEquals(town2, graph.getEdge(town1, town2).getSource());
+
+        Graph other = new Graph();
+        other.addProfile(new int[] { 0 }, new int[] { 1 });
+        assertThrows(IllegalArgumentException.class, () -> other.diff(newer),
+                "Profiles that don't line up can't be sent as a delta.");
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.Arrays;
+
+/**
+ * Int min heap - a binary heap of int values ordered by long keys, stored in
+ * primitive arrays so it can be cleared and reused without allocating.
+ * There is no decrease-key; callers push again and skip stale entries when popped
+ *
+ * @author Jessica Park
+ */
+
+public class IntMinHeap {
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * Constructor - creates an empty heap
+     *
+     * @param capacity the initial capacity
+     */
+    public IntMinHeap(int capacity) {
+        this.keys = new long[Math.max(capacity, 16)];
+        this.values = new int[keys.length];
+    }
+
+    /**
+     * Returns true if the heap is empty
+     *
+     * @return true if there are no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every entry, keeping the arrays for reuse
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Adds a value with the given key
+     *
+     * @param key the priority, smaller keys are popped first
+     * @param value the value
+     */
+    public void push(long key, int value) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            keys[i] = keys[parent];
+            values[i] = values[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    /**
+     * Returns the smallest key without removing it
+     *
+     * @return the smallest key
+     */
+    public long peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Removes the entry with the smallest key
+     *
+     * @return the value of the removed entry
+     */
+    public int pop() {
+        int top = values[0];
+        size--;
+        if (size > 0) {
+            long key = keys[size];
+            int value = values[size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (key <= keys[child]) {
+                    break;
+                }
+                keys[i] = keys[child];
+                values[i] = values[child];
+                i = child;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+        return top;
+    }
+}
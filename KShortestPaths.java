@@ -0,0 +1,136 @@
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * K shortest paths - Yen's algorithm for the k shortest loopless paths between two
+ * towns. Each new path is found by branching off an earlier path at every town
+ * along it, and those spur searches run in parallel, one SearchWorkspace per thread.
+ * One-way roads and banned turns are honored
+ *
+ * @author Jessica Park
+ */
+
+public class KShortestPaths {
+
+    private KShortestPaths() {
+    }
+
+    /**
+     * A path as the road slots it uses, starting at the source town
+     */
+    private static class Route {
+        private final int[] slots;
+        private final long weight;
+
+        private Route(int[] slots, long weight) {
+            this.slots = slots;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Finds up to k shortest loopless paths, shortest first
+     *
+     * @param graph the graph to search
+     * @param source the id of the starting town
+     * @param target the id of the ending town
+     * @param k the most paths to find
+     * @return the paths as arrays of road slots, shortest first
+     */
+    public static List<int[]> find(CompactGraph graph, int source, int target, int k) {
+        List<Route> found = new ArrayList<>();
+        if (k <= 0 || source == target) {
+            return new ArrayList<>();
+        }
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+        workspace.clearBans(graph);
+        if (!search(workspace, graph, -1, source, target)) {
+            return new ArrayList<>();
+        }
+        found.add(route(graph, workspace.slotsTo(graph, target)));
+
+        PriorityQueue<Route> candidates = new PriorityQueue<>(Comparator.comparingLong((Route route) -> route.weight));
+        Set<List<Integer>> seen = new HashSet<>();
+        seen.add(key(found.get(0).slots));
+        while (found.size() < k) {
+            Route previous = found.get(found.size() - 1);
+            List<Route> spurs = IntStream.range(0, previous.slots.length)
+                    .parallel()
+                    .mapToObj(i -> spur(graph, source, target, previous, i, found))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            for (Route spur : spurs) {
+                if (seen.add(key(spur.slots))) {
+                    candidates.add(spur);
+                }
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+            found.add(candidates.poll());
+        }
+
+        List<int[]> paths = new ArrayList<>(found.size());
+        for (Route route : found) {
+            paths.add(route.slots);
+        }
+        return paths;
+    }
+
+    /**
+     * Finds the shortest path that follows the previous path for its first i roads
+     * and then leaves it, without reusing any town on the shared part
+     */
+    private static Route spur(CompactGraph graph, int source, int target, Route previous, int i, List<Route> found) {
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+        workspace.clearBans(graph);
+
+        int spurTown = source;
+        for (int j = 0; j < i; j++) {
+            workspace.banTown(spurTown);
+            spurTown = graph.target(previous.slots[j]);
+        }
+        for (Route route : found) {
+            if (route.slots.length > i && Arrays.equals(route.slots, 0, i, previous.slots, 0, i)) {
+                workspace.banSlot(route.slots[i]);
+            }
+        }
+        if (!search(workspace, graph, i > 0 ? previous.slots[i - 1] : -1, spurTown, target)) {
+            return null;
+        }
+        int[] spurSlots = workspace.slotsTo(graph, target);
+        int[] slots = Arrays.copyOf(previous.slots, i + spurSlots.length);
+        System.arraycopy(spurSlots, 0, slots, i, spurSlots.length);
+        return route(graph, slots);
+    }
+
+    /**
+     * Searches the way SearchWorkspace.find does. On a restricted graph the spur search
+     * continues from the road the shared part arrived by, so its first turn is checked
+     */
+    private static boolean search(SearchWorkspace workspace, CompactGraph graph, int arrivedBy, int source,
+            int target) {
+        if (graph.isRestricted()) {
+            return workspace.routeAfter(graph, arrivedBy, source, target);
+        }
+        return graph.getWeightType().isWide() ? workspace.searchLong(graph, source, target, null)
+                : workspace.search(graph, source, target);
+    }
+
+    private static Route route(CompactGraph graph, int[] slots) {
+        long weight = 0;
+        for (int slot : slots) {
+            weight += graph.weight(slot);
+        }
+        return new Route(slots, weight);
+    }
+
+    private static List<Integer> key(int[] slots) {
+        List<Integer> key = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            key.add(slot);
+        }
+        return key;
+    }
+}
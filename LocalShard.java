@@ -0,0 +1,141 @@
+import java.util.*;
+
+/**
+ * Local shard - a shard held in this JVM by its own TownGraphManager
+ *
+ * @author Jessica Park
+ */
+
+public class LocalShard implements Shard {
+    private final TownGraphManager manager = new TownGraphManager();
+
+    /**
+     * Adds a town to this shard
+     *
+     * @param town the town's name
+     * @return true if the town was added, false if it was already there
+     */
+    @Override
+    public synchronized boolean addTown(String town) {
+        return manager.addTown(town);
+    }
+
+    /**
+     * Determines if a town is in this shard
+     *
+     * @param town the town's name
+     * @return true if the town is in this shard
+     */
+    @Override
+    public synchronized boolean containsTown(String town) {
+        return manager.containsTown(town);
+    }
+
+    /**
+     * Adds a road between two towns of this shard
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param weight the distance between the two towns
+     * @param roadName name of road
+     * @return true if the road was added
+     */
+    @Override
+    public synchronized boolean addRoad(String town1, String town2, int weight, String roadName) {
+        return manager.addRoad(town1, town2, weight, roadName);
+    }
+
+    /**
+     * Returns the name of the road between two towns of this shard
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @return the road name, or null if there is no road
+     */
+    @Override
+    public synchronized String getRoad(String town1, String town2) {
+        return manager.getRoad(town1, town2);
+    }
+
+    /**
+     * Deletes a road between two towns of this shard
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param roadName the road name
+     * @return true if the road was deleted
+     */
+    @Override
+    public synchronized boolean deleteRoad(String town1, String town2, String roadName) {
+        return manager.deleteRoadConnection(town1, town2, roadName);
+    }
+
+    /**
+     * Deletes a town and its roads from this shard
+     *
+     * @param town the town's name
+     * @return true if the town was deleted
+     */
+    @Override
+    public synchronized boolean deleteTown(String town) {
+        return manager.deleteTown(town);
+    }
+
+    /**
+     * Lists the towns of this shard
+     *
+     * @return the town names in sorted order
+     */
+    @Override
+    public synchronized ArrayList<String> allTowns() {
+        return manager.allTowns();
+    }
+
+    /**
+     * Lists the roads of this shard
+     *
+     * @return the road names in sorted order
+     */
+    @Override
+    public synchronized ArrayList<String> allRoads() {
+        return manager.allRoads();
+    }
+
+    /**
+     * Finds the distances from one town to several others without leaving this shard
+     *
+     * @param source name of the town to measure from
+     * @param targets names of the towns to measure to
+     * @return the distance to each target, Integer.MAX_VALUE for targets that can't be reached
+     */
+    @Override
+    public synchronized int[] distances(String source, List<String> targets) {
+        int[] result = new int[targets.size()];
+        Arrays.fill(result, Integer.MAX_VALUE);
+        TownDistances reached = manager.townsWithin(source, Integer.MAX_VALUE);
+        if (reached == null) {
+            return result;
+        }
+        Map<String, Integer> distances = new HashMap<>(reached.size() * 2);
+        for (int i = 0; i < reached.size(); i++) {
+            distances.put(reached.town(i).getName(), reached.distance(i));
+        }
+        for (int i = 0; i < result.length; i++) {
+            result[i] = distances.getOrDefault(targets.get(i), Integer.MAX_VALUE);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the shortest path between two towns without leaving this shard
+     *
+     * @param town1 name of the starting town
+     * @param town2 name of the ending town
+     * @return steps in the same format as TownGraphManager.getPath, empty if there is no path
+     */
+    @Override
+    public synchronized ArrayList<String> getPath(String town1, String town2) {
+        ArrayList<String> path = manager.getPath(town1, town2);
+        return path == null ? new ArrayList<>() : path;
+    }
+}
@@ -0,0 +1,179 @@
+import java.util.*;
+
+/**
+ * Minimum spanning forest - the cheapest set of roads that keeps every connected
+ * group of towns connected, found with filter-Kruskal. Roads are packed into
+ * primitive keys holding the weight and an edge number, split around a pivot, and
+ * only the light half is sorted before the heavy half is filtered down to the roads
+ * that still join two different trees. The only parallel step is Arrays.parallelSort
+ * of each light half, everything else runs on the calling thread
+ *
+ * @author Jessica Park
+ */
+
+public class MinimumSpanningForest {
+    private static final int SORT_THRESHOLD = 1 << 16;
+    private static final int SAMPLE_SIZE = 63;
+
+    private final CompactGraph graph;
+    private final int[] from;
+    private final int[] to;
+    private final int[] slots;
+    private final DisjointSets trees;
+    private final int targetSets;
+    private int[] chosen;
+    private int chosenCount;
+    private long totalWeight;
+
+    private MinimumSpanningForest(CompactGraph graph) {
+        this.graph = graph;
+        int edges = 0;
+        for (int id = 0; id < graph.size(); id++) {
+            for (int slot = graph.firstSlot(id); slot < graph.endSlot(id); slot++) {
+                if (graph.target(slot) > id) {
+                    edges++;
+                }
+            }
+        }
+        this.from = new int[edges];
+        this.to = new int[edges];
+        this.slots = new int[edges];
+        int next = 0;
+        for (int id = 0; id < graph.size(); id++) {
+            for (int slot = graph.firstSlot(id); slot < graph.endSlot(id); slot++) {
+                if (graph.target(slot) > id) {
+                    from[next] = id;
+                    to[next] = graph.target(slot);
+                    slots[next] = slot;
+                    next++;
+                }
+            }
+        }
+        this.trees = new DisjointSets(graph.size());
+        this.targetSets = graph.componentCount();
+        this.chosen = new int[Math.max(graph.size() - targetSets, 0)];
+    }
+
+    /**
+     * Finds the minimum spanning forest of a graph
+     *
+     * @param graph the graph snapshot
+     * @return the roads of the forest
+     */
+    public static MinimumSpanningForest compute(CompactGraph graph) {
+        MinimumSpanningForest forest = new MinimumSpanningForest(graph);
+        long[] keys = new long[forest.from.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(graph.weight(forest.slots[i]), i);
+        }
+        forest.filterKruskal(keys, 0, keys.length, new Random(keys.length));
+        return forest;
+    }
+
+    private void filterKruskal(long[] keys, int start, int end, Random random) {
+        if (trees.setCount() == targetSets || start >= end) {
+            return;
+        }
+        if (end - start <= SORT_THRESHOLD) {
+            Arrays.parallelSort(keys, start, end);
+            kruskal(keys, start, end);
+            return;
+        }
+        long pivot = pivot(keys, start, end, random);
+        int split = start;
+        for (int i = start; i < end; i++) {
+            if (keys[i] <= pivot) {
+                long swap = keys[i];
+                keys[i] = keys[split];
+                keys[split++] = swap;
+            }
+        }
+        filterKruskal(keys, start, split, random);
+        int kept = split;
+        for (int i = split; i < end; i++) {
+            int edge = (int) keys[i];
+            if (!trees.connected(from[edge], to[edge])) {
+                keys[kept++] = keys[i];
+            }
+        }
+        filterKruskal(keys, split, kept, random);
+    }
+
+    private void kruskal(long[] keys, int start, int end) {
+        for (int i = start; i < end && trees.setCount() > targetSets; i++) {
+            int edge = (int) keys[i];
+            if (trees.union(from[edge], to[edge])) {
+                chosen[chosenCount++] = slots[edge];
+                totalWeight += weight(keys[i]);
+            }
+        }
+    }
+
+    /**
+     * Packs a weight above an edge number. The weight is kept signed in the high half
+     * and the edge number is never negative, so keys sort by weight, negative weights
+     * first, and then by edge number
+     */
+    private static long key(int weight, int edge) {
+        return ((long) weight << 32) | edge;
+    }
+
+    private static int weight(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static long pivot(long[] keys, int start, int end, Random random) {
+        long[] sample = new long[SAMPLE_SIZE];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = keys[start + random.nextInt(end - start)];
+        }
+        Arrays.sort(sample);
+        return sample[sample.length / 2];
+    }
+
+    /**
+     * Returns the number of roads in the forest
+     *
+     * @return the number of roads
+     */
+    public int size() {
+        return chosenCount;
+    }
+
+    /**
+     * Returns the total weight of the roads in the forest
+     *
+     * @return the total weight
+     */
+    public long totalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * Returns the roads of the forest, cheapest first
+     *
+     * @return the roads in the forest
+     */
+    public ArrayList<Road> roads() {
+        ArrayList<Road> roads = new ArrayList<>(chosenCount);
+        for (int i = 0; i < chosenCount; i++) {
+            roads.add(graph.road(chosen[i]));
+        }
+        return roads;
+    }
+
+    /**
+     * Returns the names of the roads in the forest in sorted order, with a name
+     * repeated once for every road segment that has it
+     *
+     * @return the sorted road names
+     */
+    public ArrayList<String> roadNames() {
+        ArrayList<String> names = new ArrayList<>(chosenCount);
+        for (int i = 0; i < chosenCount; i++) {
+            names.add(graph.road(chosen[i]).getName());
+        }
+        Collections.sort(names);
+        return names;
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Nearest facilities - for every town, the nearest of a set of facility towns by
+ * road distance, found with Dijkstra searches that start from all facilities at
+ * distance 0, using SearchWorkspace.searchWithinTowards with no radius. Distances run
+ * from each town to its facility, so one-way roads and banned turns are honored in the
+ * direction they would be driven. Distances are kept in longs, so graphs with a wide
+ * WeightType are searched the same way. Connected components
+ * are independent, so they are grouped into partitions of similar size that are
+ * searched in parallel. That is the only parallelism: a graph that is one connected
+ * component is searched on a single thread. Components come from the graph's own
+ * component index, captured in the CompactGraph snapshot
+ *
+ * @author Jessica Park
+ */
+
+public class NearestFacilities {
+    private final CompactGraph graph;
+    private final int[] facilities;
+    private final long[] distances;
+
+    private NearestFacilities(CompactGraph graph, int[] facilities, long[] distances) {
+        this.graph = graph;
+        this.facilities = facilities;
+        this.distances = distances;
+    }
+
+    /**
+     * Finds the nearest facility of every town
+     *
+     * @param graph the graph to search
+     * @param facilityIds the ids of the facility towns
+     * @param partitions the most searches to run in parallel
+     * @return the nearest facility and distance of every town
+     */
+    public static NearestFacilities compute(CompactGraph graph, int[] facilityIds, int partitions) {
+        int n = graph.size();
+        int[] facilities = new int[n];
+        long[] distances = new long[n];
+        Arrays.fill(facilities, -1);
+        Arrays.fill(distances, Long.MAX_VALUE);
+
+        int[][] seeds = partition(graph, facilityIds, Math.max(1, partitions));
+        IntStream.range(0, seeds.length).parallel().forEach(p -> {
+            SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+            int settled = workspace.searchWithinTowards(graph, seeds[p], Long.MAX_VALUE);
+            for (int i = 0; i < settled; i++) {
+                int id = workspace.settled(i);
+                facilities[id] = seeds[p][workspace.origin(id)];
+                distances[id] = workspace.length(id);
+            }
+        });
+        return new NearestFacilities(graph, facilities, distances);
+    }
+
+    /**
+     * Splits the facilities into groups whose components hold a similar number of towns.
+     * Components without a facility are left out since none of their towns can be reached
+     */
+    private static int[][] partition(CompactGraph graph, int[] facilityIds, int partitions) {
+        int[] labels = graph.componentLabels();
+        int[] sizes = new int[graph.componentCount()];
+        for (int label : labels) {
+            sizes[label]++;
+        }
+        Map<Integer, List<Integer>> byComponent = new HashMap<>();
+        for (int id : facilityIds) {
+            byComponent.computeIfAbsent(labels[id], k -> new ArrayList<>()).add(id);
+        }
+        List<Integer> components = new ArrayList<>(byComponent.keySet());
+        components.sort((a, b) -> Integer.compare(sizes[b], sizes[a]));
+
+        int groups = Math.min(partitions, components.size());
+        long[] load = new long[groups];
+        List<List<Integer>> seeds = new ArrayList<>();
+        for (int i = 0; i < groups; i++) {
+            seeds.add(new ArrayList<>());
+        }
+        for (int component : components) {
+            int lightest = 0;
+            for (int i = 1; i < groups; i++) {
+                if (load[i] < load[lightest]) {
+                    lightest = i;
+                }
+            }
+            load[lightest] += sizes[component];
+            seeds.get(lightest).addAll(byComponent.get(component));
+        }
+
+        int[][] result = new int[groups][];
+        for (int i = 0; i < groups; i++) {
+            result[i] = seeds.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the snapshot the town ids refer to
+     *
+     * @return the graph snapshot
+     */
+    public CompactGraph graph() {
+        return graph;
+    }
+
+    /**
+     * Returns the nearest facility of every town
+     *
+     * @return the id of each town's nearest facility, or -1 if no facility can be reached,
+     * indexed by town id
+     */
+    public int[] facilities() {
+        return facilities;
+    }
+
+    /**
+     * Returns the distance to the nearest facility of every town
+     *
+     * @return the distances, Integer.MAX_VALUE where no facility can be reached,
+     * indexed by town id
+     * @throws ArithmeticException if a distance does not fit in an int, see longDistances
+     */
+    public int[] distances() {
+        int[] result = new int[distances.length];
+        for (int id = 0; id < result.length; id++) {
+            result[id] = toInt(distances[id]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the distance to the nearest facility of every town, for graphs whose
+     * distances can be longer than an int holds
+     *
+     * @return the distances, Long.MAX_VALUE where no facility can be reached,
+     * indexed by town id
+     */
+    public long[] longDistances() {
+        return distances;
+    }
+
+    /**
+     * Returns the nearest facility of a town
+     *
+     * @param town the town to look up
+     * @return the nearest facility, or null if none can be reached
+     */
+    public Town facilityOf(Town town) {
+        int id = graph.id(town);
+        return id < 0 || facilities[id] < 0 ? null : graph.town(facilities[id]);
+    }
+
+    /**
+     * Returns the distance from a town to its nearest facility
+     *
+     * @param town the town to look up
+     * @return the distance, or Integer.MAX_VALUE if no facility can be reached
+     * @throws ArithmeticException if the distance does not fit in an int, see longDistanceOf
+     */
+    public int distanceOf(Town town) {
+        return toInt(longDistanceOf(town));
+    }
+
+    /**
+     * Returns the distance from a town to its nearest facility, for graphs whose
+     * distances can be longer than an int holds
+     *
+     * @param town the town to look up
+     * @return the distance, or Long.MAX_VALUE if no facility can be reached
+     */
+    public long longDistanceOf(Town town) {
+        int id = graph.id(town);
+        return id < 0 ? Long.MAX_VALUE : distances[id];
+    }
+
+    private static int toInt(long distance) {
+        return distance == Long.MAX_VALUE ? Integer.MAX_VALUE : Math.toIntExact(distance);
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Off-heap road store - keeps town names, road names and weights of a large road
+ * network in direct buffers instead of Town and Road objects. Towns and roads are
+ * only created as short-lived views when they are asked for, so millions of roads
+ * cost a few buffers instead of millions of objects for the garbage collector
+ *
+ * @author Jessica Park
+ */
+
+public class OffHeapRoadStore {
+    private static final int ROAD_BYTES = 16;
+
+    private final OffHeapStringPool townNames = new OffHeapStringPool();
+    private final OffHeapStringPool roadNames = new OffHeapStringPool();
+    private ByteBuffer roads = ByteBuffer.allocateDirect(ROAD_BYTES * 1024);
+    private int roadCount;
+
+    /**
+     * Reads towns and roads from a file in the format: road-name,weight;town1;town2
+     *
+     * @param file the file to read from
+     * @return the store holding every road in the file
+     * @throws FileNotFoundException if the file does not exist
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    public static OffHeapRoadStore read(File file) throws FileNotFoundException, IOException {
+        OffHeapRoadStore store = new OffHeapRoadStore();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] parts = line.split(";");
+                String[] road = parts[0].split(",");
+                if (parts.length != 3 || road.length != 2) {
+                    throw new IOException("Malformed line: " + line);
+                }
+                try {
+                    store.addRoad(parts[1].trim(), parts[2].trim(), Integer.parseInt(road[1].trim()), road[0].trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed weight: " + line, e);
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Adds a town if it is not already stored
+     *
+     * @param name the town's name
+     * @return the town's id
+     */
+    public int addTown(String name) {
+        return townNames.intern(name);
+    }
+
+    /**
+     * Adds a road, adding its towns if needed
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param weight the distance between the two towns
+     * @param roadName name of road
+     * @return the road's index
+     */
+    public int addRoad(String town1, String town2, int weight, String roadName) {
+        roads = OffHeapStringPool.ensureCapacity(roads, (long) ROAD_BYTES * (roadCount + 1));
+        int base = ROAD_BYTES * roadCount;
+        roads.putInt(base, townNames.intern(town1));
+        roads.putInt(base + 4, townNames.intern(town2));
+        roads.putInt(base + 8, weight);
+        roads.putInt(base + 12, roadNames.intern(roadName));
+        return roadCount++;
+    }
+
+    /**
+     * Returns the number of towns
+     *
+     * @return the number of towns
+     */
+    public int townCount() {
+        return townNames.size();
+    }
+
+    /**
+     * Returns the number of roads
+     *
+     * @return the number of roads
+     */
+    public int roadCount() {
+        return roadCount;
+    }
+
+    /**
+     * Returns the name of a town
+     *
+     * @param id the town's id
+     * @return the town's name
+     */
+    public String townName(int id) {
+        return townNames.get(id);
+    }
+
+    /**
+     * Returns the id of the first town on a road
+     *
+     * @param index the road's index
+     * @return the source town's id
+     */
+    public int source(int index) {
+        return roads.getInt(ROAD_BYTES * index);
+    }
+
+    /**
+     * Returns the id of the second town on a road
+     *
+     * @param index the road's index
+     * @return the destination town's id
+     */
+    public int destination(int index) {
+        return roads.getInt(ROAD_BYTES * index + 4);
+    }
+
+    /**
+     * Returns the distance of a road
+     *
+     * @param index the road's index
+     * @return the road's weight
+     */
+    public int weight(int index) {
+        return roads.getInt(ROAD_BYTES * index + 8);
+    }
+
+    /**
+     * Returns the name of a road
+     *
+     * @param index the road's index
+     * @return the road's name
+     */
+    public String roadName(int index) {
+        return roadNames.get(roads.getInt(ROAD_BYTES * index + 12));
+    }
+
+    /**
+     * Creates a Town view of a stored town
+     *
+     * @param id the town's id
+     * @return a new Town with the stored name
+     */
+    public Town town(int id) {
+        return new Town(townName(id));
+    }
+
+    /**
+     * Creates a Road view of a stored road
+     *
+     * @param index the road's index
+     * @return a new Road with the stored towns, weight and name
+     */
+    public Road road(int index) {
+        return new Road(town(source(index)), town(destination(index)), weight(index), roadName(index));
+    }
+
+    /**
+     * Returns the number of bytes used outside the heap
+     *
+     * @return the off-heap bytes in use
+     */
+    public long offHeapBytes() {
+        return townNames.offHeapBytes() + roadNames.offHeapBytes() + (long) ROAD_BYTES * roadCount;
+    }
+
+    /**
+     * Builds an ordinary Graph from the stored towns and roads in one batch
+     *
+     * @return a new graph holding every stored town and road
+     * @throws IllegalArgumentException if two stored roads connect the same towns
+     */
+    public Graph toGraph() {
+        GraphBatch batch = new GraphBatch();
+        for (int id = 0; id < townCount(); id++) {
+            batch.addTown(townName(id));
+        }
+        for (int index = 0; index < roadCount; index++) {
+            batch.addRoad(townName(source(index)), townName(destination(index)), weight(index), roadName(index));
+        }
+        Graph graph = new Graph();
+        graph.apply(batch);
+        return graph;
+    }
+}
@@ -0,0 +1,145 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Off-heap string pool - stores distinct strings as UTF-8 bytes in direct buffers
+ * and numbers them 0..size()-1 in the order they were first added.
+ * Only the open addressing table that finds existing strings lives on the heap
+ *
+ * @author Jessica Park
+ */
+
+public class OffHeapStringPool {
+    private ByteBuffer bytes = ByteBuffer.allocateDirect(1 << 12);
+    private ByteBuffer offsets = ByteBuffer.allocateDirect(1 << 10);
+    private ByteBuffer hashes = ByteBuffer.allocateDirect(1 << 10);
+    private int[] table = new int[64];
+    private int size;
+
+    /**
+     * Returns the number of distinct strings in the pool
+     *
+     * @return the number of strings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes used outside the heap
+     *
+     * @return the off-heap bytes in use
+     */
+    public long offHeapBytes() {
+        return bytes.position() + 8L * size;
+    }
+
+    /**
+     * Adds a string if it is not already in the pool
+     *
+     * @param value the string to add
+     * @return the id of the string
+     */
+    public int intern(String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        int hash = Arrays.hashCode(encoded);
+        int mask = table.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int id = table[i] - 1;
+            if (id < 0) {
+                break;
+            }
+            if (hashes.getInt(4 * id) == hash && matches(id, encoded)) {
+                return id;
+            }
+        }
+
+        int id = size++;
+        bytes = ensureCapacity(bytes, bytes.position() + encoded.length);
+        offsets = ensureCapacity(offsets, 4 * size);
+        hashes = ensureCapacity(hashes, 4 * size);
+        offsets.putInt(4 * id, bytes.position());
+        hashes.putInt(4 * id, hash);
+        bytes.put(encoded);
+        if (2 * size > table.length) {
+            rehash(table.length * 2);
+        } else {
+            insert(id, hash);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the string with the given id
+     *
+     * @param id the string's id
+     * @return the string
+     */
+    public String get(int id) {
+        int start = start(id);
+        byte[] encoded = new byte[end(id) - start];
+        bytes.get(start, encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    private int start(int id) {
+        return offsets.getInt(4 * id);
+    }
+
+    private int end(int id) {
+        return id + 1 < size ? offsets.getInt(4 * (id + 1)) : bytes.position();
+    }
+
+    private boolean matches(int id, byte[] encoded) {
+        int start = start(id);
+        if (end(id) - start != encoded.length) {
+            return false;
+        }
+        for (int i = 0; i < encoded.length; i++) {
+            if (bytes.get(start + i) != encoded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(int id, int hash) {
+        int mask = table.length - 1;
+        int i = hash & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = id + 1;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int id = 0; id < size; id++) {
+            insert(id, hashes.getInt(4 * id));
+        }
+    }
+
+    /**
+     * Returns a direct buffer with room for at least the given number of bytes,
+     * copying the old buffer into a bigger one when needed
+     *
+     * @param buffer the current buffer
+     * @param capacity the number of bytes needed
+     * @return a buffer with the same contents and position
+     */
+    static ByteBuffer ensureCapacity(ByteBuffer buffer, long capacity) {
+        if (capacity <= buffer.capacity()) {
+            return buffer;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Off-heap buffer cannot exceed 2GB.");
+        }
+        int newCapacity = (int) Math.min(Integer.MAX_VALUE, Math.max(capacity, 2L * buffer.capacity()));
+        ByteBuffer grown = ByteBuffer.allocateDirect(newCapacity);
+        int position = buffer.position();
+        grown.put(buffer.duplicate().position(0).limit(buffer.capacity()));
+        grown.position(position);
+        return grown;
+    }
+}
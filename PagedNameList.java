@@ -0,0 +1,109 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.IntSupplier;
+
+import javafx.collections.ObservableListBase;
+
+/**
+ * Paged name list - an observable list that reads names a page at a time from a
+ * sorted source such as TownGraphManager.allTowns(from, count). List views and
+ * combo boxes only ask for the rows they show, so only those pages are loaded
+ * 
+ * @author Jessica Park
+ */
+public class PagedNameList extends ObservableListBase<String> {
+	private static final int PAGE_SIZE = 256;
+
+	private final IntSupplier sizeSource;
+	private final BiFunction<Integer, Integer, List<String>> pageSource;
+	private int size;
+	private int pageStart = -1;
+	private List<String> page = Collections.emptyList();
+
+	/**
+	 * Constructor - creates a list over a sorted source
+	 * 
+	 * @param sizeSource returns the number of names in the source
+	 * @param pageSource returns the names from a position, up to a count
+	 */
+	public PagedNameList(IntSupplier sizeSource, BiFunction<Integer, Integer, List<String>> pageSource) {
+		this.sizeSource = sizeSource;
+		this.pageSource = pageSource;
+		this.size = sizeSource.getAsInt();
+	}
+
+	/**
+	 * Returns the name at a position, loading its page if needed
+	 * 
+	 * @param index the position of the name
+	 * @return the name
+	 */
+	@Override
+	public String get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(index);
+		}
+		if (pageStart < 0 || index < pageStart || index >= pageStart + page.size()) {
+			pageStart = index - index % PAGE_SIZE;
+			page = pageSource.apply(pageStart, PAGE_SIZE);
+		}
+		return page.get(index - pageStart);
+	}
+
+	/**
+	 * Returns the number of names
+	 * 
+	 * @return the number of names
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Tells listeners that one name was inserted into the source
+	 * 
+	 * @param index the position of the new name
+	 */
+	public void added(int index) {
+		size++;
+		pageStart = -1;
+		beginChange();
+		nextAdd(index, index + 1);
+		endChange();
+	}
+
+	/**
+	 * Empties the list until the next refresh, so nothing is paged from the source
+	 * while another thread is changing it, for example while a file is loading
+	 */
+	public void suspend() {
+		int oldSize = size;
+		size = 0;
+		pageStart = -1;
+		page = Collections.emptyList();
+		if (oldSize > 0) {
+			beginChange();
+			nextRemove(0, Collections.nCopies(oldSize, ""));
+			endChange();
+		}
+	}
+
+	/**
+	 * Tells listeners that the whole source may have changed, for example after a file is loaded
+	 */
+	public void refresh() {
+		int oldSize = size;
+		size = sizeSource.getAsInt();
+		pageStart = -1;
+		beginChange();
+		if (oldSize > 0) {
+			nextRemove(0, Collections.nCopies(oldSize, ""));
+		}
+		if (size > 0) {
+			nextAdd(0, size);
+		}
+		endChange();
+	}
+}
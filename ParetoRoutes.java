@@ -0,0 +1,288 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Pareto routes - every route between two towns that is not beaten on both distance and
+ * toll cost by another route, found with a bi-criteria label-setting search. The routes
+ * are ordered from shortest and most expensive to longest and cheapest
+ *
+ * Each label is one way of reaching a town, with its distance, cost and the label it was
+ * extended from. Labels are stored in parallel arrays and the labels of each town are
+ * chained through them, so the search creates no objects per label. Labels are settled in
+ * order of distance then cost, so the first label settled at the target is the shortest
+ * route and every later one is only kept if it is cheaper than all before it. A new label
+ * is dropped if a label at the same town dominates it, that is has no greater distance and
+ * no greater cost, and removes the labels it dominates itself.
+ *
+ * Distances are kept in longs. On a graph with a wide WeightType they no longer fit beside
+ * the cost in one heap key, so labels are settled in order of distance alone, and a route
+ * found at the target that a later route of the same distance dominates is dropped.
+ *
+ * The number of Pareto optimal labels can grow exponentially, so each town keeps at most a
+ * given number of labels. Once a town is full, a new label that dominates none of its
+ * labels is thrown away, and the result is marked as possibly incomplete.
+ *
+ * One-way roads are honored. Banned turns and travel time profiles are not.
+ *
+ * @author Jessica Park
+ */
+
+public class ParetoRoutes {
+    private static final int NONE = -1;
+
+    private final CompactGraph graph;
+    private final int source;
+    private final long[] distances;
+    private final int[] costs;
+    private final int[][] slots;
+    private final int labelCount;
+    private final boolean complete;
+
+    private ParetoRoutes(CompactGraph graph, int source, long[] distances, int[] costs, int[][] slots,
+            int labelCount, boolean complete) {
+        this.graph = graph;
+        this.source = source;
+        this.distances = distances;
+        this.costs = costs;
+        this.slots = slots;
+        this.labelCount = labelCount;
+        this.complete = complete;
+    }
+
+    /**
+     * Finds the Pareto optimal routes between two towns
+     *
+     * @param graph the graph to search
+     * @param source the id of the starting town
+     * @param target the id of the ending town
+     * @param maxLabelsPerTown the most labels any town may hold at once, at least 1
+     * @return the routes found
+     * @throws IllegalArgumentException if maxLabelsPerTown is less than 1
+     * @throws ArithmeticException if a route's cost, or on an INT graph its distance,
+     * does not fit in an int
+     */
+    public static ParetoRoutes compute(CompactGraph graph, int source, int target, int maxLabelsPerTown) {
+        if (maxLabelsPerTown < 1) {
+            throw new IllegalArgumentException("Each town must be allowed at least one label.");
+        }
+        return new Search(graph, maxLabelsPerTown).run(source, target);
+    }
+
+    /**
+     * The label arrays of one search
+     */
+    private static class Search {
+        private final CompactGraph graph;
+        private final boolean wide;
+        private final int maxLabels;
+        private final int[] heads;
+        private final int[] alive;
+        private final IntMinHeap heap = new IntMinHeap(64);
+        private int[] town = new int[64];
+        private long[] distance = new long[64];
+        private int[] cost = new int[64];
+        private int[] parent = new int[64];
+        private int[] slot = new int[64];
+        private int[] next = new int[64];
+        private boolean[] dead = new boolean[64];
+        private int count;
+        private boolean truncated;
+
+        Search(CompactGraph graph, int maxLabels) {
+            this.graph = graph;
+            this.wide = graph.getWeightType().isWide();
+            this.maxLabels = maxLabels;
+            this.heads = new int[graph.size()];
+            this.alive = new int[graph.size()];
+            Arrays.fill(heads, NONE);
+        }
+
+        ParetoRoutes run(int source, int target) {
+            offer(source, 0, 0, NONE, NONE);
+            int[] found = new int[4];
+            int foundCount = 0;
+            int cheapest = Integer.MAX_VALUE;
+            while (!heap.isEmpty()) {
+                int label = heap.pop();
+                if (dead[label] || cost[label] >= cheapest) {
+                    continue;
+                }
+                int at = town[label];
+                if (at == target) {
+                    cheapest = cost[label];
+                    if (foundCount == found.length) {
+                        found = Arrays.copyOf(found, foundCount * 2);
+                    }
+                    found[foundCount++] = label;
+                    continue;
+                }
+                for (int s = graph.firstSlot(at), end = graph.endSlot(at); s < end; s++) {
+                    if ((graph.flags(s) & CompactGraph.AGAINST_ONE_WAY) != 0) {
+                        continue;
+                    }
+                    long newDistance = distance[label] + graph.weight(s);
+                    int newCost = cost[label] + graph.cost(s);
+                    if ((!wide && newDistance > Integer.MAX_VALUE) || newCost < 0) {
+                        throw new ArithmeticException("Route distance or cost does not fit in an int.");
+                    }
+                    if (newCost < cheapest) {
+                        offer(graph.target(s), newDistance, newCost, label, s);
+                    }
+                }
+            }
+
+            int kept = 0;
+            for (int i = 0; i < foundCount; i++) {
+                if (!dead[found[i]]) {
+                    found[kept++] = found[i];
+                }
+            }
+            long[] distances = new long[kept];
+            int[] costs = new int[kept];
+            int[][] routes = new int[kept][];
+            for (int i = 0; i < kept; i++) {
+                distances[i] = distance[found[i]];
+                costs[i] = cost[found[i]];
+                routes[i] = route(found[i]);
+            }
+            return new ParetoRoutes(graph, source, distances, costs, routes, count, !truncated);
+        }
+
+        /**
+         * Adds a label unless a label at the same town dominates it, removing the labels
+         * it dominates. Labels are compared by distance first, so a label is only ever
+         * dominated by one with a smaller or equal distance
+         */
+        private void offer(int at, long newDistance, int newCost, int from, int via) {
+            int previous = NONE;
+            boolean dominatesAny = false;
+            for (int label = heads[at]; label != NONE; label = next[label]) {
+                if (distance[label] <= newDistance && cost[label] <= newCost) {
+                    return;
+                }
+                if (newDistance <= distance[label] && newCost <= cost[label]) {
+                    dead[label] = true;
+                    alive[at]--;
+                    dominatesAny = true;
+                    if (previous == NONE) {
+                        heads[at] = next[label];
+                    } else {
+                        next[previous] = next[label];
+                    }
+                } else {
+                    previous = label;
+                }
+            }
+            if (alive[at] >= maxLabels && !dominatesAny) {
+                truncated = true;
+                return;
+            }
+            if (count == town.length) {
+                grow();
+            }
+            int label = count++;
+            town[label] = at;
+            distance[label] = newDistance;
+            cost[label] = newCost;
+            parent[label] = from;
+            slot[label] = via;
+            next[label] = heads[at];
+            heads[at] = label;
+            alive[at]++;
+            heap.push(wide ? newDistance : (newDistance << 32) | newCost, label);
+        }
+
+        private int[] route(int label) {
+            int length = 0;
+            for (int l = label; parent[l] != NONE; l = parent[l]) {
+                length++;
+            }
+            int[] route = new int[length];
+            for (int l = label; parent[l] != NONE; l = parent[l]) {
+                route[--length] = slot[l];
+            }
+            return route;
+        }
+
+        private void grow() {
+            int capacity = town.length * 2;
+            town = Arrays.copyOf(town, capacity);
+            distance = Arrays.copyOf(distance, capacity);
+            cost = Arrays.copyOf(cost, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            slot = Arrays.copyOf(slot, capacity);
+            next = Arrays.copyOf(next, capacity);
+            dead = Arrays.copyOf(dead, capacity);
+        }
+    }
+
+    /**
+     * Returns the number of Pareto optimal routes found
+     *
+     * @return the number of routes, 0 if the towns are not connected
+     */
+    public int size() {
+        return distances.length;
+    }
+
+    /**
+     * Returns the distance of a route
+     *
+     * @param i the route's position, shortest first
+     * @return the total weight of the route's roads
+     * @throws ArithmeticException if the distance does not fit in an int, see longDistance
+     */
+    public int distance(int i) {
+        return Math.toIntExact(distances[i]);
+    }
+
+    /**
+     * Returns the distance of a route, for graphs whose distances can be longer than
+     * an int holds
+     *
+     * @param i the route's position, shortest first
+     * @return the total weight of the route's roads
+     */
+    public long longDistance(int i) {
+        return distances[i];
+    }
+
+    /**
+     * Returns the toll cost of a route
+     *
+     * @param i the route's position, shortest first
+     * @return the total cost of the route's roads
+     */
+    public int cost(int i) {
+        return costs[i];
+    }
+
+    /**
+     * Describes a route
+     *
+     * @param i the route's position, shortest first
+     * @return steps in the same format as Graph.shortestPath
+     */
+    public ArrayList<String> steps(int i) {
+        return graph.describePath(source, slots[i]);
+    }
+
+    /**
+     * Returns the number of labels the search created, a measure of its work
+     *
+     * @return the number of labels
+     */
+    public int labelCount() {
+        return labelCount;
+    }
+
+    /**
+     * Returns true if no label was thrown away because a town was full, in which case
+     * every Pareto optimal route was found
+     *
+     * @return true if the result is exact
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+
+/**
+ * Path result - the answer to a path query that may have been stopped by its deadline
+ * before the shortest path was proven. A stopped query still returns the best route it
+ * had found to the destination, if it had reached it at all
+ *
+ * @author Jessica Park
+ */
+
+public class PathResult {
+    private final ArrayList<String> steps;
+    private final long distance;
+    private final boolean complete;
+
+    /**
+     * Constructor - wraps the outcome of a path query
+     *
+     * @param steps the steps of the route found, empty if there is none
+     * @param distance the length of the route, or Integer.MAX_VALUE if there is none
+     * @param complete true if the search finished, so the route is the shortest one
+     */
+    public PathResult(ArrayList<String> steps, int distance, boolean complete) {
+        this(steps, distance == Integer.MAX_VALUE ? Long.MAX_VALUE : distance, complete);
+    }
+
+    /**
+     * Constructor - wraps the outcome of a path query on a graph that adds up distances
+     * in longs
+     *
+     * @param steps the steps of the route found, empty if there is none
+     * @param distance the length of the route, or Long.MAX_VALUE if there is none
+     * @param complete true if the search finished, so the route is the shortest one
+     */
+    public PathResult(ArrayList<String> steps, long distance, boolean complete) {
+        this.steps = steps;
+        this.distance = distance;
+        this.complete = complete;
+    }
+
+    /**
+     * Returns the steps of the route
+     *
+     * @return steps in the format: startTown "via" road "to" endTown weight, empty if
+     * no route was found
+     */
+    public ArrayList<String> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns the length of the route
+     *
+     * @return the distance, or Integer.MAX_VALUE if no route was found
+     * @throws ArithmeticException if the distance does not fit in an int, see getLongDistance
+     */
+    public int getDistance() {
+        return distance == Long.MAX_VALUE ? Integer.MAX_VALUE : Math.toIntExact(distance);
+    }
+
+    /**
+     * Returns the length of the route as a long
+     *
+     * @return the distance, or Long.MAX_VALUE if no route was found
+     */
+    public long getLongDistance() {
+        return distance;
+    }
+
+    /**
+     * Returns true if a route was found
+     *
+     * @return true if there are steps to follow
+     */
+    public boolean isFound() {
+        return distance != Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns true if the search finished before its deadline. An incomplete result's
+     * route, if any, is the best one found so far and may not be the shortest
+     *
+     * @return true if the result is the shortest path
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,192 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * Remote shard - a shard held by a ShardServer, usually in another process on the
+ * same machine. Calls are sent one at a time over a single connection
+ *
+ * @author Jessica Park
+ */
+
+public class RemoteShard implements Shard, Closeable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    /**
+     * Constructor - connects to a shard server
+     *
+     * @param host the server's host, normally the loopback address
+     * @param port the server's port
+     * @throws IOException if the connection fails
+     */
+    public RemoteShard(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Adds a town to this shard
+     *
+     * @param town the town's name
+     * @return true if the town was added, false if it was already there
+     */
+    @Override
+    public boolean addTown(String town) {
+        return flag(call("addTown", town));
+    }
+
+    /**
+     * Determines if a town is in this shard
+     *
+     * @param town the town's name
+     * @return true if the town is in this shard
+     */
+    @Override
+    public boolean containsTown(String town) {
+        return flag(call("containsTown", town));
+    }
+
+    /**
+     * Adds a road between two towns of this shard
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param weight the distance between the two towns
+     * @param roadName name of road
+     * @return true if the road was added
+     */
+    @Override
+    public boolean addRoad(String town1, String town2, int weight, String roadName) {
+        return flag(call("addRoad", town1, town2, Integer.toString(weight), roadName));
+    }
+
+    /**
+     * Returns the name of the road between two towns of this shard
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @return the road name, or null if there is no road
+     */
+    @Override
+    public String getRoad(String town1, String town2) {
+        return call("getRoad", town1, town2).get(0);
+    }
+
+    /**
+     * Deletes a road between two towns of this shard
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param roadName the road name
+     * @return true if the road was deleted
+     */
+    @Override
+    public boolean deleteRoad(String town1, String town2, String roadName) {
+        return flag(call("deleteRoad", town1, town2, roadName));
+    }
+
+    /**
+     * Deletes a town and its roads from this shard
+     *
+     * @param town the town's name
+     * @return true if the town was deleted
+     */
+    @Override
+    public boolean deleteTown(String town) {
+        return flag(call("deleteTown", town));
+    }
+
+    /**
+     * Lists the towns of this shard
+     *
+     * @return the town names in sorted order
+     */
+    @Override
+    public ArrayList<String> allTowns() {
+        return call("allTowns");
+    }
+
+    /**
+     * Lists the roads of this shard
+     *
+     * @return the road names in sorted order
+     */
+    @Override
+    public ArrayList<String> allRoads() {
+        return call("allRoads");
+    }
+
+    /**
+     * Finds the distances from one town to several others without leaving this shard
+     *
+     * @param source name of the town to measure from
+     * @param targets names of the towns to measure to
+     * @return the distance to each target, Integer.MAX_VALUE for targets that can't be reached
+     */
+    @Override
+    public int[] distances(String source, List<String> targets) {
+        String[] args = new String[targets.size() + 1];
+        args[0] = source;
+        for (int i = 0; i < targets.size(); i++) {
+            args[i + 1] = targets.get(i);
+        }
+        ArrayList<String> reply = call("distances", args);
+        int[] distances = new int[reply.size()];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = Integer.parseInt(reply.get(i));
+        }
+        return distances;
+    }
+
+    /**
+     * Finds the shortest path between two towns without leaving this shard
+     *
+     * @param town1 name of the starting town
+     * @param town2 name of the ending town
+     * @return steps in the same format as TownGraphManager.getPath, empty if there is no path
+     */
+    @Override
+    public ArrayList<String> getPath(String town1, String town2) {
+        return call("getPath", town1, town2);
+    }
+
+    /**
+     * Closes the connection to the server
+     *
+     * @throws IOException if the socket can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private synchronized ArrayList<String> call(String operation, String... args) {
+        try {
+            out.writeUTF(operation);
+            out.writeInt(args.length);
+            for (String arg : args) {
+                ShardServer.writeString(out, arg);
+            }
+            out.flush();
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IllegalStateException("Shard failed " + operation + ": " + in.readUTF());
+            }
+            ArrayList<String> reply = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                reply.add(ShardServer.readString(in));
+            }
+            return reply;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lost connection to shard at " + socket.getRemoteSocketAddress(), e);
+        }
+    }
+
+    private static boolean flag(List<String> reply) {
+        return Boolean.parseBoolean(reply.get(0));
+    }
+}
@@ -5,10 +5,25 @@
  */
 
  public class Road implements Comparable<Road> {
+    /** The road can only be driven from its source to its destination */
+    public static final int ONE_WAY = 1;
+    /** Trucks may not use the road */
+    public static final int NO_TRUCKS = 1 << 1;
+    /** Vehicles carrying hazardous materials may not use the road */
+    public static final int NO_HAZMAT = 1 << 2;
+    /** Bicycles may not use the road */
+    public static final int NO_BICYCLES = 1 << 3;
+    /** The road is not paved */
+    public static final int UNPAVED = 1 << 4;
+
     private Town source;
     private Town destination;
     private int weight;
     private String name;
+    private int nameCode = -1;
+    private int attributes;
+    private int profile = -1;
+    private int cost;
 
     /**
      * Constructor - initializes a road with the given source, destination, weight, and name
@@ -25,6 +40,20 @@
         this.name = name;
     }
 
+    /**
+     * Constructor - initializes a road whose name comes from a RoadNameDictionary
+     *
+     * @param source one town on the road
+     * @param destination another town on the road
+     * @param weight the distance of the road
+     * @param name the name of the road, as stored in the dictionary
+     * @param nameCode the dictionary code of the name
+     */
+    Road(Town source, Town destination, int weight, String name, int nameCode) {
+        this(source, destination, weight, name);
+        this.nameCode = nameCode;
+    }
+
     /**
      * Constructor - initializes a road with the given source, destination, and name
      * The weight is preset to 1
@@ -92,6 +121,15 @@
         return name;
     }
 
+    /**
+     * Returns the dictionary code of the road name
+     *
+     * @return the name's code, or -1 if the road was not created by a Graph
+     */
+    int getNameCode() {
+        return nameCode;
+    }
+
     /**
      * Returns the first town on the road
      *
@@ -110,6 +148,91 @@
         return weight;
     }
 
+    /**
+     * Changes the distance of the road
+     *
+     * @param weight the new distance of the road
+     */
+    void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * Returns the attribute bits of the road, a combination of ONE_WAY, NO_TRUCKS and
+     * the other attribute constants
+     *
+     * @return the road's attributes
+     */
+    public int getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Returns true if the road has every one of the given attribute bits
+     *
+     * @param attribute one or more attribute constants
+     * @return true if all of the bits are set
+     */
+    public boolean hasAttribute(int attribute) {
+        return (attributes & attribute) == attribute;
+    }
+
+    /**
+     * Returns true if the road can only be driven from its source to its destination
+     *
+     * @return true if the road is one-way
+     */
+    public boolean isOneWay() {
+        return hasAttribute(ONE_WAY);
+    }
+
+    /**
+     * Changes the attribute bits of the road
+     *
+     * @param attributes the new attributes
+     */
+    void setAttributes(int attributes) {
+        this.attributes = attributes;
+    }
+
+    /**
+     * Returns the toll cost of the road, a second weight that Pareto routing trades
+     * off against the distance
+     *
+     * @return the road's cost, 0 unless one has been set
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * Changes the toll cost of the road
+     *
+     * @param cost the new cost
+     */
+    void setCost(int cost) {
+        this.cost = cost;
+    }
+
+    /**
+     * Returns the number of the road's travel time profile in its graph's
+     * TravelTimeProfiles
+     *
+     * @return the profile number, or -1 if the travel time is always the weight
+     */
+    public int getProfile() {
+        return profile;
+    }
+
+    /**
+     * Changes the travel time profile of the road
+     *
+     * @param profile the profile number, or -1 for none
+     */
+    void setProfile(int profile) {
+        this.profile = profile;
+    }
+
     /**
      * Returns the name of the road as its string representation
      *
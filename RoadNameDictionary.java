@@ -0,0 +1,193 @@
+import java.util.*;
+
+/**
+ * Road name dictionary - gives every distinct road name an int code so roads
+ * sharing a name share one String, and indexes the road segments using each name.
+ * Codes are never reused, a name with no roads left keeps its code
+ *
+ * @author Jessica Park
+ */
+
+public class RoadNameDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final ArrayList<String> names = new ArrayList<>();
+    private final ArrayList<Set<Road>> segments = new ArrayList<>();
+    private int[] sortedCodes = new int[0];
+    private int[] startPositions = new int[1];
+    private boolean positionsValid = true;
+
+    /**
+     * Returns the code of a name, adding the name if it is new
+     *
+     * @param name the road name
+     * @return the name's code
+     */
+    public int intern(String name) {
+        Integer code = codes.get(name);
+        if (code == null) {
+            code = names.size();
+            codes.put(name, code);
+            names.add(name);
+            segments.add(Collections.newSetFromMap(new IdentityHashMap<>()));
+        }
+        return code;
+    }
+
+    /**
+     * Returns the code of a name without adding it
+     *
+     * @param name the road name
+     * @return the name's code, or -1 if the name has never been used
+     */
+    public int code(String name) {
+        Integer code = codes.get(name);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Returns the name with the given code
+     *
+     * @param code the name's code
+     * @return the road name
+     */
+    public String name(int code) {
+        return names.get(code);
+    }
+
+    /**
+     * Returns the number of roads using a name
+     *
+     * @param code the name's code
+     * @return the number of roads with that name
+     */
+    public int count(int code) {
+        return segments.get(code).size();
+    }
+
+    /**
+     * Returns every road segment using a name
+     *
+     * @param code the name's code
+     * @return an unmodifiable view of the roads with that name
+     */
+    public Set<Road> roads(int code) {
+        return Collections.unmodifiableSet(segments.get(code));
+    }
+
+    /**
+     * Adds a road to the index of its name
+     *
+     * @param road a road created with a code from this dictionary
+     */
+    public void add(Road road) {
+        segments.get(road.getNameCode()).add(road);
+        positionsValid = false;
+    }
+
+    /**
+     * Removes a road from the index of its name
+     *
+     * @param road a road created with a code from this dictionary
+     */
+    public void remove(Road road) {
+        segments.get(road.getNameCode()).remove(road);
+        positionsValid = false;
+    }
+
+    /**
+     * Creates an ArrayList of the name of every road in sorted order, with each
+     * name repeated once per road using it. Only the distinct names are sorted
+     *
+     * @return an ArrayList of all road names in sorted order
+     */
+    public ArrayList<String> allNames() {
+        return names(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of roads using any name
+     *
+     * @return the total number of roads
+     */
+    public int total() {
+        sort();
+        return startPositions[sortedCodes.length];
+    }
+
+    /**
+     * Returns a page of the sorted list of road names made by allNames(),
+     * without building the rest of the list
+     *
+     * @param from the position of the first name
+     * @param count the most names to return
+     * @return up to count names starting at position from
+     */
+    public ArrayList<String> names(int from, int count) {
+        sort();
+        int end = (int) Math.min((long) from + count, total());
+        ArrayList<String> result = new ArrayList<>(Math.max(0, end - from));
+        if (from < 0 || from >= end) {
+            return result;
+        }
+        int i = Arrays.binarySearch(startPositions, from);
+        i = i >= 0 ? i : -i - 2;
+        while (i > 0 && startPositions[i - 1] == startPositions[i]) {
+            i--;
+        }
+        for (int position = from; position < end; i++) {
+            String name = names.get(sortedCodes[i]);
+            for (int last = Math.min(end, startPositions[i + 1]); position < last; position++) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position a name's roads start at in the list made by allNames()
+     *
+     * @param name the road name
+     * @return the position of the first road with the name, or where it would be
+     */
+    public int position(String name) {
+        sort();
+        Comparator<String> order = Comparator.nullsFirst(Comparator.naturalOrder());
+        int low = 0;
+        int high = sortedCodes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (order.compare(names.get(sortedCodes[middle]), name) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return startPositions[low];
+    }
+
+    /**
+     * Sorts the distinct names when a new name has been added, and recounts the
+     * position each name starts at in the full list when a road has changed
+     */
+    private void sort() {
+        if (sortedCodes.length != names.size()) {
+            Integer[] order = new Integer[names.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(names::get, Comparator.nullsFirst(Comparator.naturalOrder())));
+            sortedCodes = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedCodes[i] = order[i];
+            }
+            positionsValid = false;
+        }
+        if (!positionsValid) {
+            startPositions = new int[sortedCodes.length + 1];
+            for (int i = 0; i < sortedCodes.length; i++) {
+                startPositions[i + 1] = startPositions[i] + count(sortedCodes[i]);
+            }
+            positionsValid = true;
+        }
+    }
+}
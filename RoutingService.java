@@ -0,0 +1,389 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Routing service - serves a TownGraphManager over HTTP with JSON responses, using only
+ * the HTTP server built into the JDK
+ *
+ * GET    /path?from=A&to=B[&maxMillis=50]        shortest path and its distance, or the best
+ *                                                route found within the time limit
+ * GET    /road?town1=A&town2=B                   name of the road between two towns
+ * GET    /towns?from=0&count=100                 a page of town names in order
+ * POST   /distances                              one "town1;town2" pair per line of the body
+ * POST   /towns?name=A                           add a town
+ * DELETE /towns?name=A                           delete a town
+ * POST   /roads?town1=A&town2=B&weight=5&name=R  add a road
+ * DELETE /roads?town1=A&town2=B&name=R           delete a road
+ *
+ * Queries take a read lock and search a CompactGraph snapshot, so they run in parallel,
+ * while edits take the write lock. Connections are kept alive so clients can send
+ * requests back to back, and long responses are streamed in chunks as they are written.
+ * Requests run on virtual threads when the JDK has them and on a cached thread pool
+ * otherwise. Constructing a service changes no JVM-wide settings; main calls
+ * useNoDelay first, and embedders may do the same.
+ *
+ * @author Jessica Park
+ */
+
+public class RoutingService implements Closeable {
+    private final TownGraphManager manager;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Constructor - binds the service to a port on the loopback address
+     *
+     * @param manager the towns and roads to serve
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port can't be bound
+     */
+    public RoutingService(TownGraphManager manager, int port) throws IOException {
+        this.manager = manager;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = AsyncTownGraphManager.newDefaultExecutor("routing-request");
+        server.setExecutor(executor);
+        server.createContext("/path", exchange -> handle(exchange, this::path));
+        server.createContext("/road", exchange -> handle(exchange, this::road));
+        server.createContext("/towns", exchange -> handle(exchange, this::towns));
+        server.createContext("/distances", exchange -> handle(exchange, this::distances));
+        server.createContext("/roads", exchange -> handle(exchange, this::roads));
+    }
+
+    /**
+     * Starts answering requests
+     *
+     * @return this service
+     */
+    public RoutingService start() {
+        server.start();
+        return this;
+    }
+
+    /**
+     * Returns the port the service is listening on
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the service, letting requests already running finish for up to a second
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange, Map<String, String> query) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            handler.handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, "{\"error\":" + json(e.getMessage()) + "}");
+        } catch (RuntimeException e) {
+            send(exchange, 500, "{\"error\":" + json(String.valueOf(e.getMessage())) + "}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void path(HttpExchange exchange, Map<String, String> query) throws IOException {
+        requireMethod(exchange, "GET");
+        String from = required(query, "from");
+        String to = required(query, "to");
+        CancellationToken deadline = query.containsKey("maxMillis")
+                ? CancellationToken.deadlineIn(Duration.ofMillis(number(query.get("maxMillis"), "maxMillis")))
+                : null;
+        String body = null;
+        lock.readLock().lock();
+        try {
+            CompactGraph graph = manager.snapshot();
+            int source = graph.id(new Town(from));
+            int target = graph.id(new Town(to));
+            if (source >= 0 && target >= 0) {
+                SearchWorkspace workspace = SearchWorkspace.acquire(graph);
+                try {
+                    if (deadline == null) {
+                        workspace.find(graph, source, target, null);
+                    } else {
+                        workspace.findUntil(graph, source, target, deadline);
+                    }
+                    boolean complete = !workspace.stopped();
+                    long distance = workspace.length(target);
+                    boolean reached = distance != Long.MAX_VALUE;
+                    List<String> steps = reached ? graph.describePath(source, workspace.slotsTo(graph, target))
+                            : Collections.emptyList();
+                    body = "{\"from\":" + json(from) + ",\"to\":" + json(to) + ",\"distance\":"
+                            + (reached ? distance : -1) + ",\"complete\":" + complete
+                            + ",\"steps\":" + json(steps) + "}";
+                } finally {
+                    SearchWorkspace.release(workspace);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (body == null) {
+            send(exchange, 404, "{\"error\":\"Unknown town\"}");
+        } else {
+            send(exchange, 200, body);
+        }
+    }
+
+    private void road(HttpExchange exchange, Map<String, String> query) throws IOException {
+        requireMethod(exchange, "GET");
+        String road;
+        lock.readLock().lock();
+        try {
+            road = manager.getRoad(required(query, "town1"), required(query, "town2"));
+        } finally {
+            lock.readLock().unlock();
+        }
+        send(exchange, 200, "{\"road\":" + (road == null ? "null" : json(road)) + "}");
+    }
+
+    private void towns(HttpExchange exchange, Map<String, String> query) throws IOException {
+        switch (exchange.getRequestMethod()) {
+            case "GET":
+                int from = number(query.getOrDefault("from", "0"), "from");
+                int count = number(query.getOrDefault("count", "100"), "count");
+                ArrayList<String> page;
+                int total;
+                lock.readLock().lock();
+                try {
+                    page = manager.allTowns(from, count);
+                    total = manager.townCount();
+                } finally {
+                    lock.readLock().unlock();
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, 0);
+                try (Writer out = new BufferedWriter(
+                        new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+                    out.write("{\"total\":" + total + ",\"from\":" + from + ",\"towns\":[");
+                    for (int i = 0; i < page.size(); i++) {
+                        out.write((i == 0 ? "" : ",") + json(page.get(i)));
+                    }
+                    out.write("]}");
+                }
+                return;
+            case "POST":
+                edit(exchange, () -> manager.addTown(required(query, "name")));
+                return;
+            case "DELETE":
+                edit(exchange, () -> manager.deleteTown(required(query, "name")));
+                return;
+            default:
+                send(exchange, 405, "{\"error\":\"Method not allowed\"}");
+        }
+    }
+
+    private void roads(HttpExchange exchange, Map<String, String> query) throws IOException {
+        String town1 = required(query, "town1");
+        String town2 = required(query, "town2");
+        String name = required(query, "name");
+        switch (exchange.getRequestMethod()) {
+            case "POST":
+                int weight = number(required(query, "weight"), "weight");
+                edit(exchange, () -> manager.addRoad(town1, town2, weight, name));
+                return;
+            case "DELETE":
+                edit(exchange, () -> manager.deleteRoadConnection(town1, town2, name));
+                return;
+            default:
+                send(exchange, 405, "{\"error\":\"Method not allowed\"}");
+        }
+    }
+
+    private void edit(HttpExchange exchange, BooleanSupplier edit) throws IOException {
+        boolean changed;
+        lock.writeLock().lock();
+        try {
+            changed = edit.getAsBoolean();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        send(exchange, 200, "{\"changed\":" + changed + "}");
+    }
+
+    /**
+     * Answers a batch of distance queries, running one search for every distinct starting
+     * town and streaming the distances back in the order they were asked, -1 for pairs
+     * with an unknown town or no route
+     */
+    private void distances(HttpExchange exchange, Map<String, String> query) throws IOException {
+        requireMethod(exchange, "POST");
+        List<String[]> pairs = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] pair = line.split(";");
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Expected town1;town2 but got: " + line);
+                }
+                pairs.add(new String[] { pair[0].trim(), pair[1].trim() });
+            }
+        }
+
+        long[] distances = new long[pairs.size()];
+        lock.readLock().lock();
+        try {
+            CompactGraph graph = manager.snapshot();
+            Map<Integer, List<Integer>> bySource = new LinkedHashMap<>();
+            for (int i = 0; i < pairs.size(); i++) {
+                int source = graph.id(new Town(pairs.get(i)[0]));
+                distances[i] = -1;
+                if (source >= 0) {
+                    bySource.computeIfAbsent(source, k -> new ArrayList<>()).add(i);
+                }
+            }
+            SearchWorkspace workspace = SearchWorkspace.acquire(graph);
+            try {
+                for (Map.Entry<Integer, List<Integer>> entry : bySource.entrySet()) {
+                    workspace.find(graph, entry.getKey(), -1, null);
+                    for (int i : entry.getValue()) {
+                        int target = graph.id(new Town(pairs.get(i)[1]));
+                        if (target >= 0 && workspace.length(target) != Long.MAX_VALUE) {
+                            distances[i] = workspace.length(target);
+                        }
+                    }
+                }
+            } finally {
+                SearchWorkspace.release(workspace);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            out.write("{\"distances\":[");
+            for (int i = 0; i < distances.length; i++) {
+                out.write((i == 0 ? "" : ",") + distances[i]);
+            }
+            out.write("]}");
+        }
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!exchange.getRequestMethod().equals(method)) {
+            throw new IllegalArgumentException("Use " + method + " for " + exchange.getRequestURI().getPath());
+        }
+    }
+
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static int number(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " must be a number.");
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    static String json(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static String json(List<String> values) {
+        StringJoiner joiner = new StringJoiner(",", "[", "]");
+        for (String value : values) {
+            joiner.add(json(value));
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * Turns on TCP_NODELAY for the JDK's HTTP server, unless the property is already set,
+     * so small responses don't wait on the client's delayed acknowledgement. The setting
+     * applies to every HttpServer in the JVM and is read once, when the first server is
+     * created, so call this before that
+     */
+    public static void useNoDelay() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * Serves the towns and roads in a file until the process is stopped
+     *
+     * @param args the road file, and the port to listen on, 8080 if missing
+     * @throws IOException if the file can't be read or the port can't be bound
+     */
+    public static void main(String[] args) throws IOException {
+        useNoDelay();
+        TownGraphManager manager = new TownGraphManager();
+        if (args.length > 0) {
+            manager.populateTownGraph(new File(args[0]));
+        }
+        RoutingService service = new RoutingService(manager, args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+        service.start();
+        System.out.println("Routing service listening on port " + service.getPort());
+    }
+}
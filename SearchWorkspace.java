@@ -0,0 +1,910 @@
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Search workspace - the reusable arrays for one Dijkstra search over a CompactGraph.
+ * Each thread keeps its own workspace so repeated searches don't allocate
+ *
+ * Instead of clearing the distance and previous slot arrays before every search, each
+ * search starts a new generation, and an entry only counts if its stamp matches the
+ * current generation. Starting a search is then constant time however large the graph.
+ *
+ * @author Jessica Park
+ */
+
+public class SearchWorkspace {
+    private static final ThreadLocal<SearchWorkspace> WORKSPACES = ThreadLocal.withInitial(SearchWorkspace::new);
+    private static final Queue<SearchWorkspace> POOL = new ConcurrentLinkedQueue<>();
+
+    private int[] distances = new int[0];
+    private long[] longDistances = new long[0];
+    private int[] previousSlots = new int[0];
+    private int[] stamps = new int[0];
+    private int generation;
+    private final IntMinHeap heap = new IntMinHeap(64);
+    private int[] origins = new int[0];
+    private int[] settled = new int[0];
+    private int[] bannedTowns = new int[0];
+    private int[] bannedSlots = new int[0];
+    private int banStamp;
+    private long[] slotDistances = new long[0];
+    private int[] slotPrevious = new int[0];
+    private int[] slotStamps = new int[0];
+    private int[] slotOrigins = new int[0];
+    private boolean overflowed;
+    private boolean stopped;
+    private boolean wide;
+    private boolean routed;
+
+    /**
+     * Returns the workspace owned by the calling thread
+     *
+     * @return this thread's workspace
+     */
+    public static SearchWorkspace forCurrentThread() {
+        return WORKSPACES.get();
+    }
+
+    /**
+     * Takes a workspace from a shared pool, for tasks on virtual threads or other
+     * threads that are not reused, which would each allocate their own workspace
+     *
+     * @param graph the graph the workspace will search
+     * @return a workspace with no bans, to be handed back with release
+     */
+    public static SearchWorkspace acquire(CompactGraph graph) {
+        SearchWorkspace workspace = POOL.poll();
+        if (workspace == null) {
+            workspace = new SearchWorkspace();
+        }
+        workspace.clearBans(graph);
+        return workspace;
+    }
+
+    /**
+     * Returns a workspace taken with acquire to the pool
+     *
+     * @param workspace the workspace, which must not be used afterwards
+     */
+    public static void release(SearchWorkspace workspace) {
+        POOL.add(workspace);
+    }
+
+    /**
+     * Searches the whole graph from a source town the way find does, so one-way roads
+     * and banned turns are honored
+     *
+     * @param graph the graph to search
+     * @param source the id of the source town
+     */
+    public void run(CompactGraph graph, int source) {
+        clearBans(graph);
+        find(graph, source, -1, null);
+    }
+
+    /**
+     * Forgets every banned town and road slot. Bans are cleared by moving to a new
+     * stamp rather than by wiping the arrays
+     *
+     * @param graph the graph the next search will run on
+     */
+    public void clearBans(CompactGraph graph) {
+        if (bannedTowns.length < graph.size()) {
+            bannedTowns = new int[graph.size()];
+        }
+        if (bannedSlots.length < graph.slotCount()) {
+            bannedSlots = new int[graph.slotCount()];
+        }
+        if (banStamp == Integer.MAX_VALUE) {
+            Arrays.fill(bannedTowns, 0);
+            Arrays.fill(bannedSlots, 0);
+            banStamp = 0;
+        }
+        banStamp++;
+    }
+
+    /**
+     * Keeps the next search from entering a town, until the bans are cleared
+     *
+     * @param id the town's id
+     */
+    public void banTown(int id) {
+        bannedTowns[id] = banStamp;
+    }
+
+    /**
+     * Keeps the next search from using a road slot, until the bans are cleared
+     *
+     * @param slot the road slot
+     */
+    public void banSlot(int slot) {
+        bannedSlots[slot] = banStamp;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from a source town, avoiding banned towns and slots,
+     * and stops as soon as the target's distance is final
+     *
+     * @param graph the graph to search
+     * @param source the id of the source town
+     * @param target the id of the town to stop at, or -1 to search the whole graph
+     * @return true if the target was reached, always true when there is no target
+     */
+    public boolean search(CompactGraph graph, int source, int target) {
+        return search(graph, source, target, null);
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from a source town, stopping early if the target is
+     * settled or the token is cancelled or expires
+     *
+     * @param graph the graph to search
+     * @param source the id of the source town
+     * @param target the id of the town to stop at, or -1 to search the whole graph
+     * @param token checked every few towns, or null if the search can't be cancelled
+     * @return true if the target was reached, always true when there is no target
+     * @throws java.util.concurrent.CancellationException if the token is cancelled or expires
+     */
+    public boolean search(CompactGraph graph, int source, int target, CancellationToken token) {
+        return search(graph, source, target, token, true);
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from a source town until the target is settled or the
+     * token says to stop. A stopped search is left as far as it got rather than thrown
+     * away, so distance and pathSlots describe the best route found so far to any town
+     * already reached, settled or not
+     *
+     * @param graph the graph to search
+     * @param source the id of the source town
+     * @param target the id of the town to stop at
+     * @param token checked every few towns
+     * @return true if the target was settled, so its path is the shortest
+     */
+    public boolean searchUntil(CompactGraph graph, int source, int target, CancellationToken token) {
+        return search(graph, source, target, token, false);
+    }
+
+    private boolean search(CompactGraph graph, int source, int target, CancellationToken token, boolean throwOnStop) {
+        begin(graph.size());
+        wide = false;
+        routed = false;
+
+        reach(source, 0, -1);
+        heap.push(0, source);
+        int popped = 0;
+        while (!heap.isEmpty()) {
+            if (token != null && ++popped % CancellationToken.CHECK_INTERVAL == 0) {
+                if (throwOnStop) {
+                    token.check();
+                } else if (token.shouldStop()) {
+                    stopped = true;
+                    return false;
+                }
+            }
+            long key = heap.peekKey();
+            int current = heap.pop();
+            if (key > distances[current]) {
+                continue;
+            }
+            if (current == target) {
+                return true;
+            }
+            for (int slot = graph.firstSlot(current), end = graph.endSlot(current); slot < end; slot++) {
+                int neighbor = graph.target(slot);
+                if (bannedSlots[slot] == banStamp || bannedTowns[neighbor] == banStamp) {
+                    continue;
+                }
+                int newDistance = distances[current] + graph.weight(slot);
+                if (newDistance < 0) {
+                    overflowed = true;
+                } else if (newDistance < distance(neighbor)) {
+                    reach(neighbor, newDistance, slot);
+                    heap.push(newDistance, neighbor);
+                }
+            }
+        }
+        if (overflowed && cutOffByOverflow(graph, target)) {
+            throw overflow();
+        }
+        return target < 0;
+    }
+
+    /**
+     * Tells whether a road skipped because the distance along it overflowed an int led
+     * to a town the search never reached, so that town's distance would have been wrong.
+     * Overflowing roads into towns reached some shorter way do no harm. Only called once
+     * the heap is empty and something overflowed, so it costs nothing on normal searches
+     */
+    private boolean cutOffByOverflow(CompactGraph graph, int target) {
+        if (target >= 0 && distance(target) != Integer.MAX_VALUE) {
+            return false;
+        }
+        for (int town = 0; town < graph.size(); town++) {
+            if (stamps[town] != generation || bannedTowns[town] == banStamp) {
+                continue;
+            }
+            for (int slot = graph.firstSlot(town), end = graph.endSlot(town); slot < end; slot++) {
+                int neighbor = graph.target(slot);
+                if (stamps[neighbor] != generation && bannedSlots[slot] != banStamp
+                        && bannedTowns[neighbor] != banStamp && distances[town] + graph.weight(slot) < 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm adding distances up in longs, for graphs built with a
+     * wide WeightType. Afterwards longDistance gives the distances and pathSlots the
+     * paths. Banned towns and slots are honored as by search
+     *
+     * @param graph the graph to search
+     * @param source the id of the source town
+     * @param target the id of the town to stop at, or -1 to search the whole graph
+     * @param token checked every few towns, or null if the search can't be cancelled
+     * @return true if the target was reached, always true when there is no target
+     * @throws java.util.concurrent.CancellationException if the token is cancelled or expires
+     */
+    public boolean searchLong(CompactGraph graph, int source, int target, CancellationToken token) {
+        return searchLong(graph, source, target, token, true);
+    }
+
+    /**
+     * Like searchLong, but a search stopped by the token is left as far as it got, the
+     * same way searchUntil does
+     *
+     * @param graph the graph to search
+     * @param source the id of the source town
+     * @param target the id of the town to stop at
+     * @param token checked every few towns
+     * @return true if the target was settled, so its path is the shortest
+     */
+    public boolean searchLongUntil(CompactGraph graph, int source, int target, CancellationToken token) {
+        return searchLong(graph, source, target, token, false);
+    }
+
+    /**
+     * The same loop as search with long distances. It is kept separate so the int search
+     * does not pay for wider arrays and keys
+     */
+    private boolean searchLong(CompactGraph graph, int source, int target, CancellationToken token,
+            boolean throwOnStop) {
+        begin(graph.size());
+        wide = true;
+        routed = false;
+
+        reachLong(source, 0, -1);
+        heap.push(0, source);
+        int popped = 0;
+        while (!heap.isEmpty()) {
+            if (token != null && ++popped % CancellationToken.CHECK_INTERVAL == 0) {
+                if (throwOnStop) {
+                    token.check();
+                } else if (token.shouldStop()) {
+                    stopped = true;
+                    return false;
+                }
+            }
+            long key = heap.peekKey();
+            int current = heap.pop();
+            if (key > longDistances[current]) {
+                continue;
+            }
+            if (current == target) {
+                return true;
+            }
+            for (int slot = graph.firstSlot(current), end = graph.endSlot(current); slot < end; slot++) {
+                int neighbor = graph.target(slot);
+                if (bannedSlots[slot] == banStamp || bannedTowns[neighbor] == banStamp) {
+                    continue;
+                }
+                long newDistance = key + graph.weight(slot);
+                if (newDistance < longDistance(neighbor)) {
+                    reachLong(neighbor, newDistance, slot);
+                    heap.push(newDistance, neighbor);
+                }
+            }
+        }
+        return target < 0;
+    }
+
+    private void reachLong(int id, long distance, int slot) {
+        longDistances[id] = distance;
+        previousSlots[id] = slot;
+        stamps[id] = generation;
+    }
+
+    /**
+     * Returns the distance found to a town by the last searchLong
+     *
+     * @param id the town's id
+     * @return the distance, or Long.MAX_VALUE if the town can't be reached
+     */
+    public long longDistance(int id) {
+        return stamps[id] == generation ? longDistances[id] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Finds the shortest path the way the graph calls for: a route search when it has
+     * one-way roads or banned turns, a search adding up in longs when it has a wide
+     * WeightType, and the int search otherwise. Afterwards length and slotsTo give the
+     * answer whichever search ran
+     *
+     * @param graph the graph to search
+     * @param source the id of the source town
+     * @param target the id of the town to stop at, or -1 to search the whole graph
+     * @param token checked every few towns, or null if the search can't be cancelled
+     * @return true if the target was reached, always true when there is no target
+     * @throws java.util.concurrent.CancellationException if the token is cancelled or expires
+     */
+    public boolean find(CompactGraph graph, int source, int target, CancellationToken token) {
+        if (graph.isRestricted()) {
+            return route(graph, source, target, 0, token);
+        }
+        return graph.getWeightType().isWide() ? searchLong(graph, source, target, token)
+                : search(graph, source, target, token);
+    }
+
+    /**
+     * Like find, but a search stopped by the token is left as far as it got, the same
+     * way searchUntil does
+     *
+     * @param graph the graph to search
+     * @param source the id of the source town
+     * @param target the id of the town to stop at
+     * @param token checked every few towns
+     * @return true if the target was settled, so its path is the shortest
+     */
+    public boolean findUntil(CompactGraph graph, int source, int target, CancellationToken token) {
+        if (graph.isRestricted()) {
+            return routeUntil(graph, source, target, 0, token);
+        }
+        return graph.getWeightType().isWide() ? searchLongUntil(graph, source, target, token)
+                : searchUntil(graph, source, target, token);
+    }
+
+    /**
+     * Tells whether the last search was stopped by its token. A search that was not
+     * stopped finished, so a target it did not reach can't be reached at all
+     *
+     * @return true if the search gave up before it finished
+     */
+    public boolean stopped() {
+        return stopped;
+    }
+
+    /**
+     * Returns the distance found to a town by the last search of any kind
+     *
+     * @param id the town's id
+     * @return the distance, or Long.MAX_VALUE if the town was not reached
+     */
+    public long length(int id) {
+        if (wide) {
+            return longDistance(id);
+        }
+        int distance = distance(id);
+        return distance == Integer.MAX_VALUE ? Long.MAX_VALUE : distance;
+    }
+
+    /**
+     * Returns the road slots of the path found to a town by the last search of any kind
+     *
+     * @param graph the graph that was searched
+     * @param id the town's id
+     * @return the slots from the source to the town, in order
+     */
+    public int[] slotsTo(CompactGraph graph, int id) {
+        return routed ? routeSlots(id) : pathSlots(graph, id);
+    }
+
+    private static ArithmeticException overflow() {
+        return new ArithmeticException("Path length does not fit in an int, build the graph with WeightType.LONG.");
+    }
+
+    /**
+     * Finds a route from a source town that respects one-way roads, banned turns and
+     * an attribute filter, stopping as soon as the target's distance is final
+     *
+     * Whether a turn is allowed depends on the road a route arrived by, so this search
+     * settles road slots instead of towns. The filter is a bit mask tested against
+     * CompactGraph.flags, so checking a road costs one array read and one AND.
+     * Distances are added up in longs whatever the graph's WeightType, so afterwards
+     * longDistance gives the distance to each town reached. Banned towns and slots are
+     * honored as by search
+     *
+     * @param graph the graph to search
+     * @param source the id of the source town
+     * @param target the id of the town to stop at, or -1 to search the whole graph
+     * @param avoid attribute bits of the roads the route may not use
+     * @param token checked every few roads, or null if the search can't be cancelled
+     * @return true if the target was reached, always true when there is no target
+     * @throws java.util.concurrent.CancellationException if the token is cancelled or expires
+     */
+    public boolean route(CompactGraph graph, int source, int target, int avoid, CancellationToken token) {
+        return route(graph, source, target, -1, avoid, 0, false, token, true);
+    }
+
+    /**
+     * Like route, but for a route that reached the source along a road slot and goes
+     * on from there, so a turn banned out of that slot is not taken at the source
+     *
+     * @param graph the graph to search
+     * @param arrivedBy the slot of the road into the source, or -1 if there is none
+     * @param source the id of the town to continue from
+     * @param target the id of the town to stop at
+     * @return true if the target was reached
+     */
+    public boolean routeAfter(CompactGraph graph, int arrivedBy, int source, int target) {
+        return route(graph, source, target, arrivedBy, 0, 0, false, null, true);
+    }
+
+    /**
+     * Like route, but a search stopped by the token is left as far as it got, the same
+     * way searchUntil does
+     *
+     * @param graph the graph to search
+     * @param source the id of the source town
+     * @param target the id of the town to stop at
+     * @param avoid attribute bits of the roads the route may not use
+     * @param token checked every few roads
+     * @return true if the target was settled, so its route is the shortest
+     */
+    public boolean routeUntil(CompactGraph graph, int source, int target, int avoid, CancellationToken token) {
+        return route(graph, source, target, -1, avoid, 0, false, token, false);
+    }
+
+    /**
+     * Finds the quickest route from a source town leaving at a given time, using the
+     * travel time each road has at the moment it is entered. Restrictions are honored
+     * as by route. Afterwards longDistance gives the arrival time at each town reached
+     *
+     * @param graph the graph to search
+     * @param source the id of the source town
+     * @param target the id of the town to stop at, or -1 to search the whole graph
+     * @param departure when the route leaves the source
+     * @param avoid attribute bits of the roads the route may not use
+     * @param token checked every few roads, or null if the search can't be cancelled
+     * @return true if the target was reached, always true when there is no target
+     * @throws java.util.concurrent.CancellationException if the token is cancelled or expires
+     * @throws ArithmeticException if the target could only be reached after the last
+     * time an int can hold
+     */
+    public boolean routeDeparting(CompactGraph graph, int source, int target, int departure, int avoid,
+            CancellationToken token) {
+        return route(graph, source, target, -1, avoid, departure, true, token, true);
+    }
+
+    private boolean route(CompactGraph graph, int source, int target, int arrivedBy, int avoid, int departure,
+            boolean timed, CancellationToken token, boolean throwOnStop) {
+        begin(graph.size(), graph.slotCount());
+        wide = true;
+        routed = true;
+        int forbidden = avoid | CompactGraph.AGAINST_ONE_WAY;
+
+        reachLong(source, departure, -1);
+        if (source == target) {
+            return true;
+        }
+        for (int slot = graph.firstSlot(source), end = graph.endSlot(source); slot < end; slot++) {
+            if ((graph.flags(slot) & forbidden) == 0 && !banned(graph, slot)
+                    && (arrivedBy < 0 || !graph.isTurnBanned(arrivedBy, slot))) {
+                arrive(slot, graph.target(slot),
+                        (long) departure + (timed ? graph.travelTime(slot, departure) : graph.weight(slot)), -1);
+            }
+        }
+        int popped = 0;
+        while (!heap.isEmpty()) {
+            if (token != null && ++popped % CancellationToken.CHECK_INTERVAL == 0) {
+                if (throwOnStop) {
+                    token.check();
+                } else if (token.shouldStop()) {
+                    stopped = true;
+                    return false;
+                }
+            }
+            long key = heap.peekKey();
+            int in = heap.pop();
+            if (key > slotDistances[in]) {
+                continue;
+            }
+            int current = graph.target(in);
+            if (current == target) {
+                return true;
+            }
+            long time = slotDistances[in];
+            if (timed && time > Integer.MAX_VALUE) {
+                overflowed = true;
+                continue;
+            }
+            for (int slot = graph.firstSlot(current), end = graph.endSlot(current); slot < end; slot++) {
+                if ((graph.flags(slot) & forbidden) != 0 || banned(graph, slot) || graph.isTurnBanned(in, slot)) {
+                    continue;
+                }
+                arrive(slot, graph.target(slot), time + (timed ? graph.travelTime(slot, (int) time) : graph.weight(slot)), in);
+            }
+        }
+        if (overflowed && (target < 0 || longDistance(target) == Long.MAX_VALUE)) {
+            throw new ArithmeticException("Arrival time does not fit in an int.");
+        }
+        return target < 0;
+    }
+
+    private boolean banned(CompactGraph graph, int slot) {
+        return bannedSlots[slot] == banStamp || bannedTowns[graph.target(slot)] == banStamp;
+    }
+
+    /**
+     * Records a way of driving along a road slot if it is shorter than any found before,
+     * and the town it settles if this is the best way there so far. That town is the
+     * one the slot leads to, or for a backwards search the one it leaves
+     *
+     * @return true if the slot got a shorter distance
+     */
+    private boolean arrive(int slot, int town, long distance, int previous) {
+        if (slotStamps[slot] == generation && slotDistances[slot] <= distance) {
+            return false;
+        }
+        slotDistances[slot] = distance;
+        slotPrevious[slot] = previous;
+        slotStamps[slot] = generation;
+        heap.push(distance, slot);
+        if (distance < longDistance(town)) {
+            reachLong(town, distance, slot);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the road slots of the route found to a town by the last route search
+     *
+     * @param id the town's id
+     * @return the slots from the source to the town, in order
+     */
+    public int[] routeSlots(int id) {
+        int length = 0;
+        for (int slot = previousSlot(id); slot >= 0; slot = slotPrevious[slot]) {
+            length++;
+        }
+        int[] slots = new int[length];
+        for (int slot = previousSlot(id); slot >= 0; slot = slotPrevious[slot]) {
+            slots[--length] = slot;
+        }
+        return slots;
+    }
+
+    /**
+     * Runs one Dijkstra search from several sources at once, stopping at a radius.
+     * Every town reached is labeled with the source it is nearest to, and towns are
+     * recorded in the order they are settled, which is increasing distance. A distance
+     * too large for an int is past any radius of an INT graph, so roads that would
+     * overflow are skipped. A graph with a wide WeightType adds up in longs, and on a
+     * restricted graph the search settles road slots, as route does, so one-way roads
+     * and banned turns are honored. Afterwards length gives each town's distance
+     *
+     * @param graph the graph to search
+     * @param sources the ids of the source towns, each starting at distance 0
+     * @param maxDistance the largest distance to settle
+     * @return the number of towns settled, see settled(int) and origin(int)
+     */
+    public int searchWithin(CompactGraph graph, int[] sources, long maxDistance) {
+        if (graph.isRestricted()) {
+            return routeWithin(graph, sources, maxDistance, false);
+        }
+        if (graph.getWeightType().isWide()) {
+            return searchWithinLong(graph, sources, maxDistance);
+        }
+        int n = graph.size();
+        begin(n);
+        wide = false;
+        routed = false;
+        if (origins.length < n) {
+            origins = new int[n];
+            settled = new int[n];
+        }
+
+        for (int i = 0; i < sources.length; i++) {
+            if (distance(sources[i]) != 0) {
+                reach(sources[i], 0, -1);
+                origins[sources[i]] = i;
+                heap.push(0, sources[i]);
+            }
+        }
+        int settledCount = 0;
+        while (!heap.isEmpty()) {
+            long key = heap.peekKey();
+            if (key > maxDistance) {
+                break;
+            }
+            int current = heap.pop();
+            if (key > distances[current]) {
+                continue;
+            }
+            settled[settledCount++] = current;
+            for (int slot = graph.firstSlot(current), end = graph.endSlot(current); slot < end; slot++) {
+                int neighbor = graph.target(slot);
+                int newDistance = distances[current] + graph.weight(slot);
+                if (newDistance >= 0 && newDistance < distance(neighbor)) {
+                    reach(neighbor, newDistance, slot);
+                    origins[neighbor] = origins[current];
+                    heap.push(newDistance, neighbor);
+                }
+            }
+        }
+        return settledCount;
+    }
+
+    /**
+     * The same loop as searchWithin with long distances, for graphs with a wide WeightType
+     */
+    private int searchWithinLong(CompactGraph graph, int[] sources, long maxDistance) {
+        int n = graph.size();
+        begin(n);
+        wide = true;
+        routed = false;
+        if (origins.length < n) {
+            origins = new int[n];
+            settled = new int[n];
+        }
+
+        for (int i = 0; i < sources.length; i++) {
+            if (longDistance(sources[i]) != 0) {
+                reachLong(sources[i], 0, -1);
+                origins[sources[i]] = i;
+                heap.push(0, sources[i]);
+            }
+        }
+        int settledCount = 0;
+        while (!heap.isEmpty()) {
+            long key = heap.peekKey();
+            if (key > maxDistance) {
+                break;
+            }
+            int current = heap.pop();
+            if (key > longDistances[current]) {
+                continue;
+            }
+            settled[settledCount++] = current;
+            for (int slot = graph.firstSlot(current), end = graph.endSlot(current); slot < end; slot++) {
+                int neighbor = graph.target(slot);
+                long newDistance = key + graph.weight(slot);
+                if (newDistance < longDistance(neighbor)) {
+                    reachLong(neighbor, newDistance, slot);
+                    origins[neighbor] = origins[current];
+                    heap.push(newDistance, neighbor);
+                }
+            }
+        }
+        return settledCount;
+    }
+
+    /**
+     * Like searchWithin, but measures the distance from each town to its nearest source
+     * rather than from the source to the town. The two only differ on a restricted
+     * graph, where the search follows roads backwards from the sources
+     *
+     * @param graph the graph to search
+     * @param sources the ids of the source towns, each at distance 0
+     * @param maxDistance the largest distance to settle
+     * @return the number of towns settled, see settled(int) and origin(int)
+     */
+    public int searchWithinTowards(CompactGraph graph, int[] sources, long maxDistance) {
+        return graph.isRestricted() ? routeWithin(graph, sources, maxDistance, true)
+                : searchWithin(graph, sources, maxDistance);
+    }
+
+    /**
+     * The form of searchWithin for restricted graphs. Forwards, a slot's distance is to
+     * the town it leads to. Backwards, a slot's distance is from the town it leaves to
+     * the nearest source, and it is extended by the roads leading into that town, so a
+     * turn is checked between the road extended to and the slot it continues along
+     */
+    private int routeWithin(CompactGraph graph, int[] sources, long maxDistance, boolean backwards) {
+        int n = graph.size();
+        begin(n, graph.slotCount());
+        wide = true;
+        routed = true;
+        if (origins.length < n) {
+            origins = new int[n];
+            settled = new int[n];
+        }
+        if (slotOrigins.length < graph.slotCount()) {
+            slotOrigins = new int[graph.slotCount()];
+        }
+
+        int settledCount = 0;
+        for (int i = 0; i < sources.length; i++) {
+            if (longDistance(sources[i]) != 0) {
+                reachLong(sources[i], 0, -1);
+                origins[sources[i]] = i;
+                settled[settledCount++] = sources[i];
+            }
+        }
+        for (int i = 0; i < settledCount; i++) {
+            int source = settled[i];
+            for (int slot = graph.firstSlot(source), end = graph.endSlot(source); slot < end; slot++) {
+                int road = backwards ? graph.reverse(slot) : slot;
+                if ((graph.flags(road) & CompactGraph.AGAINST_ONE_WAY) == 0) {
+                    enterWithin(graph, road, graph.weight(road), -1, origins[source], backwards);
+                }
+            }
+        }
+        while (!heap.isEmpty()) {
+            long key = heap.peekKey();
+            if (key > maxDistance) {
+                break;
+            }
+            int in = heap.pop();
+            if (key > slotDistances[in]) {
+                continue;
+            }
+            int current = backwards ? graph.owner(in) : graph.target(in);
+            if (previousSlot(current) == in) {
+                settled[settledCount++] = current;
+            }
+            for (int slot = graph.firstSlot(current), end = graph.endSlot(current); slot < end; slot++) {
+                int road = backwards ? graph.reverse(slot) : slot;
+                if ((graph.flags(road) & CompactGraph.AGAINST_ONE_WAY) != 0
+                        || (backwards ? graph.isTurnBanned(road, in) : graph.isTurnBanned(in, road))) {
+                    continue;
+                }
+                enterWithin(graph, road, key + graph.weight(road), in, slotOrigins[in], backwards);
+            }
+        }
+        return settledCount;
+    }
+
+    private void enterWithin(CompactGraph graph, int slot, long distance, int previous, int origin, boolean backwards) {
+        int town = backwards ? graph.owner(slot) : graph.target(slot);
+        if (arrive(slot, town, distance, previous)) {
+            slotOrigins[slot] = origin;
+            if (previousSlot(town) == slot) {
+                origins[town] = origin;
+            }
+        }
+    }
+
+    /**
+     * Returns a town settled by the last searchWithin
+     *
+     * @param i the position in settling order
+     * @return the town's id
+     */
+    public int settled(int i) {
+        return settled[i];
+    }
+
+    /**
+     * Returns which source a town was reached from in the last searchWithin
+     *
+     * @param id the town's id
+     * @return the position of the nearest source in the sources array
+     */
+    public int origin(int id) {
+        return origins[id];
+    }
+
+    /**
+     * Returns the road slots of the path found to a town by the last search
+     *
+     * @param graph the graph that was searched
+     * @param id the town's id
+     * @return the slots from the source to the town, in order
+     */
+    public int[] pathSlots(CompactGraph graph, int id) {
+        int length = 0;
+        for (int town = id; previousSlot(town) >= 0; town = graph.owner(previousSlots[town])) {
+            length++;
+        }
+        int[] slots = new int[length];
+        for (int town = id; previousSlot(town) >= 0; town = graph.owner(previousSlots[town])) {
+            slots[--length] = previousSlots[town];
+        }
+        return slots;
+    }
+
+    /**
+     * Returns the distance found to a town by the last search
+     *
+     * @param id the town's id
+     * @return the distance, or Integer.MAX_VALUE if the town can't be reached
+     */
+    public int distance(int id) {
+        return stamps[id] == generation ? distances[id] : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the road slot used to reach a town in the last search
+     *
+     * @param id the town's id
+     * @return the slot of the road into the town, or -1 for the source and unreachable towns
+     */
+    public int previousSlot(int id) {
+        return stamps[id] == generation ? previousSlots[id] : -1;
+    }
+
+    /**
+     * Returns the distance array of the last search, first writing Integer.MAX_VALUE
+     * into the entries the search did not reach and copying in the distances of a search
+     * that added up in longs. Only the first graph.size() entries are meaningful
+     *
+     * @param graph the graph that was searched
+     * @return the distances indexed by town id
+     * @throws ArithmeticException if a distance added up in a long does not fit in an int
+     */
+    int[] distances(CompactGraph graph) {
+        for (int id = 0; id < graph.size(); id++) {
+            if (stamps[id] != generation) {
+                distances[id] = Integer.MAX_VALUE;
+            } else if (wide) {
+                if (longDistances[id] >= Integer.MAX_VALUE) {
+                    throw overflow();
+                }
+                distances[id] = (int) longDistances[id];
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Returns the distances of the last search as longs, first writing Long.MAX_VALUE
+     * into the entries the search did not reach and copying in the distances of a search
+     * that added up in ints. Only the first graph.size() entries are meaningful
+     *
+     * @param graph the graph that was searched
+     * @return the distances indexed by town id
+     */
+    long[] longDistances(CompactGraph graph) {
+        for (int id = 0; id < graph.size(); id++) {
+            if (stamps[id] != generation) {
+                longDistances[id] = Long.MAX_VALUE;
+            } else if (!wide) {
+                longDistances[id] = distances[id];
+            }
+        }
+        return longDistances;
+    }
+
+    /**
+     * Starts a new generation so every entry from earlier searches reads as unreached,
+     * growing the arrays if the graph is larger than any searched before. Route searches
+     * also pass the number of road slots, which share the same generation
+     */
+    private void begin(int n) {
+        begin(n, 0);
+    }
+
+    private void begin(int n, int slots) {
+        if (slotDistances.length < slots) {
+            slotDistances = new long[slots];
+            slotPrevious = new int[slots];
+            slotStamps = new int[slots];
+        }
+        if (distances.length < n) {
+            distances = new int[n];
+            previousSlots = new int[n];
+            stamps = new int[n];
+            longDistances = new long[n];
+            Arrays.fill(slotStamps, 0);
+            generation = 0;
+        }
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            Arrays.fill(slotStamps, 0);
+            generation = 0;
+        }
+        generation++;
+        heap.clear();
+        overflowed = false;
+        stopped = false;
+    }
+
+    private void reach(int id, int distance, int slot) {
+        distances[id] = distance;
+        previousSlots[id] = slot;
+        stamps[id] = generation;
+    }
+}
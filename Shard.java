@@ -0,0 +1,98 @@
+import java.util.*;
+
+/**
+ * Shard - one part of a town graph split across several graphs. A shard only
+ * knows about its own towns and the roads between them, roads between shards are
+ * kept by the ShardedTownGraphManager
+ *
+ * @author Jessica Park
+ */
+
+public interface Shard {
+
+    /**
+     * Adds a town to this shard
+     *
+     * @param town the town's name
+     * @return true if the town was added, false if it was already there
+     */
+    public boolean addTown(String town);
+
+    /**
+     * Determines if a town is in this shard
+     *
+     * @param town the town's name
+     * @return true if the town is in this shard
+     */
+    public boolean containsTown(String town);
+
+    /**
+     * Adds a road between two towns of this shard
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param weight the distance between the two towns
+     * @param roadName name of road
+     * @return true if the road was added
+     */
+    public boolean addRoad(String town1, String town2, int weight, String roadName);
+
+    /**
+     * Returns the name of the road between two towns of this shard
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @return the road name, or null if there is no road
+     */
+    public String getRoad(String town1, String town2);
+
+    /**
+     * Deletes a road between two towns of this shard
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param roadName the road name
+     * @return true if the road was deleted
+     */
+    public boolean deleteRoad(String town1, String town2, String roadName);
+
+    /**
+     * Deletes a town and its roads from this shard
+     *
+     * @param town the town's name
+     * @return true if the town was deleted
+     */
+    public boolean deleteTown(String town);
+
+    /**
+     * Lists the towns of this shard
+     *
+     * @return the town names in sorted order
+     */
+    public ArrayList<String> allTowns();
+
+    /**
+     * Lists the roads of this shard
+     *
+     * @return the road names in sorted order
+     */
+    public ArrayList<String> allRoads();
+
+    /**
+     * Finds the distances from one town to several others without leaving this shard
+     *
+     * @param source name of the town to measure from
+     * @param targets names of the towns to measure to
+     * @return the distance to each target, Integer.MAX_VALUE for targets that can't be reached
+     */
+    public int[] distances(String source, List<String> targets);
+
+    /**
+     * Finds the shortest path between two towns without leaving this shard
+     *
+     * @param town1 name of the starting town
+     * @param town2 name of the ending town
+     * @return steps in the same format as TownGraphManager.getPath, empty if there is no path
+     */
+    public ArrayList<String> getPath(String town1, String town2);
+}
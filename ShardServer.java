@@ -0,0 +1,174 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Shard server - serves a shard to RemoteShard clients over a loopback socket, so
+ * the shards of a ShardedTownGraphManager can run as separate local processes
+ *
+ * Every call is a request holding the operation name and its string arguments,
+ * answered by a reply holding a count followed by that many strings, or a count
+ * of -1 followed by an error message. Each string is preceded by a flag so null
+ * can be sent.
+ *
+ * @author Jessica Park
+ */
+
+public class ShardServer implements Closeable {
+    private final Shard shard;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "shard-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructor - binds the server to a port on the loopback address
+     *
+     * @param shard the shard to serve
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port can't be bound
+     */
+    public ShardServer(Shard shard, int port) throws IOException {
+        this.shard = shard;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Returns the port the server is listening on
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Starts accepting connections on a background thread
+     *
+     * @return this server
+     */
+    public ShardServer start() {
+        connections.execute(this::acceptLoop);
+        return this;
+    }
+
+    /**
+     * Stops accepting connections and closes the server socket
+     *
+     * @throws IOException if the socket can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            while (true) {
+                String operation;
+                try {
+                    operation = in.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                String[] args = new String[in.readInt()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = readString(in);
+                }
+                List<String> reply;
+                try {
+                    reply = handle(operation, args);
+                } catch (RuntimeException e) {
+                    out.writeInt(-1);
+                    out.writeUTF(String.valueOf(e.getMessage()));
+                    out.flush();
+                    continue;
+                }
+                out.writeInt(reply.size());
+                for (String value : reply) {
+                    writeString(out, value);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client went away, nothing left to answer
+        }
+    }
+
+    private List<String> handle(String operation, String[] args) {
+        switch (operation) {
+            case "addTown":
+                return reply(shard.addTown(args[0]));
+            case "containsTown":
+                return reply(shard.containsTown(args[0]));
+            case "addRoad":
+                return reply(shard.addRoad(args[0], args[1], Integer.parseInt(args[2]), args[3]));
+            case "getRoad":
+                return Collections.singletonList(shard.getRoad(args[0], args[1]));
+            case "deleteRoad":
+                return reply(shard.deleteRoad(args[0], args[1], args[2]));
+            case "deleteTown":
+                return reply(shard.deleteTown(args[0]));
+            case "allTowns":
+                return shard.allTowns();
+            case "allRoads":
+                return shard.allRoads();
+            case "distances":
+                int[] distances = shard.distances(args[0], Arrays.asList(args).subList(1, args.length));
+                List<String> reply = new ArrayList<>(distances.length);
+                for (int distance : distances) {
+                    reply.add(Integer.toString(distance));
+                }
+                return reply;
+            case "getPath":
+                return shard.getPath(args[0], args[1]);
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    private static List<String> reply(boolean value) {
+        return Collections.singletonList(Boolean.toString(value));
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Runs a shard server holding an empty LocalShard until the process is stopped
+     *
+     * @param args the port to listen on, 0 or missing for any free port
+     * @throws IOException if the port can't be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        ShardServer server = new ShardServer(new LocalShard(), port);
+        System.out.println(server.getPort());
+        server.acceptLoop();
+    }
+}
@@ -0,0 +1,441 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Sharded Town Graph Manager - manages a graph of towns and roads split across several
+ * shards, each holding some of the towns and the roads between them
+ *
+ * Roads between shards are cut roads, kept here in an overlay graph of the boundary
+ * towns they join. For every shard the distances between its boundary towns are
+ * cached as shortcuts, so a path is found by searching the small graph of cut roads
+ * and shortcuts, then asking each shard the path is routed through for the roads
+ * making up its part of the route.
+ *
+ * @author Jessica Park
+ */
+
+public class ShardedTownGraphManager implements TownGraphManagerInterface {
+    private final List<Shard> shards;
+    private final Map<String, Integer> placement = new HashMap<>();
+    private final int[] shardSizes;
+    private final Graph overlay = new Graph();
+    private final Shortcuts[] shortcuts;
+
+    /**
+     * Constructor - manages an empty graph across the given shards
+     *
+     * @param shards the shards to place towns in, which should be empty
+     * @throws IllegalArgumentException if there are no shards
+     */
+    public ShardedTownGraphManager(List<Shard> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one shard.");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.shardSizes = new int[shards.size()];
+        this.shortcuts = new Shortcuts[shards.size()];
+    }
+
+    /**
+     * Splits an existing graph across shards with GraphPartitioner, keeping the shards
+     * within five percent of the same size while cutting few roads
+     *
+     * @param graph the graph to split
+     * @param shards the empty shards to fill
+     * @return a manager for the split graph
+     */
+    public static ShardedTownGraphManager partition(Graph graph, List<Shard> shards) {
+        ShardedTownGraphManager manager = new ShardedTownGraphManager(shards);
+        CompactGraph compact = graph.compact();
+        int[] labels = GraphPartitioner.partition(compact, shards.size(), 0.05);
+        for (int id = 0; id < compact.size(); id++) {
+            String name = compact.town(id).getName();
+            shards.get(labels[id]).addTown(name);
+            manager.placement.put(name, labels[id]);
+            manager.shardSizes[labels[id]]++;
+        }
+        for (int id = 0; id < compact.size(); id++) {
+            for (int slot = compact.firstSlot(id); slot < compact.endSlot(id); slot++) {
+                int other = compact.target(slot);
+                if (other > id) {
+                    Road road = compact.road(slot);
+                    manager.addRoad(compact.town(id).getName(), compact.town(other).getName(), road.getWeight(),
+                            road.getName());
+                }
+            }
+        }
+        return manager;
+    }
+
+    /**
+     * Returns the shard a town was placed in
+     *
+     * @param town the town's name
+     * @return the position of its shard, or -1 if the town does not exist
+     */
+    public int shardOf(String town) {
+        return placement.getOrDefault(town, -1);
+    }
+
+    /**
+     * Returns the number of roads between towns in different shards
+     *
+     * @return the number of cut roads
+     */
+    public int cutRoadCount() {
+        return overlay.edgeCount();
+    }
+
+    /**
+     * Adds a road with 2 towns and a road name. Missing towns are added first
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param weight the distance between the two towns
+     * @param roadName name of road
+     * @return true if the road was added successfully
+     */
+    @Override
+    public boolean addRoad(String town1, String town2, int weight, String roadName) {
+        addTown(town1);
+        addTown(town2);
+        int shard1 = placement.get(town1);
+        int shard2 = placement.get(town2);
+        if (shard1 == shard2) {
+            shortcuts[shard1] = null;
+            return shards.get(shard1).addRoad(town1, town2, weight, roadName);
+        }
+        Town t1 = new Town(town1);
+        Town t2 = new Town(town2);
+        if (overlay.containsEdge(t1, t2)) {
+            return false;
+        }
+        overlay.addVertex(t1);
+        overlay.addVertex(t2);
+        overlay.addEdge(t1, t2, weight, roadName);
+        shortcuts[shard1] = null;
+        shortcuts[shard2] = null;
+        return true;
+    }
+
+    /**
+     * Returns the name of the road that both towns are connected through
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @return name of road if town 1 and town2 are on the same road, returns null if not
+     */
+    @Override
+    public String getRoad(String town1, String town2) {
+        Integer shard1 = placement.get(town1);
+        Integer shard2 = placement.get(town2);
+        if (shard1 == null || shard2 == null) {
+            return null;
+        }
+        if (shard1.equals(shard2)) {
+            return shards.get(shard1).getRoad(town1, town2);
+        }
+        Road road = overlay.getEdge(new Town(town1), new Town(town2));
+        return road != null ? road.getName() : null;
+    }
+
+    /**
+     * Adds a town to the shard holding the fewest towns
+     *
+     * @param v the town's name
+     * @return true if the town was successfully added, false if not
+     */
+    @Override
+    public boolean addTown(String v) {
+        if (placement.containsKey(v)) {
+            return false;
+        }
+        int smallest = 0;
+        for (int i = 1; i < shardSizes.length; i++) {
+            if (shardSizes[i] < shardSizes[smallest]) {
+                smallest = i;
+            }
+        }
+        shards.get(smallest).addTown(v);
+        placement.put(v, smallest);
+        shardSizes[smallest]++;
+        return true;
+    }
+
+    /**
+     * Gets a town with a given name
+     *
+     * @param name the town's name
+     * @return the Town specified by the name, or null if town does not exist
+     */
+    @Override
+    public Town getTown(String name) {
+        return placement.containsKey(name) ? new Town(name) : null;
+    }
+
+    /**
+     * Determines if a town is already in the graph
+     *
+     * @param v the town's name
+     * @return true if the town is in the graph, false if not
+     */
+    @Override
+    public boolean containsTown(String v) {
+        return placement.containsKey(v);
+    }
+
+    /**
+     * Determines if a road is in the graph
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @return true if the road is in the graph, false if not
+     */
+    @Override
+    public boolean containsRoadConnection(String town1, String town2) {
+        return getRoad(town1, town2) != null;
+    }
+
+    /**
+     * Creates an ArrayList of all road titles in sorted order by road name
+     *
+     * @return an ArrayList of all road titles in sorted order by road name
+     */
+    @Override
+    public ArrayList<String> allRoads() {
+        ArrayList<String> roads = overlay.allRoadNames();
+        for (Shard shard : shards) {
+            roads.addAll(shard.allRoads());
+        }
+        Collections.sort(roads);
+        return roads;
+    }
+
+    /**
+     * Deletes a road from the graph
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param road the road name
+     * @return true if the road was successfully deleted, false if not
+     */
+    @Override
+    public boolean deleteRoadConnection(String town1, String town2, String road) {
+        Integer shard1 = placement.get(town1);
+        Integer shard2 = placement.get(town2);
+        if (shard1 == null || shard2 == null) {
+            return false;
+        }
+        if (shard1.equals(shard2)) {
+            shortcuts[shard1] = null;
+            return shards.get(shard1).deleteRoad(town1, town2, road);
+        }
+        Town t1 = new Town(town1);
+        Town t2 = new Town(town2);
+        Road cut = overlay.getEdge(t1, t2);
+        if (cut == null || !cut.getName().equals(road)) {
+            return false;
+        }
+        overlay.removeEdge(t1, t2, cut.getWeight(), road);
+        dropIfInterior(t1);
+        dropIfInterior(t2);
+        shortcuts[shard1] = null;
+        shortcuts[shard2] = null;
+        return true;
+    }
+
+    /**
+     * Deletes a town and its roads from the graph
+     *
+     * @param v the town's name
+     * @return true if the town was successfully deleted, false if not
+     */
+    @Override
+    public boolean deleteTown(String v) {
+        Integer shard = placement.remove(v);
+        if (shard == null) {
+            return false;
+        }
+        shards.get(shard).deleteTown(v);
+        shardSizes[shard]--;
+        shortcuts[shard] = null;
+        Town town = new Town(v);
+        if (overlay.containsVertex(town)) {
+            List<Road> cuts = new ArrayList<>(overlay.edgesOf(town));
+            overlay.removeVertex(town);
+            for (Road road : cuts) {
+                Town other = road.getSource().equals(town) ? road.getDestination() : road.getSource();
+                dropIfInterior(other);
+                shortcuts[placement.get(other.getName())] = null;
+            }
+        }
+        return true;
+    }
+
+    private void dropIfInterior(Town town) {
+        if (overlay.containsVertex(town) && overlay.edgesOf(town).isEmpty()) {
+            overlay.removeVertex(town);
+        }
+    }
+
+    /**
+     * Creates an ArrayList of all towns in alphabetical order
+     *
+     * @return an ArrayList of all towns in alphabetical order
+     */
+    @Override
+    public ArrayList<String> allTowns() {
+        ArrayList<String> towns = new ArrayList<>(placement.keySet());
+        Collections.sort(towns);
+        return towns;
+    }
+
+    /**
+     * Returns the shortest path from town 1 to town 2, found by searching the overlay of
+     * cut roads and shortcuts and then expanding each shortcut inside its shard
+     *
+     * @param town1 name of the starting town
+     * @param town2 name of the ending town
+     * @return an ArrayList of Strings that describe the path, empty if there is no path,
+     * or null if either town does not exist
+     */
+    @Override
+    public ArrayList<String> getPath(String town1, String town2) {
+        Integer sourceShard = placement.get(town1);
+        Integer targetShard = placement.get(town2);
+        if (sourceShard == null || targetShard == null) {
+            return null;
+        }
+        if (town1.equals(town2)) {
+            return new ArrayList<>();
+        }
+        refreshShortcuts();
+
+        Shortcuts sourceCuts = shortcuts[sourceShard];
+        Shortcuts targetCuts = shortcuts[targetShard];
+        int[] fromSource = shards.get(sourceShard).distances(town1, sourceCuts.boundary);
+        int[] toTarget = shards.get(targetShard).distances(town2, targetCuts.boundary);
+        int direct = Integer.MAX_VALUE;
+        if (sourceShard.equals(targetShard)) {
+            direct = shards.get(sourceShard).distances(town1, Collections.singletonList(town2))[0];
+        }
+
+        Map<String, Integer> distances = new HashMap<>();
+        Map<String, String> previous = new HashMap<>();
+        Map<String, Road> previousCut = new HashMap<>();
+        PriorityQueue<Map.Entry<String, Integer>> queue = new PriorityQueue<>(Map.Entry.comparingByValue());
+        distances.put(town1, 0);
+        queue.add(new AbstractMap.SimpleImmutableEntry<>(town1, 0));
+        while (!queue.isEmpty()) {
+            Map.Entry<String, Integer> entry = queue.poll();
+            String current = entry.getKey();
+            int distance = entry.getValue();
+            if (distance > distances.get(current)) {
+                continue;
+            }
+            if (current.equals(town2)) {
+                break;
+            }
+            if (current.equals(town1)) {
+                for (int i = 0; i < fromSource.length; i++) {
+                    improve(current, sourceCuts.boundary.get(i), distance, fromSource[i], null, distances, previous,
+                            previousCut, queue);
+                }
+                improve(current, town2, distance, direct, null, distances, previous, previousCut, queue);
+            }
+            Town town = new Town(current);
+            if (!overlay.containsVertex(town)) {
+                continue;
+            }
+            for (Road road : overlay.edgesOf(town)) {
+                String other = (road.getSource().equals(town) ? road.getDestination() : road.getSource()).getName();
+                improve(current, other, distance, road.getWeight(), road, distances, previous, previousCut, queue);
+            }
+            int shard = placement.get(current);
+            Shortcuts local = shortcuts[shard];
+            int row = local.position.get(current);
+            for (int i = 0; i < local.boundary.size(); i++) {
+                improve(current, local.boundary.get(i), distance, local.distances[row][i], null, distances, previous,
+                        previousCut, queue);
+            }
+            if (shard == targetShard) {
+                improve(current, town2, distance, toTarget[row], null, distances, previous, previousCut, queue);
+            }
+        }
+
+        ArrayList<String> path = new ArrayList<>();
+        if (!previous.containsKey(town2)) {
+            return path;
+        }
+        Deque<String> hops = new ArrayDeque<>();
+        for (String current = town2; current != null; current = previous.get(current)) {
+            hops.push(current);
+        }
+        String from = hops.pop();
+        while (!hops.isEmpty()) {
+            String to = hops.pop();
+            Road cut = previousCut.get(to);
+            if (cut != null) {
+                path.add(from + " via " + cut.getName() + " to " + to + " " + cut.getWeight());
+            } else {
+                path.addAll(shards.get(placement.get(from)).getPath(from, to));
+            }
+            from = to;
+        }
+        return path;
+    }
+
+    private static void improve(String from, String to, int distance, int weight, Road cut,
+            Map<String, Integer> distances, Map<String, String> previous, Map<String, Road> previousCut,
+            PriorityQueue<Map.Entry<String, Integer>> queue) {
+        if (weight == Integer.MAX_VALUE || from.equals(to)) {
+            return;
+        }
+        int newDistance = distance + weight;
+        if (newDistance < distances.getOrDefault(to, Integer.MAX_VALUE)) {
+            distances.put(to, newDistance);
+            previous.put(to, from);
+            if (cut != null) {
+                previousCut.put(to, cut);
+            } else {
+                previousCut.remove(to);
+            }
+            queue.add(new AbstractMap.SimpleImmutableEntry<>(to, newDistance));
+        }
+    }
+
+    /**
+     * Rebuilds the shortcuts of every shard changed since the last search, asking the
+     * shards for their boundary distances in parallel
+     */
+    private void refreshShortcuts() {
+        List<List<String>> boundaries = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            boundaries.add(new ArrayList<>());
+        }
+        for (Town town : overlay.vertexSet()) {
+            boundaries.get(placement.get(town.getName())).add(town.getName());
+        }
+        IntStream.range(0, shards.size()).parallel()
+                .filter(i -> shortcuts[i] == null)
+                .forEach(i -> shortcuts[i] = new Shortcuts(shards.get(i), boundaries.get(i)));
+    }
+
+    /**
+     * The distances between every pair of boundary towns of one shard
+     */
+    private static class Shortcuts {
+        private final List<String> boundary;
+        private final Map<String, Integer> position = new HashMap<>();
+        private final int[][] distances;
+
+        Shortcuts(Shard shard, List<String> boundary) {
+            this.boundary = boundary;
+            this.distances = new int[boundary.size()][];
+            for (int i = 0; i < boundary.size(); i++) {
+                position.put(boundary.get(i), i);
+                distances[i] = shard.distances(boundary.get(i), boundary);
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+import java.util.*;
+
+/**
+ * Shortest path tree - the result of running Dijkstra's algorithm from one town.
+ * When a road weight changes the tree is repaired in place, only revisiting the
+ * towns whose distance can actually change, instead of being recomputed
+ *
+ * @author Jessica Park
+ */
+
+public class ShortestPathTree {
+    private final Town source;
+    private final Map<Town, Long> distances;
+    private final Map<Town, Town> previousNodes;
+    private long version;
+
+    /**
+     * Constructor - runs Dijkstra's algorithm from the source town
+     *
+     * @param graph the graph to search
+     * @param source the town to find shortest paths from
+     */
+    public ShortestPathTree(Graph graph, Town source) {
+        this(graph, source, null);
+    }
+
+    /**
+     * Constructor - runs Dijkstra's algorithm from the source town, giving up if the
+     * token is cancelled
+     *
+     * @param graph the graph to search
+     * @param source the town to find shortest paths from
+     * @param token checked every few towns, or null if the search can't be cancelled
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public ShortestPathTree(Graph graph, Town source, CancellationToken token) {
+        this.source = source;
+        this.distances = new HashMap<>();
+        this.previousNodes = new HashMap<>();
+        this.version = graph.getVersion();
+
+        for (Town town : graph.vertexSet()) {
+            distances.put(town, Long.MAX_VALUE);
+            previousNodes.put(town, null);
+        }
+        distances.put(source, 0L);
+        PriorityQueue<Map.Entry<Town, Long>> priorityQueue = newQueue();
+        priorityQueue.add(new AbstractMap.SimpleImmutableEntry<>(source, 0L));
+        relax(graph, priorityQueue, null, token);
+    }
+
+    /**
+     * Returns the town this tree was grown from
+     *
+     * @return the source town
+     */
+    public Town getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the graph version this tree is valid for
+     *
+     * @return the graph version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the shortest distance from the source to a town. Distances are added up
+     * in longs whatever the graph's weight type, since the tree's maps box them anyway
+     *
+     * @param town the town to look up
+     * @return the distance, or Long.MAX_VALUE if the town can't be reached
+     */
+    public long distanceTo(Town town) {
+        return distances.getOrDefault(town, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the town before the given town on its shortest path
+     *
+     * @param town the town to look up
+     * @return the previous town, or null for the source and unreachable towns
+     */
+    public Town previous(Town town) {
+        return previousNodes.get(town);
+    }
+
+    /**
+     * Describes the shortest path from the source to the destination
+     *
+     * @param graph the graph this tree was built from
+     * @param destination the town to find a path to
+     * @return steps in the format: startTown "via" road "to" endTown weight,
+     * or an empty list if there is no path
+     */
+    public ArrayList<String> pathTo(Graph graph, Town destination) {
+        ArrayList<String> path = new ArrayList<>();
+        Town current = destination;
+
+        while (!current.equals(source)) {
+            Town previous = previousNodes.get(current);
+            if (previous == null) {
+                return new ArrayList<>();
+            }
+            Road road = graph.getEdge(previous, current);
+            path.add(previous + " via " + road.getName() + " to " + current + " "
+                    + graph.getWeightType().format(road.getWeight()));
+            current = previous;
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Repairs the tree after the weight of a road has changed
+     *
+     * @param graph the graph this tree was built from, already holding the new weight
+     * @param road the road whose weight changed
+     * @param oldWeight the weight of the road before the change
+     */
+    void weightChanged(Graph graph, Road road, int oldWeight) {
+        if (road.getWeight() < oldWeight) {
+            weightDecreased(graph, road);
+        } else if (road.getWeight() > oldWeight) {
+            weightIncreased(graph, road);
+        }
+        version = graph.getVersion();
+    }
+
+    /**
+     * A cheaper road can only shorten paths through it, so seed the search with
+     * whichever end of the road improves and let the improvement spread
+     */
+    private void weightDecreased(Graph graph, Road road) {
+        PriorityQueue<Map.Entry<Town, Long>> priorityQueue = newQueue();
+        improve(road.getSource(), road.getDestination(), road.getWeight(), priorityQueue);
+        improve(road.getDestination(), road.getSource(), road.getWeight(), priorityQueue);
+        relax(graph, priorityQueue, null, null);
+    }
+
+    /**
+     * A more expensive road only matters if it is in the tree. Every town below it
+     * loses its distance and is re-attached through its best unaffected neighbor
+     */
+    private void weightIncreased(Graph graph, Road road) {
+        Town child;
+        if (road.getDestination().equals(previousNodes.get(road.getSource()))) {
+            child = road.getSource();
+        } else if (road.getSource().equals(previousNodes.get(road.getDestination()))) {
+            child = road.getDestination();
+        } else {
+            return;
+        }
+        Town parent = previousNodes.get(child);
+        if (graph.getEdge(parent, child) != road) {
+            return;
+        }
+
+        Set<Town> affected = subtree(child);
+        for (Town town : affected) {
+            distances.put(town, Long.MAX_VALUE);
+            previousNodes.put(town, null);
+        }
+
+        PriorityQueue<Map.Entry<Town, Long>> priorityQueue = newQueue();
+        for (Town town : affected) {
+            for (Road edge : graph.edgesOf(town)) {
+                Town neighbor = other(edge, town);
+                if (!affected.contains(neighbor)) {
+                    improve(neighbor, town, edge.getWeight(), priorityQueue);
+                }
+            }
+        }
+        relax(graph, priorityQueue, affected, null);
+    }
+
+    private Set<Town> subtree(Town root) {
+        Map<Town, List<Town>> children = new HashMap<>();
+        for (Map.Entry<Town, Town> entry : previousNodes.entrySet()) {
+            if (entry.getValue() != null) {
+                children.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+        Set<Town> subtree = new HashSet<>();
+        Deque<Town> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Town town = stack.pop();
+            if (subtree.add(town)) {
+                for (Town child : children.getOrDefault(town, Collections.emptyList())) {
+                    stack.push(child);
+                }
+            }
+        }
+        return subtree;
+    }
+
+    private void improve(Town from, Town to, int weight, PriorityQueue<Map.Entry<Town, Long>> priorityQueue) {
+        long fromDistance = distanceTo(from);
+        if (fromDistance == Long.MAX_VALUE || !distances.containsKey(to)) {
+            return;
+        }
+        long newDistance = fromDistance + weight;
+        if (newDistance < distances.get(to)) {
+            distances.put(to, newDistance);
+            previousNodes.put(to, from);
+            priorityQueue.add(new AbstractMap.SimpleImmutableEntry<>(to, newDistance));
+        }
+    }
+
+    /**
+     * Dijkstra's relaxation loop. When a set of towns is given only those towns
+     * can still improve, so edges leading out of the set are skipped
+     */
+    private void relax(Graph graph, PriorityQueue<Map.Entry<Town, Long>> priorityQueue, Set<Town> within,
+            CancellationToken token) {
+        int polled = 0;
+        while (!priorityQueue.isEmpty()) {
+            if (token != null && ++polled % CancellationToken.CHECK_INTERVAL == 0) {
+                token.check();
+            }
+            Map.Entry<Town, Long> entry = priorityQueue.poll();
+            Town current = entry.getKey();
+            if (entry.getValue() > distances.get(current)) {
+                continue;
+            }
+            for (Road road : graph.edgesOf(current)) {
+                Town neighbor = other(road, current);
+                if (within == null || within.contains(neighbor)) {
+                    improve(current, neighbor, road.getWeight(), priorityQueue);
+                }
+            }
+        }
+    }
+
+    private PriorityQueue<Map.Entry<Town, Long>> newQueue() {
+        return new PriorityQueue<>(Map.Entry.comparingByValue());
+    }
+
+    private static Town other(Road road, Town town) {
+        return road.getDestination().equals(town) ? road.getSource() : road.getDestination();
+    }
+}
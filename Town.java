@@ -80,8 +80,12 @@ public class Town implements Comparable<Town> {
         return name;
     }
 
+    /**
+     * Returns the name of the town
+     * 
+     * @return the town's name
+     */
     public String getName() {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'getName'");
+        return name;
     }
 }
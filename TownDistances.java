@@ -0,0 +1,74 @@
+/**
+ * Town distances - the towns reached by a bounded search, in increasing order of
+ * distance, held in parallel arrays. For a search from several sources each
+ * town also records which source it is nearest to
+ *
+ * @author Jessica Park
+ */
+
+public class TownDistances {
+    private final Town[] towns;
+    private final int[] distances;
+    private final int[] sources;
+
+    /**
+     * Constructor - wraps the arrays of a finished search
+     *
+     * @param towns the towns reached, nearest first
+     * @param distances the distance of each town
+     * @param sources the position in the list of sources of each town's nearest source
+     */
+    public TownDistances(Town[] towns, int[] distances, int[] sources) {
+        this.towns = towns;
+        this.distances = distances;
+        this.sources = sources;
+    }
+
+    /**
+     * Returns the number of towns reached
+     *
+     * @return the number of towns
+     */
+    public int size() {
+        return towns.length;
+    }
+
+    /**
+     * Returns a town
+     *
+     * @param i the town's position, 0 being the nearest
+     * @return the town
+     */
+    public Town town(int i) {
+        return towns[i];
+    }
+
+    /**
+     * Returns the distance of a town from its nearest source
+     *
+     * @param i the town's position
+     * @return the distance
+     */
+    public int distance(int i) {
+        return distances[i];
+    }
+
+    /**
+     * Returns which source a town is nearest to
+     *
+     * @param i the town's position
+     * @return the position of the source in the list of sources searched from
+     */
+    public int source(int i) {
+        return sources[i];
+    }
+
+    /**
+     * Returns the distances of every town, in the same order as the towns
+     *
+     * @return the distance array
+     */
+    public int[] distances() {
+        return distances;
+    }
+}
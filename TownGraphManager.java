@@ -1,4 +1,7 @@
+import java.io.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
  * Town Graph Manager - manages a graph of towns and roads
@@ -9,12 +12,173 @@ import java.util.*;
 
  public class TownGraphManager implements TownGraphManagerInterface {
     private Graph graph;
+    private WriteAheadLog log;
+    private int checkpointInterval;
 
     /**
      * Constructor to initialize the TownGraphManager with a new graph
      */
     public TownGraphManager() {
-        this.graph = new Graph();
+        this(WeightType.INT);
+    }
+
+    /**
+     * Constructor to initialize the TownGraphManager with a new graph that adds up
+     * path lengths the given way
+     *
+     * @param weightType the weight type of the graph
+     */
+    public TownGraphManager(WeightType weightType) {
+        this.graph = new Graph(weightType);
+    }
+
+    /**
+     * Opens a manager whose edits are saved in a directory. The graph is restored from
+     * the last checkpoint plus the edits logged after it, and from then on every edit
+     * is written to the log before it is applied
+     *
+     * @param directory the directory holding the log and checkpoint, created if needed
+     * @param checkpointInterval how many logged edits to allow before taking a new checkpoint
+     * @return the restored manager
+     * @throws IOException if the saved graph can't be read
+     */
+    public static TownGraphManager open(File directory, int checkpointInterval) throws IOException {
+        return open(directory, checkpointInterval, WeightType.INT);
+    }
+
+    /**
+     * Opens a manager whose edits are saved in a directory, with a graph of the given
+     * weight type. The weight type is not saved, so the same one has to be given every
+     * time the directory is opened
+     *
+     * @param directory the directory holding the log and checkpoint, created if needed
+     * @param checkpointInterval how many logged edits to allow before taking a new checkpoint
+     * @param weightType the weight type of the graph
+     * @return the restored manager
+     * @throws IOException if the saved graph can't be read
+     */
+    public static TownGraphManager open(File directory, int checkpointInterval, WeightType weightType)
+            throws IOException {
+        TownGraphManager manager = new TownGraphManager(weightType);
+        manager.log = WriteAheadLog.open(directory.toPath(), manager.graph, manager::replay);
+        manager.checkpointInterval = Math.max(1, checkpointInterval);
+        return manager;
+    }
+
+    private void replay(WriteAheadLog.Entry entry) {
+        String[] names = entry.names;
+        switch (entry.operation) {
+            case WriteAheadLog.ADD_TOWN:
+                addTown(names[0]);
+                break;
+            case WriteAheadLog.ADD_ROAD:
+                addRoad(names[0], names[1], entry.weight, names[2]);
+                break;
+            case WriteAheadLog.DELETE_ROAD:
+                deleteRoadConnection(names[0], names[1], names[2]);
+                break;
+            case WriteAheadLog.DELETE_TOWN:
+                deleteTown(names[0]);
+                break;
+            case WriteAheadLog.UPDATE_WEIGHT:
+                updateWeight(names[0], names[1], entry.weight);
+                break;
+            case WriteAheadLog.CLOSE_ROAD:
+                closeRoad(names[0]);
+                break;
+            case WriteAheadLog.SET_ATTRIBUTES:
+                setRoadAttributes(names[0], names[1], entry.weight);
+                break;
+            case WriteAheadLog.SET_DIRECTED:
+                setDirected(entry.weight != 0);
+                break;
+            case WriteAheadLog.BAN_TURN:
+                banTurn(names[0], names[1], names[2]);
+                break;
+            case WriteAheadLog.ALLOW_TURN:
+                allowTurn(names[0], names[1], names[2]);
+                break;
+            case WriteAheadLog.ADD_PROFILE:
+                int breakpoints = entry.values.length / 2;
+                addProfile(Arrays.copyOf(entry.values, breakpoints),
+                        Arrays.copyOfRange(entry.values, breakpoints, entry.values.length));
+                break;
+            case WriteAheadLog.SET_PROFILE:
+                setRoadProfile(names[0], names[1], entry.weight);
+                break;
+            case WriteAheadLog.SET_COST:
+                setRoadCost(names[0], names[1], entry.weight);
+                break;
+            case WriteAheadLog.APPLY_BATCH:
+                try {
+                    applyBatch(GraphBatch.read(entry.dataStream()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                break;
+            case WriteAheadLog.APPLY_DELTA:
+                try {
+                    applyDelta(GraphDelta.read(entry.dataStream()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown log operation: " + entry.operation);
+        }
+    }
+
+    /**
+     * Logs an edit and waits for it to reach the disk before applying it, so an edit
+     * is never visible unless a restart would replay it. Callers check first that the
+     * edit is valid and changes the graph. A checkpoint is taken after the change once
+     * enough edits have piled up
+     */
+    private void logged(byte operation, int weight, Runnable change, String... names) {
+        logged(operation, weight, new int[0], new byte[0], change, names);
+    }
+
+    private void logged(byte operation, int weight, int[] values, Runnable change, String... names) {
+        logged(operation, weight, values, new byte[0], change, names);
+    }
+
+    private void logged(byte operation, int weight, int[] values, byte[] data, Runnable change, String... names) {
+        if (log != null) {
+            log.append(operation, weight, values, data, names);
+        }
+        change.run();
+        if (log != null && log.sinceCheckpoint() >= checkpointInterval) {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Saves the whole graph as a checkpoint and empties the log, so a restart has
+     * nothing to replay. Does nothing if the manager was not opened from a directory
+     *
+     * @throws IOException if the checkpoint can't be written
+     */
+    public void checkpoint() throws IOException {
+        if (log != null) {
+            log.checkpoint(graph);
+        }
+    }
+
+    /**
+     * Writes any edits not yet on disk and closes the log. Does nothing if the manager
+     * was not opened from a directory
+     *
+     * @throws IOException if the log can't be written
+     */
+    public void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
     }
 
     /**
@@ -25,15 +189,19 @@ import java.util.*;
      * @param weight the distance between the two towns
      * @param roadName name of road
      * @return true if the road was added successfully
+     * @throws IllegalArgumentException if the weight is negative
      */
     @Override
     public boolean addRoad(String town1, String town2, int weight, String roadName) {
-        Town t1 = getOrCreateTown(town1);
-        Town t2 = getOrCreateTown(town2);
-        if (graph.containsEdge(t1, t2)) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Road weight cannot be negative: " + roadName);
+        }
+        if (graph.containsEdge(new Town(town1), new Town(town2))) {
             return false;
         }
-        graph.addEdge(t1, t2, weight, roadName);
+        logged(WriteAheadLog.ADD_ROAD, weight,
+                () -> graph.addEdge(getOrCreateTown(town1), getOrCreateTown(town2), weight, roadName),
+                town1, town2, roadName);
         return true;
     }
 
@@ -61,7 +229,11 @@ import java.util.*;
     @Override
     public boolean addTown(String v) {
         Town town = new Town(v);
-        return graph.addVertex(town);
+        if (graph.containsVertex(town)) {
+            return false;
+        }
+        logged(WriteAheadLog.ADD_TOWN, 0, () -> graph.addVertex(town), v);
+        return true;
     }
 
     /**
@@ -72,12 +244,38 @@ import java.util.*;
      */
     @Override
     public Town getTown(String name) {
-        for (Town town : graph.vertexSet()) {
-            if (town.getName().equals(name)) {
-                return town;
-            }
+        return name == null ? null : graph.townIndex().get(name);
+    }
+
+    /**
+     * Finds towns whose names start with a prefix, for autocompletion
+     *
+     * @param prefix the start of the town name
+     * @param limit the most names to return
+     * @return up to limit town names in alphabetical order
+     */
+    public ArrayList<String> findTowns(String prefix, int limit) {
+        return names(graph.townIndex().withPrefix(prefix, limit));
+    }
+
+    /**
+     * Finds towns whose names are close to a possibly misspelled name
+     *
+     * @param name the name to match
+     * @param maxEdits the most inserted, deleted or changed characters to allow
+     * @param limit the most names to return
+     * @return up to limit town names, closest first
+     */
+    public ArrayList<String> suggestTowns(String name, int maxEdits, int limit) {
+        return names(graph.townIndex().closest(name, maxEdits, limit));
+    }
+
+    private static ArrayList<String> names(List<Town> towns) {
+        ArrayList<String> names = new ArrayList<>(towns.size());
+        for (Town town : towns) {
+            names.add(town.getName());
         }
-        return null;
+        return names;
     }
 
     /**
@@ -112,13 +310,7 @@ import java.util.*;
      */
     @Override
     public ArrayList<String> allRoads() {
-        Set<Road> roads = graph.edgeSet();
-        ArrayList<String> roadNames = new ArrayList<>();
-        for (Road road : roads) {
-            roadNames.add(road.getName());
-        }
-        Collections.sort(roadNames);
-        return roadNames;
+        return graph.allRoadNames();
     }
 
     /**
@@ -135,7 +327,8 @@ import java.util.*;
         Town t2 = new Town(town2);
         Road road = graph.getEdge(t1, t2);
         if (road != null && road.getName().equals(roadName)) {
-            graph.removeEdge(t1, t2, road.getWeight(), roadName);
+            logged(WriteAheadLog.DELETE_ROAD, 0, () -> graph.removeEdge(t1, t2, road.getWeight(), roadName),
+                    town1, town2, roadName);
             return true;
         }
         return false;
@@ -150,7 +343,11 @@ import java.util.*;
     @Override
     public boolean deleteTown(String v) {
         Town town = new Town(v);
-        return graph.removeVertex(town);
+        if (!graph.containsVertex(town)) {
+            return false;
+        }
+        logged(WriteAheadLog.DELETE_TOWN, 0, () -> graph.removeVertex(town), v);
+        return true;
     }
 
     /**
@@ -160,13 +357,107 @@ import java.util.*;
      */
     @Override
     public ArrayList<String> allTowns() {
-        Set<Town> towns = graph.vertexSet();
-        ArrayList<String> townNames = new ArrayList<>();
-        for (Town town : towns) {
-            townNames.add(town.getName());
-        }
-        Collections.sort(townNames);
-        return townNames;
+        return allTowns(0, townCount());
+    }
+
+    /**
+     * Returns a page of the alphabetical list made by allTowns()
+     *
+     * @param from the position of the first town
+     * @param count the most towns to return
+     * @return up to count town names starting at position from
+     */
+    public ArrayList<String> allTowns(int from, int count) {
+        return names(graph.townIndex().range(from, count));
+    }
+
+    /**
+     * Returns the number of towns
+     *
+     * @return the number of towns
+     */
+    public int townCount() {
+        return graph.townIndex().size();
+    }
+
+    /**
+     * Returns a primitive snapshot of the graph for the current version. The snapshot
+     * never changes, so many threads can search it at once while no edits are being made
+     *
+     * @return the snapshot of the graph
+     */
+    public CompactGraph snapshot() {
+        return graph.compact();
+    }
+
+    /**
+     * Returns the number of towns in each group of towns connected by roads
+     *
+     * @return the component sizes, largest first
+     */
+    public int[] components() {
+        return graph.components();
+    }
+
+    /**
+     * Finds the cheapest set of roads that still connects every town to every town
+     * it can reach now
+     *
+     * @return the road names, through roadNames(), and total weight of the roads to keep
+     */
+    public MinimumSpanningForest minimumSpanningRoads() {
+        return graph.minimumSpanningForest();
+    }
+
+    /**
+     * Determines if there is any route between two towns
+     *
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @return true if both towns exist and a route connects them
+     */
+    public boolean connected(String town1, String town2) {
+        return graph.connected(getTown(town1), getTown(town2));
+    }
+
+    /**
+     * Returns the position of a town in the list made by allTowns()
+     *
+     * @param name the town's name
+     * @return the position the town has, or would have if it were added
+     */
+    public int townPosition(String name) {
+        return graph.townIndex().rank(name);
+    }
+
+    /**
+     * Returns a page of the sorted list made by allRoads()
+     *
+     * @param from the position of the first road
+     * @param count the most roads to return
+     * @return up to count road names starting at position from
+     */
+    public ArrayList<String> allRoads(int from, int count) {
+        return graph.allRoadNames(from, count);
+    }
+
+    /**
+     * Returns the position of a road name in the list made by allRoads()
+     *
+     * @param roadName the road name
+     * @return the position of the first road with the name, or where it would be
+     */
+    public int roadPosition(String roadName) {
+        return graph.roadNamePosition(roadName);
+    }
+
+    /**
+     * Returns the number of roads
+     *
+     * @return the number of roads
+     */
+    public int roadCount() {
+        return graph.edgeCount();
     }
 
     /**
@@ -187,4 +478,512 @@ import java.util.*;
         return graph.shortestPath(t1, t2);
     }
 
+    /**
+     * Returns the shortest path from town 1 to town 2, or the best route found within
+     * a time budget if the search can't finish in time
+     *
+     * @param town1 name of the starting town
+     * @param town2 name of the ending town
+     * @param budget how long the search may run
+     * @return the route and whether it is proven to be the shortest, or null if either
+     * town does not exist
+     */
+    public PathResult getPath(String town1, String town2, Duration budget) {
+        Town t1 = getTown(town1);
+        Town t2 = getTown(town2);
+        if (t1 == null || t2 == null) {
+            return null;
+        }
+        return graph.shortestPathWithin(t1, t2, CancellationToken.deadlineIn(budget));
+    }
+
+    /**
+     * Returns the shortest path from town 1 to town 2, stopping early if the token is
+     * cancelled from another thread
+     *
+     * @param town1 name of the starting town
+     * @param town2 name of the ending town
+     * @param token checked every few towns while searching
+     * @return the path in the same format as getPath, or null if either town does not exist
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public ArrayList<String> getPath(String town1, String town2, CancellationToken token) {
+        Town t1 = getTown(town1);
+        Town t2 = getTown(town2);
+        if (t1 == null || t2 == null) {
+            return null;
+        }
+        return graph.shortestPath(t1, t2, token);
+    }
+
+    /**
+     * Creates an ArrayList of every town on a named road in alphabetical order
+     *
+     * @param roadName the road name
+     * @return an ArrayList of the towns at the ends of the road's segments
+     */
+    public ArrayList<String> getRoadTowns(String roadName) {
+        TreeSet<String> towns = new TreeSet<>();
+        for (Road road : graph.roadsNamed(roadName)) {
+            towns.add(road.getSource().getName());
+            towns.add(road.getDestination().getName());
+        }
+        return new ArrayList<>(towns);
+    }
+
+    /**
+     * Deletes every segment of a named road
+     *
+     * @param roadName the road name
+     * @return the number of road segments deleted
+     */
+    public int closeRoad(String roadName) {
+        int closed = graph.roadsNamed(roadName).size();
+        if (closed > 0) {
+            logged(WriteAheadLog.CLOSE_ROAD, 0, () -> graph.closeRoad(roadName), roadName);
+        }
+        return closed;
+    }
+
+    /**
+     * Changes the distance of the road between two towns
+     *
+     * @param town1 name of town 1 (lastname, firstname)
+     * @param town2 name of town 2 (lastname, firstname)
+     * @param weight the new distance between the two towns
+     * @return true if the road exists and was updated, false if not
+     * @throws IllegalArgumentException if the weight is negative
+     */
+    public boolean updateWeight(String town1, String town2, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight cannot be negative.");
+        }
+        Town t1 = new Town(town1);
+        Town t2 = new Town(town2);
+        if (!graph.containsEdge(t1, t2)) {
+            return false;
+        }
+        logged(WriteAheadLog.UPDATE_WEIGHT, weight, () -> graph.updateWeight(t1, t2, weight), town1, town2);
+        return true;
+    }
+
+    /**
+     * Changes the attribute bits of the road between two towns, such as Road.ONE_WAY
+     * or Road.NO_TRUCKS. A one-way road runs from the town it was added with first
+     *
+     * @param town1 name of town 1 (lastname, firstname)
+     * @param town2 name of town 2 (lastname, firstname)
+     * @param attributes the new attribute bits
+     * @return true if the road exists, false if not
+     */
+    public boolean setRoadAttributes(String town1, String town2, int attributes) {
+        Road road = graph.getEdge(new Town(town1), new Town(town2));
+        if (road == null) {
+            return false;
+        }
+        if (road.getAttributes() != attributes) {
+            logged(WriteAheadLog.SET_ATTRIBUTES, attributes,
+                    () -> graph.setAttributes(road.getSource(), road.getDestination(), attributes), town1, town2);
+        }
+        return true;
+    }
+
+    /**
+     * Turns directed mode on or off. In directed mode routes only drive one-way roads
+     * in their own direction
+     *
+     * @param directed true to honor one-way roads
+     */
+    public void setDirected(boolean directed) {
+        if (graph.isDirected() != directed) {
+            logged(WriteAheadLog.SET_DIRECTED, directed ? 1 : 0, () -> graph.setDirected(directed));
+        }
+    }
+
+    /**
+     * Bans turning from the road between the first two towns into the road between
+     * the last two
+     *
+     * @param from name of the town the route comes from
+     * @param via name of the town where the turn is made
+     * @param to name of the town the route would turn towards
+     * @return true if the turn was not banned already
+     * @throws IllegalArgumentException if either road does not exist
+     */
+    public boolean banTurn(String from, String via, String to) {
+        Town f = new Town(from);
+        Town v = new Town(via);
+        Town t = new Town(to);
+        graph.checkTurn(f, v, t);
+        if (graph.turnBans().contains(List.of(f, v, t))) {
+            return false;
+        }
+        logged(WriteAheadLog.BAN_TURN, 0, () -> graph.banTurn(f, v, t), from, via, to);
+        return true;
+    }
+
+    /**
+     * Lifts a turn ban
+     *
+     * @param from name of the town the route comes from
+     * @param via name of the town where the turn is made
+     * @param to name of the town the route would turn towards
+     * @return true if the turn was banned
+     */
+    public boolean allowTurn(String from, String via, String to) {
+        Town f = new Town(from);
+        Town v = new Town(via);
+        Town t = new Town(to);
+        if (!graph.turnBans().contains(List.of(f, v, t))) {
+            return false;
+        }
+        logged(WriteAheadLog.ALLOW_TURN, 0, () -> graph.allowTurn(f, v, t), from, via, to);
+        return true;
+    }
+
+    /**
+     * Returns the shortest path from town 1 to town 2 that avoids roads with any of
+     * the given attributes, for example Road.NO_TRUCKS for a truck
+     *
+     * @param town1 name of the starting town
+     * @param town2 name of the ending town
+     * @param avoidAttributes attribute bits of the roads the path may not use
+     * @return the path in the same format as getPath, or null if either town does not exist
+     */
+    public ArrayList<String> getPath(String town1, String town2, int avoidAttributes) {
+        Town t1 = getTown(town1);
+        Town t2 = getTown(town2);
+        if (t1 == null || t2 == null) {
+            return null;
+        }
+        return graph.shortestPath(t1, t2, avoidAttributes);
+    }
+
+    /**
+     * Adds a travel time profile, for example the travel times of a road through the
+     * day, that roads can then share through setRoadProfile
+     *
+     * @param departures the departure times of the breakpoints, in increasing order
+     * @param durations the travel time for each departure time
+     * @return the number of the profile
+     * @throws IllegalArgumentException if the profile is invalid
+     */
+    public int addProfile(int[] departures, int[] durations) {
+        TravelTimeProfiles.validate(departures, durations);
+        int profile = graph.travelTimeProfiles().size();
+        int[] values = Arrays.copyOf(departures, departures.length * 2);
+        System.arraycopy(durations, 0, values, departures.length, durations.length);
+        logged(WriteAheadLog.ADD_PROFILE, 0, values, () -> graph.addProfile(departures, durations));
+        return profile;
+    }
+
+    /**
+     * Gives the road between two towns a travel time profile
+     *
+     * @param town1 name of town 1 (lastname, firstname)
+     * @param town2 name of town 2 (lastname, firstname)
+     * @param profile a number returned by addProfile, or -1 to remove the road's profile
+     * @return true if the road exists, false if not
+     * @throws IllegalArgumentException if there is no such profile
+     */
+    public boolean setRoadProfile(String town1, String town2, int profile) {
+        Road road = graph.getEdge(new Town(town1), new Town(town2));
+        if (road == null) {
+            return false;
+        }
+        graph.checkProfile(profile);
+        if (road.getProfile() != profile) {
+            logged(WriteAheadLog.SET_PROFILE, profile,
+                    () -> graph.setProfile(road.getSource(), road.getDestination(), profile), town1, town2);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the quickest path from town 1 to town 2 when leaving at a given time,
+     * using the travel time profiles of the roads
+     *
+     * @param town1 name of the starting town
+     * @param town2 name of the ending town
+     * @param departure when the trip starts, in the same units as the road weights
+     * @return the route with the travel time of each step and the total travel time,
+     * or null if either town does not exist
+     */
+    public PathResult getFastestPath(String town1, String town2, int departure) {
+        Town t1 = getTown(town1);
+        Town t2 = getTown(town2);
+        if (t1 == null || t2 == null) {
+            return null;
+        }
+        return graph.fastestPath(t1, t2, departure);
+    }
+
+    /**
+     * Changes the toll cost of the road between two towns
+     *
+     * @param town1 name of town 1 (lastname, firstname)
+     * @param town2 name of town 2 (lastname, firstname)
+     * @param cost the new cost
+     * @return true if the road exists and was updated, false if not
+     * @throws IllegalArgumentException if the cost is negative
+     */
+    public boolean setRoadCost(String town1, String town2, int cost) {
+        Road road = graph.getEdge(new Town(town1), new Town(town2));
+        if (road == null) {
+            return false;
+        }
+        if (cost < 0) {
+            throw new IllegalArgumentException("Cost cannot be negative.");
+        }
+        if (road.getCost() != cost) {
+            logged(WriteAheadLog.SET_COST, cost,
+                    () -> graph.setCost(road.getSource(), road.getDestination(), cost), town1, town2);
+        }
+        return true;
+    }
+
+    /**
+     * Returns every route from town 1 to town 2 that no other route beats on both
+     * distance and toll cost
+     *
+     * @param town1 name of the starting town
+     * @param town2 name of the ending town
+     * @param maxLabelsPerTown the most partial routes the search keeps at any town
+     * @return the routes, shortest and most expensive first, or null if either town
+     * does not exist. Distances are longs on graphs with a wide WeightType, see
+     * ParetoRoutes.longDistance
+     * @throws IllegalArgumentException if maxLabelsPerTown is less than 1
+     */
+    public ParetoRoutes getParetoPaths(String town1, String town2, int maxLabelsPerTown) {
+        return graph.paretoPaths(new Town(town1), new Town(town2), maxLabelsPerTown);
+    }
+
+    /**
+     * Returns up to k alternative routes from town 1 to town 2, shortest first
+     *
+     * @param town1 name of town 1 (lastname, firstname)
+     * @param town2 name of town 2 (lastname, firstname)
+     * @param k the most routes to return
+     * @return an ArrayList of routes, each in the same format as getPath, or null
+     * if either town does not exist
+     */
+    public ArrayList<ArrayList<String>> getPaths(String town1, String town2, int k) {
+        Town t1 = getTown(town1);
+        Town t2 = getTown(town2);
+        if (t1 == null || t2 == null) {
+            return null;
+        }
+        return graph.kShortestPaths(t1, t2, k);
+    }
+
+    /**
+     * Finds every town within a distance of a town
+     *
+     * @param town name of the town to search from
+     * @param maxDistance the largest distance to include
+     * @return the towns reached, nearest first, or null if the town does not exist
+     */
+    public TownDistances townsWithin(String town, int maxDistance) {
+        Town t = getTown(town);
+        return t == null ? null : graph.townsWithin(t, maxDistance);
+    }
+
+    /**
+     * Finds every town within a distance of any of several towns, and which of them
+     * it is nearest to, in a single search
+     *
+     * @param towns names of the towns to search from
+     * @param maxDistance the largest distance to include
+     * @return the towns reached, nearest first, each with the position of its nearest
+     * town in the given list. Names of towns that do not exist are ignored
+     */
+    public TownDistances isochrones(List<String> towns, int maxDistance) {
+        List<Town> sources = new ArrayList<>(towns.size());
+        for (String name : towns) {
+            Town town = getTown(name);
+            sources.add(town == null ? new Town(name) : town);
+        }
+        return graph.isochrones(sources, maxDistance);
+    }
+
+    /**
+     * Applies a batch of edits to the graph in one pass. A manager that saves its edits
+     * logs the whole batch as one entry before applying it
+     *
+     * @param batch the edits to apply
+     * @return the number of edits that changed the graph
+     * @throws IllegalArgumentException if the batch is invalid, in which case nothing is applied
+     * @throws UncheckedIOException if the manager saves its edits and the log can't be written
+     */
+    public int applyBatch(GraphBatch batch) {
+        graph.check(batch);
+        int[] changed = new int[1];
+        logged(WriteAheadLog.APPLY_BATCH, 0, new int[0], log == null ? new byte[0] : bytes(batch::write),
+                () -> changed[0] = graph.apply(batch));
+        return changed[0];
+    }
+
+    /**
+     * Something that writes itself in binary form, such as a batch or a delta
+     */
+    private interface Writable {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Writes something in binary form to an array, to be logged
+     */
+    private static byte[] bytes(Writable writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writer.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Applies the changes between two versions of the graph in place, as made by
+     * GraphDelta.diff or read with GraphDelta.read. Like a batch, a delta is logged as
+     * one entry before it is applied
+     *
+     * @param delta the changes to apply
+     * @return the number of changes that altered the graph
+     * @throws IllegalArgumentException if the delta holds an invalid edit, in which case
+     * nothing is applied
+     * @throws UncheckedIOException if the manager saves its edits and the log can't be written
+     */
+    public int applyDelta(GraphDelta delta) {
+        delta.check(graph);
+        int[] changed = new int[1];
+        logged(WriteAheadLog.APPLY_DELTA, 0, new int[0], log == null ? new byte[0] : bytes(delta::write),
+                () -> changed[0] = graph.apply(delta));
+        return changed[0];
+    }
+
+    /**
+     * Reads towns and roads from a file and adds them to the graph as one batch.
+     * Each line is in the format: road-name,weight;town1;town2. A manager that saves
+     * its edits logs the batch as one entry, so the load survives a crash
+     *
+     * @param selectedFile the file to read from
+     * @throws FileNotFoundException if the file does not exist
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    public void populateTownGraph(File selectedFile) throws FileNotFoundException, IOException {
+        populateTownGraph(selectedFile, (bytesRead, totalBytes) -> { });
+    }
+
+    /**
+     * Reads towns and roads from a file and adds them to the graph as one batch,
+     * reporting how much of the file has been read. The graph is only changed once
+     * the whole file has been read, so interrupting the reading thread leaves it untouched.
+     * If the file lists a road between the same two towns more than once, the first
+     * line is used and the later ones are skipped. A manager that saves its edits logs
+     * the batch as one entry, like applyBatch
+     *
+     * @param selectedFile the file to read from
+     * @param progress called with the bytes read so far and the size of the file
+     * @throws FileNotFoundException if the file does not exist
+     * @throws InterruptedIOException if the reading thread is interrupted
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    public void populateTownGraph(File selectedFile, BiConsumer<Long, Long> progress)
+            throws FileNotFoundException, IOException {
+        GraphBatch batch = new GraphBatch();
+        Set<String> pairs = new HashSet<>();
+        long totalBytes = selectedFile.length();
+        int lines = 0;
+        CountingInputStream in = new CountingInputStream(new FileInputStream(selectedFile));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (++lines % 1024 == 0) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Loading was cancelled.");
+                    }
+                    progress.accept(Math.min(in.count, totalBytes), totalBytes);
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] parts = line.split(";");
+                String[] road = parts[0].split(",");
+                if (parts.length != 3 || road.length != 2) {
+                    throw new IOException("Malformed line: " + line);
+                }
+                int weight;
+                try {
+                    weight = Integer.parseInt(road[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed weight: " + line, e);
+                }
+                String town1 = parts[1].trim();
+                String town2 = parts[2].trim();
+                if (pairs.add(town1.compareTo(town2) <= 0 ? town1 + "\n" + town2 : town2 + "\n" + town1)) {
+                    batch.addRoad(town1, town2, weight, road[0].trim());
+                }
+            }
+        }
+        try {
+            applyBatch(batch);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        progress.accept(totalBytes, totalBytes);
+    }
+
+    /**
+     * Counts the bytes read from a file, so progress is right whatever the file's line
+     * endings and character encoding. The reader reads ahead, so the count runs at most
+     * one buffer ahead of the line being parsed
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Adds a town to the graph if it is not already there
+     *
+     * @param name the town's name
+     * @return the town with the given name
+     */
+    private Town getOrCreateTown(String name) {
+        Town town = new Town(name);
+        graph.addVertex(town);
+        return town;
+    }
+
 }
\ No newline at end of file
@@ -1,7 +1,28 @@
 import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * JUnit tests for the TownGraphManager class
@@ -10,6 +31,7 @@ import java.util.ArrayList;
  */
 public class TownGraphManager_STUDENT_Test {
     private TownGraphManager manager;
+    private File directory;
 
     /**
      * Set up the TownGraphManager with initial data before each test
@@ -24,6 +46,19 @@ public class TownGraphManager_STUDENT_Test {
         manager.addRoad("TownB", "TownC", 5, "SecondStreet");
     }
 
+    /**
+     * Delete the directory a test saved its graph in, if it used one
+     */
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (directory != null) {
+            for (File file : directory.listFiles()) {
+                Files.delete(file.toPath());
+            }
+            Files.delete(directory.toPath());
+        }
+    }
+
     /**
      * Test that towns can be added to the graph manager
      */
@@ -103,4 +138,471 @@ public class TownGraphManager_STUDENT_Test {
         assertTrue(manager.containsRoadConnection("TownA", "TownB"), "Graph should contain a road connection between TownA and TownB.");
         assertFalse(manager.containsRoadConnection("TownA", "TownC"), "Graph should not contain a direct road connection between TownA and TownC.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test that a batch of edits is applied together with a single version bump
+     */
+    @Test
+    public void testApplyBatch() {
+        GraphBatch batch = new GraphBatch()
+                .deleteTown("TownC")
+                .addTown("TownD")
+                .addRoad("TownA", "TownD", 3, "FourthStreet")
+                .addRoad("TownD", "TownE", 4, "FifthStreet");
+        assertEquals(5, manager.applyBatch(batch), "Every edit in the batch should change the graph.");
+        assertFalse(manager.containsTown("TownC"), "TownC should be deleted.");
+        assertFalse(manager.containsRoadConnection("TownB", "TownC"), "Roads of TownC should be deleted.");
+        assertTrue(manager.containsTown("TownE"), "Towns of a new road should be added.");
+        assertEquals("FourthStreet", manager.getRoad("TownA", "TownD"));
+    }
+
+    /**
+     * Test that an invalid batch leaves the graph unchanged
+     */
+    @Test
+    public void testApplyInvalidBatch() {
+        GraphBatch batch = new GraphBatch()
+                .addTown("TownD")
+                .addRoad("TownA", "TownD", -1, "FourthStreet");
+        assertThrows(IllegalArgumentException.class, () -> manager.applyBatch(batch));
+        assertFalse(manager.containsTown("TownD"), "Nothing in an invalid batch should be applied.");
+    }
+
+    /**
+     * Test that roads sharing a name are listed once per road and share one String
+     */
+    @Test
+    public void testAllRoadsSharedNames() {
+        manager.addRoad("TownA", "TownC", 4, new String("MainStreet"));
+        manager.addRoad("TownC", "TownD", 6, "AStreet");
+        ArrayList<String> roads = manager.allRoads();
+        assertEquals(4, roads.size(), "There should be four roads in the manager.");
+        assertEquals("AStreet", roads.get(0));
+        assertEquals("MainStreet", roads.get(1));
+        assertSame(roads.get(1), roads.get(2));
+        manager.deleteTown("TownA");
+        assertEquals(2, manager.allRoads().size(), "Roads of a deleted town should not be listed.");
+    }
+
+    /**
+     * Test that towns can be found by prefix and by a misspelled name
+     */
+    @Test
+    public void testFindTowns() {
+        manager.addTown("Bethesda");
+        manager.addTown("Baltimore");
+        manager.addTown("Bowie");
+        ArrayList<String> prefix = manager.findTowns("B", 2);
+        assertEquals(2, prefix.size(), "Only two towns should be returned.");
+        assertEquals("Baltimore", prefix.get(0));
+        assertEquals("Bethesda", prefix.get(1));
+        assertEquals("TownA", manager.findTowns("Town", 10).get(0));
+
+        ArrayList<String> fuzzy = manager.suggestTowns("Baltimor", 1, 5);
+        assertEquals(1, fuzzy.size(), "Only Baltimore is one edit away.");
+        assertEquals("Baltimore", fuzzy.get(0));
+        assertEquals("TownB", manager.suggestTowns("TownX", 1, 5).get(1));
+
+        manager.deleteTown("Bowie");
+        assertNull(manager.getTown("Bowie"), "Deleted towns should not be found.");
+        assertEquals("Bethesda", manager.getTown("Bethesda").getName());
+    }
+
+    /**
+     * Test that loading a file reports progress up to the size of the file, and that
+     * a road listed twice keeps its first line
+     */
+    @Test
+    public void testPopulateTownGraphProgress() throws IOException {
+        File file = File.createTempFile("towns", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println("I-95,20;TownC;TownD");
+            writer.println("Route 1,3;TownD;TownE");
+            writer.println("Route 9,7;TownE;TownD");
+        }
+        long[] last = new long[2];
+        manager.populateTownGraph(file, (bytesRead, totalBytes) -> {
+            last[0] = bytesRead;
+            last[1] = totalBytes;
+        });
+        assertEquals(file.length(), last[0], "Progress should finish at the end of the file.");
+        assertEquals(file.length(), last[1], "Progress should be out of the file size.");
+        assertEquals("Route 1", manager.getRoad("TownD", "TownE"), "The repeated road should be skipped.");
+    }
+
+    /**
+     * Test that progress counts bytes, including both bytes of each CRLF line ending
+     */
+    @Test
+    public void testPopulateTownGraphProgressCrlf() throws IOException {
+        File file = File.createTempFile("towns", ".txt");
+        file.deleteOnExit();
+        int lineBytes = String.format("R%04d,1;T%04d;T%04d\r\n", 0, 0, 1).length();
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for (int i = 0; i < 3000; i++) {
+                writer.print(String.format("R%04d,1;T%04d;T%04d\r\n", i, i, i + 1));
+            }
+        }
+        ArrayList<Long> reports = new ArrayList<>();
+        manager.populateTownGraph(file, (bytesRead, totalBytes) -> reports.add(bytesRead));
+        assertEquals(3, reports.size());
+        assertTrue(reports.get(0) >= 1024L * lineBytes, "Progress should count every byte of the lines read.");
+        assertTrue(reports.get(1) >= 2048L * lineBytes, "Progress should count every byte of the lines read.");
+        assertEquals(file.length(), (long) reports.get(2));
+    }
+
+    /**
+     * Test that towns and roads can be read a page at a time
+     */
+    @Test
+    public void testPages() {
+        manager.addTown("TownD");
+        ArrayList<String> towns = manager.allTowns(1, 2);
+        assertEquals(2, towns.size(), "A page should hold two towns.");
+        assertEquals("TownB", towns.get(0));
+        assertEquals("TownC", towns.get(1));
+        assertEquals(4, manager.townCount());
+        assertEquals(3, manager.townPosition("TownD"));
+        assertEquals(2, manager.townPosition("TownBB"), "Missing towns should get the position they would have.");
+
+        manager.addRoad("TownC", "TownD", 1, "MainStreet");
+        assertEquals(3, manager.roadCount());
+        assertEquals("SecondStreet", manager.allRoads(2, 5).get(0));
+        assertEquals(0, manager.roadPosition("MainStreet"));
+        assertEquals(2, manager.roadPosition("SecondStreet"));
+    }
+
+    /**
+     * Test that alternative routes are returned shortest first
+     */
+    @Test
+    public void testGetPaths() {
+        manager.addRoad("TownA", "TownC", 20, "ThirdStreet");
+        manager.addRoad("TownA", "TownD", 1, "FourthStreet");
+        manager.addRoad("TownD", "TownC", 30, "FifthStreet");
+        ArrayList<ArrayList<String>> paths = manager.getPaths("TownA", "TownC", 5);
+        assertEquals(3, paths.size(), "There are three loopless routes.");
+        assertEquals("TownA via MainStreet to TownB 10", paths.get(0).get(0));
+        assertEquals("TownB via SecondStreet to TownC 5", paths.get(0).get(1));
+        assertEquals("TownA via ThirdStreet to TownC 20", paths.get(1).get(0));
+        assertEquals("TownD via FifthStreet to TownC 30", paths.get(2).get(1));
+        assertEquals(1, manager.getPaths("TownA", "TownC", 1).size(), "Only one route was asked for.");
+    }
+
+    /**
+     * Test that a bounded search stops at the radius and labels nearest sources
+     */
+    @Test
+    public void testTownsWithin() {
+        TownDistances within = manager.townsWithin("TownA", 12);
+        assertEquals(2, within.size(), "TownC is 15 away and should not be included.");
+        assertEquals("TownA", within.town(0).getName());
+        assertEquals(10, within.distance(1));
+
+        manager.addRoad("TownC", "TownD", 2, "FourthStreet");
+        TownDistances nearest = manager.isochrones(Arrays.asList("TownA", "TownD"), 100);
+        assertEquals(4, nearest.size(), "Every town should be reached.");
+        for (int i = 0; i < nearest.size(); i++) {
+            int expected = nearest.town(i).getName().equals("TownA") ? 0 : 1;
+            assertEquals(expected, nearest.source(i), "Only TownA should be nearest to TownA.");
+        }
+        assertEquals(7, nearest.distance(nearest.size() - 1), "TownB is 7 from TownD.");
+        assertNull(manager.townsWithin("TownZ", 5), "Missing towns have no result.");
+    }
+
+    /**
+     * Test that the minimum spanning roads drop the most expensive road of a cycle
+     */
+    @Test
+    public void testMinimumSpanningRoads() {
+        manager.addRoad("TownA", "TownC", 12, "ThirdStreet");
+        manager.addRoad("TownD", "TownE", 3, "FourthStreet");
+        MinimumSpanningForest forest = manager.minimumSpanningRoads();
+        assertEquals(3, forest.size(), "Five towns in two groups need three roads.");
+        assertEquals(18, forest.totalWeight());
+        ArrayList<String> names = forest.roadNames();
+        assertFalse(names.contains("ThirdStreet"), "The most expensive road of the cycle is dropped.");
+        assertEquals("FourthStreet", names.get(0));
+    }
+
+    /**
+     * Test that a graph split across shards, one of them behind a loopback server,
+     * finds the same paths as the unsplit graph
+     */
+    @Test
+    public void testShardedPath() throws IOException {
+        Graph graph = new Graph();
+        GraphBatch batch = new GraphBatch();
+        for (int i = 0; i < 20; i++) {
+            batch.addRoad("Town" + i, "Town" + (i + 1), 1 + i % 3, "Road" + i);
+        }
+        batch.addRoad("Town0", "Town20", 30, "Bypass");
+        graph.apply(batch);
+
+        try (ShardServer server = new ShardServer(new LocalShard(), 0).start();
+                RemoteShard remote = new RemoteShard("127.0.0.1", server.getPort())) {
+            ShardedTownGraphManager sharded = ShardedTownGraphManager.partition(graph,
+                    Arrays.asList(new LocalShard(), remote, new LocalShard()));
+            assertTrue(sharded.cutRoadCount() > 0, "A chain split three ways has cut roads.");
+            assertEquals(graph.shortestPath(new Town("Town2"), new Town("Town19")), sharded.getPath("Town2", "Town19"));
+            assertEquals(1, sharded.getPath("Town20", "Town0").size(), "The bypass is the shortest route.");
+            assertTrue(sharded.deleteRoadConnection("Town0", "Town20", "Bypass"));
+            assertEquals(20, sharded.getPath("Town20", "Town0").size());
+            assertEquals(21, sharded.allTowns().size());
+        }
+    }
+
+    /**
+     * Test that edits survive a restart, through both the log and a checkpoint,
+     * and that a torn entry at the end of the log is ignored
+     */
+    @Test
+    public void testWriteAheadLog() throws IOException {
+        directory = Files.createTempDirectory("wal").toFile();
+        TownGraphManager saved = TownGraphManager.open(directory, 3);
+        saved.addRoad("TownA", "TownB", 10, "MainStreet");
+        saved.addRoad("TownB", "TownC", 5, "SecondStreet");
+        saved.addTown("TownD");
+        saved.deleteRoadConnection("TownA", "TownB", "MainStreet");
+        saved.updateWeight("TownB", "TownC", 7);
+        saved.close();
+
+        try (FileOutputStream log = new FileOutputStream(new File(directory, "graph.wal"), true)) {
+            log.write(new byte[] { 0, 0, 0, 40, 1, 2 });
+        }
+        TownGraphManager restored = TownGraphManager.open(directory, 3);
+        assertTrue(restored.containsTown("TownD"), "TownD was in the checkpoint.");
+        assertFalse(restored.containsRoadConnection("TownA", "TownB"), "The deletion was replayed from the log.");
+        assertEquals("TownB via SecondStreet to TownC 7", restored.getPath("TownB", "TownC").get(0));
+        restored.addTown("TownE");
+        restored.close();
+        TownGraphManager reopened = TownGraphManager.open(directory, 3);
+        assertTrue(reopened.containsTown("TownE"), "The torn entry was cut off.");
+        assertThrows(IllegalArgumentException.class, () -> reopened.addRoad("TownD", "TownE", -1, "Back"));
+        reopened.addRoad("TownE", "TownE", 2, "Roundabout");
+        reopened.checkpoint();
+        reopened.close();
+        TownGraphManager checkpointed = TownGraphManager.open(directory, 3);
+        assertEquals("Roundabout", checkpointed.getRoad("TownE", "TownE"), "Self-loops are checkpointed.");
+        checkpointed.close();
+    }
+
+    /**
+     * Test that the routing service answers path and edit requests over HTTP
+     */
+    @Test
+    public void testRoutingService() throws IOException {
+        try (RoutingService service = new RoutingService(manager, 0).start()) {
+            String base = "http://127.0.0.1:" + service.getPort();
+            assertEquals("{\"from\":\"TownA\",\"to\":\"TownC\",\"distance\":15,\"complete\":true,\"steps\":"
+                    + "[\"TownA via MainStreet to TownB 10\",\"TownB via SecondStreet to TownC 5\"]}",
+                    request("GET", base + "/path?from=TownA&to=TownC"));
+            assertEquals("{\"changed\":true}", request("POST", base + "/roads?town1=TownA&town2=TownC&weight=4&name=Bypass"));
+            assertEquals("{\"road\":\"Bypass\"}", request("GET", base + "/road?town1=TownC&town2=TownA"));
+        }
+    }
+
+    private static String request(String method, String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        try (InputStream in = connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Test that async queries return paths and that queries past the in-flight limit
+     * are rejected instead of queued
+     */
+    @Test
+    public void testGetPathAsync() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch gate = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try (AsyncTownGraphManager async = new AsyncTownGraphManager(manager, executor, 1, null)) {
+            CompletableFuture<List<String>> path = async.getPathAsync("TownA", "TownC");
+            assertTrue(async.getPathAsync("TownC", "TownA").isCompletedExceptionally(), "Only one query may be in flight.");
+            gate.countDown();
+            assertEquals(manager.getPath("TownA", "TownC"), path.get());
+            assertNull(async.getPathsAsync(Collections.singletonList(new String[] { "TownA", "Nowhere" })).get().get(0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test that road attributes, directed mode and banned turns survive a restart
+     */
+    @Test
+    public void testRoadRestrictions() throws IOException {
+        directory = Files.createTempDirectory("restrictions").toFile();
+        TownGraphManager saved = TownGraphManager.open(directory, 3);
+        saved.addRoad("A", "B", 1, "AB");
+        saved.addRoad("B", "C", 1, "BC");
+        saved.addRoad("A", "C", 5, "AC");
+        saved.addRoad("C", "D", 1, "CD");
+        assertTrue(saved.setRoadAttributes("A", "B", Road.NO_TRUCKS | Road.ONE_WAY));
+        assertFalse(saved.setRoadAttributes("A", "D", Road.ONE_WAY));
+        assertEquals(3, saved.getPath("A", "D").size());
+        assertEquals(2, saved.getPath("A", "D", Road.NO_TRUCKS).size(), "Trucks can't use AB.");
+        assertTrue(saved.banTurn("B", "C", "D"));
+        assertEquals("A via AC to C 5", saved.getPath("A", "D").get(0));
+        saved.setDirected(true);
+        saved.close();
+
+        TownGraphManager restored = TownGraphManager.open(directory, 3);
+        assertEquals("A via AC to C 5", restored.getPath("A", "D").get(0));
+        assertEquals(4, restored.getPath("B", "D").size(), "B can only reach D by turning around at A.");
+        assertTrue(restored.allowTurn("B", "C", "D"));
+        assertEquals(2, restored.getPath("B", "D").size());
+        restored.addRoad("E", "D", 1, "ED");
+        assertTrue(restored.setRoadAttributes("E", "D", Road.ONE_WAY));
+        restored.checkpoint();
+        restored.close();
+
+        TownGraphManager reloaded = TownGraphManager.open(directory, 3);
+        assertEquals(1, reloaded.getPath("E", "D").size());
+        assertTrue(reloaded.getPath("D", "E").isEmpty(), "ED is one way from E to D.");
+        reloaded.close();
+    }
+
+    /**
+     * Test that travel time profiles are logged and restored
+     */
+    @Test
+    public void testFastestPath() throws IOException {
+        directory = Files.createTempDirectory("profiles").toFile();
+        TownGraphManager saved = TownGraphManager.open(directory, 100);
+        saved.addRoad("A", "B", 10, "AB");
+        saved.addRoad("B", "C", 10, "BC");
+        int profile = saved.addProfile(new int[] { 0, 100 }, new int[] { 10, 60 });
+        assertTrue(saved.setRoadProfile("A", "B", profile));
+        assertFalse(saved.setRoadProfile("A", "C", profile));
+        saved.close();
+
+        TownGraphManager restored = TownGraphManager.open(directory, 100);
+        assertEquals(20, restored.getFastestPath("A", "C", 0).getDistance());
+        assertEquals(45, restored.getFastestPath("A", "C", 50).getDistance());
+        restored.checkpoint();
+        restored.close();
+        TownGraphManager reloaded = TownGraphManager.open(directory, 100);
+        assertEquals("A via AB to B 35", reloaded.getFastestPath("A", "C", 50).getSteps().get(0));
+        reloaded.close();
+    }
+
+    /**
+     * Test Pareto routing through the manager, with costs surviving a restart
+     */
+    @Test
+    public void testParetoPaths() throws IOException {
+        directory = Files.createTempDirectory("pareto").toFile();
+        TownGraphManager saved = TownGraphManager.open(directory, 2);
+        saved.addRoad("A", "B", 10, "Toll");
+        saved.addRoad("A", "C", 5, "Free");
+        saved.addRoad("C", "B", 10, "Free");
+        assertTrue(saved.setRoadCost("A", "B", 4));
+        assertFalse(saved.setRoadCost("B", "D", 4));
+        saved.close();
+
+        TownGraphManager restored = TownGraphManager.open(directory, 2);
+        ParetoRoutes routes = restored.getParetoPaths("A", "B", 16);
+        assertEquals(2, routes.size());
+        assertEquals(4, routes.cost(0));
+        assertEquals(15, routes.distance(1));
+        assertNull(restored.getParetoPaths("A", "Nowhere", 16));
+        restored.close();
+    }
+
+    /**
+     * Test that a timeout or a cancel stops a long query's searches instead of letting
+     * them run to the end, and that a query past its timeout fails with a TimeoutException
+     */
+    @Test
+    public void testAsyncQueryStops() throws Exception {
+        GraphBatch chain = new GraphBatch();
+        for (int i = 0; i < 100000; i++) {
+            chain.addRoad("Chain" + i, "Chain" + (i + 1), 1, "Chain");
+        }
+        manager.applyBatch(chain);
+        List<String[]> pairs = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            pairs.add(new String[] { "Chain0", "Chain100000" });
+        }
+
+        try (AsyncTownGraphManager timed = new AsyncTownGraphManager(manager, 1, Duration.ofMillis(50))) {
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> timed.getPathsAsync(pairs).get());
+            assertTrue(failure.getCause() instanceof TimeoutException, "Expected a timeout but got " + failure.getCause());
+            awaitPermits(timed);
+        }
+        try (AsyncTownGraphManager async = new AsyncTownGraphManager(manager, 1, null)) {
+            CompletableFuture<List<List<String>>> paths = async.getPathsAsync(pairs);
+            Thread.sleep(50);
+            assertTrue(paths.cancel(true));
+            awaitPermits(async);
+        }
+    }
+
+    /**
+     * Waits for the only place among an async manager's queries in flight to be freed,
+     * which happens when its search stops. Running every search of the query would take
+     * far longer than the wait allows
+     */
+    private static void awaitPermits(AsyncTownGraphManager async) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (async.availablePermits() < 1) {
+            assertTrue(System.nanoTime() < deadline, "The search should stop soon after its query ends.");
+            Thread.sleep(1);
+        }
+    }
+
+
+    /**
+     * Test that loaded files, batches and deltas are replayed from the log
+     * without a checkpoint
+     */
+    @Test
+    public void testLoggedBatches() throws IOException {
+        directory = Files.createTempDirectory("batches").toFile();
+        File file = new File(directory, "towns.txt");
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println("AB,1;A;B");
+            writer.println("BC,1;B;C");
+        }
+        TownGraphManager saved = TownGraphManager.open(directory, 100);
+        saved.populateTownGraph(file);
+        saved.applyBatch(new GraphBatch().addRoad("C", "D", 1, "CD", Road.ONE_WAY, 0, -1)
+                .addRoad("A", "D", 9, "AD").banTurn("A", "B", "C").setDirected(true));
+        Graph newer = new Graph();
+        newer.apply(new GraphBatch().addRoad("D", "E", 2, "DE"));
+        saved.applyDelta(new Graph().diff(newer));
+        saved.close();
+        file.delete();
+
+        assertFalse(new File(directory, "graph.checkpoint").exists(), "Nothing was checkpointed.");
+        TownGraphManager restored = TownGraphManager.open(directory, 100);
+        assertEquals("AB", restored.getRoad("A", "B"), "The loaded file was replayed.");
+        assertEquals("A via AD to D 9", restored.getPath("A", "D").get(0), "The banned turn was replayed.");
+        assertFalse(restored.getPath("D", "C").contains("D via CD to C 1"), "CD is still one way.");
+        assertEquals("DE", restored.getRoad("D", "E"), "The delta was replayed.");
+        restored.close();
+    }
+
+
+    /**
+     * Test that a path search holding a token finds the same path and returns null
+     * for unknown towns
+     */
+    @Test
+    public void testGetPathWithToken() {
+        CancellationToken token = new CancellationToken();
+        assertEquals(manager.getPath("TownA", "TownC"), manager.getPath("TownA", "TownC", token));
+        assertNull(manager.getPath("TownA", "Nowhere", token));
+    }
+}
@@ -0,0 +1,297 @@
+import java.util.*;
+
+/**
+ * Town name index - a trie over town names for exact, prefix and fuzzy lookups.
+ * Children are kept sorted by character, so walking the trie visits names in
+ * the same alphabetical order as String.compareTo
+ *
+ * @author Jessica Park
+ */
+
+public class TownNameIndex {
+    private final Node root = new Node();
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private Town town;
+        private int count;
+
+        private Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : children[i];
+        }
+
+        private Node addChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            i = -i - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+            System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+            newKeys[i] = c;
+            newChildren[i] = new Node();
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[i];
+        }
+
+        private void removeChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i < 0) {
+                return;
+            }
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+    }
+
+    private static class Match {
+        private final Town town;
+        private final int distance;
+
+        private Match(Town town, int distance) {
+            this.town = town;
+            this.distance = distance;
+        }
+    }
+
+    private static final Comparator<Match> WORST_FIRST = Comparator.comparingInt((Match match) -> match.distance)
+            .thenComparing(match -> match.town.getName())
+            .reversed();
+
+    /**
+     * Returns the number of towns in the index
+     *
+     * @return the number of towns
+     */
+    public int size() {
+        return root.count;
+    }
+
+    /**
+     * Adds a town if no town with the same name is indexed
+     *
+     * @param town the town to add
+     * @return true if the town was added
+     */
+    public boolean add(Town town) {
+        String name = town.getName();
+        if (get(name) != null) {
+            return false;
+        }
+        Node node = root;
+        node.count++;
+        for (int i = 0; i < name.length(); i++) {
+            node = node.addChild(name.charAt(i));
+            node.count++;
+        }
+        node.town = town;
+        return true;
+    }
+
+    /**
+     * Removes the town with the given name
+     *
+     * @param name the town's name
+     * @return true if the town was indexed
+     */
+    public boolean remove(String name) {
+        if (get(name) == null) {
+            return false;
+        }
+        Node node = root;
+        node.count--;
+        for (int i = 0; i < name.length(); i++) {
+            Node child = node.child(name.charAt(i));
+            if (--child.count == 0) {
+                node.removeChild(name.charAt(i));
+                return true;
+            }
+            node = child;
+        }
+        node.town = null;
+        return true;
+    }
+
+    /**
+     * Returns the town with exactly the given name
+     *
+     * @param name the town's name
+     * @return the town, or null if there is none
+     */
+    public Town get(String name) {
+        Node node = find(name);
+        return node == null ? null : node.town;
+    }
+
+    /**
+     * Returns the first towns in alphabetical order whose names start with a prefix
+     *
+     * @param prefix the start of the name
+     * @param limit the most towns to return
+     * @return up to limit towns in alphabetical order
+     */
+    public ArrayList<Town> withPrefix(String prefix, int limit) {
+        ArrayList<Town> result = new ArrayList<>(Math.min(limit, 64));
+        Node node = find(prefix);
+        if (node != null && limit > 0) {
+            collect(node, limit, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the towns whose names are closest to a query, allowing a bounded
+     * number of inserted, deleted or changed characters
+     *
+     * @param query the name to match
+     * @param maxEdits the largest edit distance to accept
+     * @param limit the most towns to return
+     * @return up to limit towns, closest first and alphabetical among equals
+     */
+    public ArrayList<Town> closest(String query, int maxEdits, int limit) {
+        PriorityQueue<Match> best = new PriorityQueue<>(WORST_FIRST);
+        if (limit > 0) {
+            int[] row = new int[query.length() + 1];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = i;
+            }
+            if (root.town != null && row[query.length()] <= maxEdits) {
+                offer(best, root.town, row[query.length()], limit);
+            }
+            for (int i = 0; i < root.keys.length; i++) {
+                search(root.children[i], root.keys[i], query, row, maxEdits, limit, best);
+            }
+        }
+        ArrayList<Town> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().town);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Returns the position a name has, or would have, in alphabetical order
+     *
+     * @param name the town's name
+     * @return the number of indexed names that come before it
+     */
+    public int rank(String name) {
+        int rank = 0;
+        Node node = root;
+        for (int i = 0; i < name.length(); i++) {
+            if (node.town != null) {
+                rank++;
+            }
+            char c = name.charAt(i);
+            int j = 0;
+            while (j < node.keys.length && node.keys[j] < c) {
+                rank += node.children[j].count;
+                j++;
+            }
+            if (j == node.keys.length || node.keys[j] != c) {
+                return rank;
+            }
+            node = node.children[j];
+        }
+        return rank;
+    }
+
+    /**
+     * Returns a page of towns in alphabetical order, skipping whole subtrees
+     * before the start of the page using their counts
+     *
+     * @param from the position of the first town
+     * @param count the most towns to return
+     * @return up to count towns starting at position from
+     */
+    public ArrayList<Town> range(int from, int count) {
+        ArrayList<Town> result = new ArrayList<>(Math.max(0, Math.min(count, size() - from)));
+        if (from >= 0 && count > 0) {
+            range(root, from, count, result);
+        }
+        return result;
+    }
+
+    private static void range(Node node, int skip, int count, ArrayList<Town> result) {
+        if (node.town != null) {
+            if (skip == 0) {
+                result.add(node.town);
+            } else {
+                skip--;
+            }
+        }
+        for (int i = 0; i < node.children.length && result.size() < count; i++) {
+            Node child = node.children[i];
+            if (skip >= child.count) {
+                skip -= child.count;
+            } else {
+                range(child, skip, count, result);
+                skip = 0;
+            }
+        }
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    private static void collect(Node node, int limit, ArrayList<Town> result) {
+        if (node.town != null) {
+            result.add(node.town);
+        }
+        for (int i = 0; i < node.children.length && result.size() < limit; i++) {
+            collect(node.children[i], limit, result);
+        }
+    }
+
+    /**
+     * One step of the Levenshtein table per trie edge. A branch is abandoned as soon
+     * as every entry in its row is over the limit
+     */
+    private static void search(Node node, char c, String query, int[] previous, int maxEdits, int limit,
+            PriorityQueue<Match> best) {
+        int[] row = new int[previous.length];
+        row[0] = previous[0] + 1;
+        int smallest = row[0];
+        for (int i = 1; i < row.length; i++) {
+            int change = previous[i - 1] + (query.charAt(i - 1) == c ? 0 : 1);
+            row[i] = Math.min(change, Math.min(row[i - 1] + 1, previous[i] + 1));
+            smallest = Math.min(smallest, row[i]);
+        }
+        if (smallest > maxEdits) {
+            return;
+        }
+        int distance = row[row.length - 1];
+        if (node.town != null && distance <= maxEdits) {
+            offer(best, node.town, distance, limit);
+        }
+        for (int i = 0; i < node.keys.length; i++) {
+            search(node.children[i], node.keys[i], query, row, maxEdits, limit, best);
+        }
+    }
+
+    private static void offer(PriorityQueue<Match> best, Town town, int distance, int limit) {
+        best.add(new Match(town, distance));
+        if (best.size() > limit) {
+            best.poll();
+        }
+    }
+}
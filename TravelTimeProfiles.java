@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+/**
+ * Travel time profiles - piecewise linear travel times that depend on when a road is
+ * entered, for example a road that is slow in the rush hour. Every profile is a list of
+ * breakpoints, each a departure time and the travel time when departing then. Between
+ * breakpoints the travel time is interpolated, before the first and after the last it
+ * stays at the first or last value
+ *
+ * All profiles share three arrays, like the slots of a CompactGraph, and are referred to
+ * by number, so any number of roads can use the same profile. Profiles are never changed
+ * or removed once added, so a number stays valid for as long as the graph does
+ *
+ * A profile may not let a later departure arrive earlier, so the travel time can fall by
+ * at most the time that passes. That keeps waiting pointless, which is what lets a
+ * time-dependent search use Dijkstra's algorithm unchanged
+ *
+ * @author Jessica Park
+ */
+
+public class TravelTimeProfiles {
+    private int[] offsets = new int[1];
+    private int[] times = new int[16];
+    private int[] travelTimes = new int[16];
+    private int count;
+
+    /**
+     * Checks a profile without adding it
+     *
+     * @param departures the departure times of the breakpoints, in increasing order
+     * @param durations the travel time for each departure time
+     * @throws IllegalArgumentException if add would reject the profile
+     */
+    static void validate(int[] departures, int[] durations) {
+        if (departures.length == 0 || departures.length != durations.length) {
+            throw new IllegalArgumentException("A profile needs one travel time for every departure time.");
+        }
+        for (int i = 0; i < departures.length; i++) {
+            if (durations[i] < 0) {
+                throw new IllegalArgumentException("Travel time cannot be negative.");
+            }
+            if (i > 0 && departures[i] <= departures[i - 1]) {
+                throw new IllegalArgumentException("Departure times must be increasing.");
+            }
+            if (i > 0 && (long) departures[i] + durations[i] < (long) departures[i - 1] + durations[i - 1]) {
+                throw new IllegalArgumentException("Leaving later cannot arrive earlier.");
+            }
+        }
+    }
+
+    /**
+     * Adds a profile
+     *
+     * @param departures the departure times of the breakpoints, in increasing order
+     * @param durations the travel time for each departure time
+     * @return the number of the new profile
+     * @throws IllegalArgumentException if there are no breakpoints, the arrays differ in
+     * length, the times are not increasing, a travel time is negative, or a later
+     * departure would arrive earlier
+     */
+    public synchronized int add(int[] departures, int[] durations) {
+        validate(departures, durations);
+        int start = offsets[count];
+        int end = start + departures.length;
+        if (end > times.length) {
+            int capacity = Math.max(end, times.length * 2);
+            times = Arrays.copyOf(times, capacity);
+            travelTimes = Arrays.copyOf(travelTimes, capacity);
+        }
+        if (count + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(count + 2, offsets.length * 2));
+        }
+        System.arraycopy(departures, 0, times, start, departures.length);
+        System.arraycopy(durations, 0, travelTimes, start, durations.length);
+        offsets[count + 1] = end;
+        return count++;
+    }
+
+    /**
+     * Returns the number of profiles
+     *
+     * @return the number of profiles added
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Returns the travel time of a profile for a departure time
+     *
+     * @param profile the number of the profile
+     * @param departure when the road is entered
+     * @return the interpolated travel time
+     */
+    public int travelTime(int profile, int departure) {
+        int[] times = this.times;
+        int[] travelTimes = this.travelTimes;
+        int low = offsets[profile];
+        int high = offsets[profile + 1] - 1;
+        if (departure <= times[low]) {
+            return travelTimes[low];
+        }
+        if (departure >= times[high]) {
+            return travelTimes[high];
+        }
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] <= departure) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        long span = (long) times[high] - times[low];
+        long rise = (long) travelTimes[high] - travelTimes[low];
+        return (int) (travelTimes[low] + Math.floorDiv(rise * ((long) departure - times[low]), span));
+    }
+
+    /**
+     * Returns the departure times of a profile's breakpoints
+     *
+     * @param profile the number of the profile
+     * @return a copy of the departure times
+     */
+    public synchronized int[] departures(int profile) {
+        return Arrays.copyOfRange(times, offsets[profile], offsets[profile + 1]);
+    }
+
+    /**
+     * Returns the travel times of a profile's breakpoints
+     *
+     * @param profile the number of the profile
+     * @return a copy of the travel times
+     */
+    public synchronized int[] durations(int profile) {
+        return Arrays.copyOfRange(travelTimes, offsets[profile], offsets[profile + 1]);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Weight type - how the distances of a graph are added up, chosen when the graph is built
+ *
+ * Road weights are always ints. With INT, path lengths are ints too, which keeps the
+ * search arrays small and fast, and a path too long for an int is reported with an
+ * ArithmeticException instead of wrapping around. LONG adds weights up in longs, for
+ * networks whose paths can be longer than an int holds. FIXED_POINT also adds up in longs
+ * but reads every weight as thousandths, so a weight of 1500 is 1.5, and writes weights
+ * and distances with three decimals
+ *
+ * @author Jessica Park
+ */
+
+public enum WeightType {
+    INT(1),
+    LONG(1),
+    FIXED_POINT(1000);
+
+    private final int scale;
+
+    WeightType(int scale) {
+        this.scale = scale;
+    }
+
+    /**
+     * Returns true if path lengths are added up in longs
+     *
+     * @return true for LONG and FIXED_POINT
+     */
+    public boolean isWide() {
+        return this != INT;
+    }
+
+    /**
+     * Returns how many weight units make one whole unit of distance
+     *
+     * @return 1000 for FIXED_POINT, otherwise 1
+     */
+    public int scale() {
+        return scale;
+    }
+
+    /**
+     * Converts a distance to the int weight that stands for it
+     *
+     * @param value the distance, such as 1.5
+     * @return the weight, rounded to the nearest unit
+     * @throws IllegalArgumentException if the weight would be negative or too large for an int
+     */
+    public int toWeight(double value) {
+        double scaled = Math.rint(value * scale);
+        if (!(scaled >= 0 && scaled <= Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException("Weight out of range: " + value);
+        }
+        return (int) scaled;
+    }
+
+    /**
+     * Writes a weight or a path length the way this type reads it
+     *
+     * @param distance the weight or length, in weight units
+     * @return the distance, with three decimals for FIXED_POINT
+     */
+    public String format(long distance) {
+        if (this != FIXED_POINT) {
+            return Long.toString(distance);
+        }
+        long fraction = Math.abs(distance % scale);
+        String whole = Long.toString(distance / scale);
+        if (distance < 0 && distance > -scale) {
+            whole = "-" + whole;
+        }
+        return whole + "." + (fraction < 10 ? "00" : fraction < 100 ? "0" : "") + fraction;
+    }
+}
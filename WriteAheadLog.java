@@ -0,0 +1,354 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log - makes edits to a town graph durable by appending them to a log
+ * file before they are acknowledged, with a binary checkpoint of the whole graph
+ * taken every so often so a restart only replays the edits made since
+ *
+ * The manager applies edits one at a time, so each entry is written and synced on its
+ * own before append returns. A batch or delta is logged as a single entry holding its
+ * binary form, so a load is as durable as a single edit.
+ *
+ * Each entry is stored as its length, a CRC32 of its contents, its sequence number,
+ * an operation code and its arguments. On recovery, replay stops at the first entry
+ * that is incomplete or fails its checksum, which is where a crash cut the log off.
+ *
+ * @author Jessica Park
+ */
+
+public class WriteAheadLog implements Closeable {
+    static final byte ADD_TOWN = 1;
+    static final byte ADD_ROAD = 2;
+    static final byte DELETE_ROAD = 3;
+    static final byte DELETE_TOWN = 4;
+    static final byte UPDATE_WEIGHT = 5;
+    static final byte CLOSE_ROAD = 6;
+    static final byte SET_ATTRIBUTES = 7;
+    static final byte SET_DIRECTED = 8;
+    static final byte BAN_TURN = 9;
+    static final byte ALLOW_TURN = 10;
+    static final byte ADD_PROFILE = 11;
+    static final byte SET_PROFILE = 12;
+    static final byte SET_COST = 13;
+    static final byte APPLY_BATCH = 14;
+    static final byte APPLY_DELTA = 15;
+
+    private static final String LOG_FILE = "graph.wal";
+    private static final String CHECKPOINT_FILE = "graph.checkpoint";
+    private static final int CHECKPOINT_MAGIC = 0x54474331;
+
+    private final Path directory;
+    private final FileChannel channel;
+    private long appended;
+    private long checkpointed;
+
+    private WriteAheadLog(Path directory, FileChannel channel, long sequence, long checkpointed) {
+        this.directory = directory;
+        this.channel = channel;
+        this.appended = sequence;
+        this.checkpointed = checkpointed;
+    }
+
+    /**
+     * One logged edit
+     */
+    static class Entry {
+        final long sequence;
+        final byte operation;
+        final String[] names;
+        final int weight;
+        final int[] values;
+        final byte[] data;
+
+        Entry(long sequence, byte operation, String[] names, int weight, int[] values, byte[] data) {
+            this.sequence = sequence;
+            this.operation = operation;
+            this.names = names;
+            this.weight = weight;
+            this.values = values;
+            this.data = data;
+        }
+
+        /**
+         * Returns a stream over the binary form of a logged batch or delta
+         *
+         * @return a stream reading the entry's data
+         */
+        DataInputStream dataStream() {
+            return new DataInputStream(new ByteArrayInputStream(data));
+        }
+    }
+
+    /**
+     * Opens the log in a directory, creating it if needed. The graph is rebuilt from the
+     * checkpoint and then every logged edit made after it is passed to replay in order.
+     * A torn entry at the end of the log is cut off
+     *
+     * @param directory the directory holding the log and checkpoint
+     * @param graph an empty graph to load the checkpoint into
+     * @param replay applies one logged edit to the graph
+     * @return the open log, positioned after the last complete entry
+     * @throws IOException if the files can't be read or the checkpoint is damaged
+     */
+    static WriteAheadLog open(Path directory, Graph graph, Consumer<Entry> replay) throws IOException {
+        Files.createDirectories(directory);
+        long sequence = readCheckpoint(directory.resolve(CHECKPOINT_FILE), graph);
+        long checkpointed = sequence;
+        FileChannel channel = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            long valid = 0;
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length < 9 || length > channel.size()) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                Entry entry = decode(payload);
+                if (entry.sequence > sequence) {
+                    replay.accept(entry);
+                    sequence = entry.sequence;
+                }
+                valid += 8 + payload.length;
+            }
+            channel.truncate(valid);
+            channel.position(valid);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return new WriteAheadLog(directory, channel, sequence, checkpointed);
+    }
+
+    /**
+     * Writes an edit to the log and waits until it is on disk
+     *
+     * @param operation the operation code
+     * @param weight the road weight, or 0 if the operation has none
+     * @param values the numbers of the edit, such as a travel time profile
+     * @param data the binary form of a batch or delta, or an empty array
+     * @param names the town and road names of the edit
+     * @throws UncheckedIOException if the log can't be written
+     */
+    synchronized void append(byte operation, int weight, int[] values, byte[] data, String... names) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(appended + 1);
+            out.writeByte(operation);
+            out.writeInt(weight);
+            out.writeByte(names.length);
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+            out.writeInt(values.length);
+            for (int value : values) {
+                out.writeInt(value);
+            }
+            out.writeInt(data.length);
+            out.write(data);
+            byte[] payload = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+            frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        appended++;
+    }
+
+    /**
+     * Returns the number of edits logged since the last checkpoint
+     *
+     * @return the edits a restart would replay
+     */
+    synchronized long sinceCheckpoint() {
+        return appended - checkpointed;
+    }
+
+    /**
+     * Writes every town and road of a graph, along with the road attributes, directed
+     * mode, banned turns, travel time profiles and road costs, to a new checkpoint, then empties the log.
+     * The checkpoint is written to a temporary file and renamed over the old one, so a
+     * crash part way through leaves the old checkpoint and the full log in place
+     *
+     * @param graph the graph, which must not change until this returns
+     * @throws IOException if the checkpoint can't be written
+     */
+    synchronized void checkpoint(Graph graph) throws IOException {
+        Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        CompactGraph compact = graph.compact();
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(file)));
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeLong(appended);
+            out.writeInt(compact.size());
+            for (int id = 0; id < compact.size(); id++) {
+                out.writeUTF(compact.town(id).getName());
+            }
+            int roads = 0;
+            for (int id = 0; id < compact.size(); id++) {
+                for (int slot = compact.firstSlot(id); slot < compact.endSlot(id); slot++) {
+                    if (startsAt(compact, slot, id)) {
+                        roads++;
+                    }
+                }
+            }
+            out.writeInt(roads);
+            for (int id = 0; id < compact.size(); id++) {
+                for (int slot = compact.firstSlot(id); slot < compact.endSlot(id); slot++) {
+                    if (startsAt(compact, slot, id)) {
+                        out.writeInt(id);
+                        out.writeInt(compact.target(slot));
+                        out.writeInt(compact.weight(slot));
+                        out.writeUTF(compact.road(slot).getName());
+                        out.writeInt(compact.road(slot).getAttributes());
+                        out.writeInt(compact.road(slot).getProfile());
+                        out.writeInt(compact.cost(slot));
+                    }
+                }
+            }
+            out.writeBoolean(graph.isDirected());
+            out.writeInt(graph.turnBans().size());
+            for (List<Town> ban : graph.turnBans()) {
+                for (Town town : ban) {
+                    out.writeInt(compact.id(town));
+                }
+            }
+            TravelTimeProfiles profiles = graph.travelTimeProfiles();
+            out.writeInt(profiles.size());
+            for (int profile = 0; profile < profiles.size(); profile++) {
+                int[] departures = profiles.departures(profile);
+                int[] durations = profiles.durations(profile);
+                out.writeInt(departures.length);
+                for (int i = 0; i < departures.length; i++) {
+                    out.writeInt(departures[i]);
+                    out.writeInt(durations[i]);
+                }
+            }
+            out.flush();
+            file.force(true);
+        }
+        Files.move(temporary, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        channel.truncate(0);
+        channel.force(true);
+        checkpointed = appended;
+    }
+
+    /**
+     * Tells whether a road slot belongs to the town the road starts at. Each road,
+     * self-loops included, is written once from that slot, source first, so one-way
+     * roads keep their direction
+     */
+    private static boolean startsAt(CompactGraph compact, int slot, int id) {
+        return compact.road(slot).getSource().equals(compact.town(id));
+    }
+
+    /**
+     * Loads a checkpoint into an empty graph. The travel time profiles are added first
+     * and everything else goes through one GraphBatch, so the roads keep their attributes,
+     * costs and profiles
+     */
+    private static long readCheckpoint(Path file, Graph graph) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("Not a town graph checkpoint: " + file);
+            }
+            long sequence = in.readLong();
+            String[] towns = new String[in.readInt()];
+            GraphBatch batch = new GraphBatch();
+            for (int i = 0; i < towns.length; i++) {
+                towns[i] = in.readUTF();
+                batch.addTown(towns[i]);
+            }
+            int roads = in.readInt();
+            for (int i = 0; i < roads; i++) {
+                String town1 = towns[in.readInt()];
+                String town2 = towns[in.readInt()];
+                int weight = in.readInt();
+                String name = in.readUTF();
+                int attributes = in.readInt();
+                int profile = in.readInt();
+                batch.addRoad(town1, town2, weight, name, attributes, in.readInt(), profile);
+            }
+            batch.setDirected(in.readBoolean());
+            int bans = in.readInt();
+            for (int i = 0; i < bans; i++) {
+                batch.banTurn(towns[in.readInt()], towns[in.readInt()], towns[in.readInt()]);
+            }
+            int profiles = in.readInt();
+            for (int profile = 0; profile < profiles; profile++) {
+                int[] departures = new int[in.readInt()];
+                int[] durations = new int[departures.length];
+                for (int i = 0; i < departures.length; i++) {
+                    departures[i] = in.readInt();
+                    durations[i] = in.readInt();
+                }
+                graph.addProfile(departures, durations);
+            }
+            graph.apply(batch);
+            return sequence;
+        } catch (EOFException e) {
+            throw new IOException("Checkpoint is incomplete: " + file, e);
+        }
+    }
+
+    private static Entry decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long sequence = in.readLong();
+        byte operation = in.readByte();
+        int weight = in.readInt();
+        String[] names = new String[in.readByte()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readUTF();
+        }
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return new Entry(sequence, operation, names, weight, values, data);
+    }
+
+    /**
+     * Closes the log file. Every appended edit is already on disk
+     *
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}